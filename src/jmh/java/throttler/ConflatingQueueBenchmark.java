@@ -0,0 +1,102 @@
+package throttler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.MarketDataSnapshot;
+import pojo.Price;
+import pojo.SymbolRing;
+
+import java.time.Instant;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single threaded cost of the conflating queue operations for different symbol universes and update skews.
+ * Every offer after the first for a symbol only overwrites its slot, so the skew decides how often the dirty ring is touched.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConflatingQueueBenchmark {
+    private static final int NO_OF_UPDATES = 1 << 20;
+
+    @Param({"10", "10000", "1000000"})
+    private int noOfSymbols;
+    @Param({"UNIFORM", "ZIPF"})
+    private SymbolSkew skew;
+
+    private ConflatingQueue    conflatingQueue;
+    private int[]              symbolIds;
+    private MarketData[]       marketData;
+    private MarketDataSnapshot snapshot = new MarketDataSnapshot();
+    private int                next;
+
+    @Setup
+    public void setUp() {
+        conflatingQueue = new ConflatingQueue(noOfSymbols);
+        symbolIds       = skew.symbolIds(noOfSymbols, NO_OF_UPDATES, new SplittableRandom(42));
+        marketData      = new MarketData[NO_OF_UPDATES];
+        for (int i = 0; i < NO_OF_UPDATES; i++) {
+            marketData[i] = new MarketData(Instant.now(), "A" + symbolIds[i], new Price(i, i, i));
+        }
+        for (int symbolId = 0; symbolId < noOfSymbols; symbolId++) {
+            conflatingQueue.getSymbolRegistry().register("A" + symbolId);//Ids line up with the precomputed ones
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (NO_OF_UPDATES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public void offer() {
+        int i = nextIndex();
+        conflatingQueue.offer(symbolIds[i], i, i, i, i);
+    }
+
+    /**
+     * Through the MarketData adapter, i.e. including the symbol lookup in the registry but not the allocation of the update.
+     */
+    @Benchmark
+    public void offerMarketData() {
+        conflatingQueue.offer(marketData[nextIndex()]);
+    }
+
+    @Benchmark
+    public void offerThenPeek(Blackhole blackhole) {
+        offer();
+        blackhole.consume(conflatingQueue.peekSymbolId());
+    }
+
+    @Benchmark
+    public void offerThenTake(Blackhole blackhole) {
+        offer();
+        int symbolId = conflatingQueue.pollPendingSymbolId();
+        blackhole.consume(symbolId != SymbolRing.EMPTY && conflatingQueue.take(symbolId, snapshot));
+    }
+
+    /**
+     * As above but handing out a MarketData per take, the way ThrottledPublisher does for publishAggregatedMarketData.
+     */
+    @Benchmark
+    public MarketData offerThenTakeMarketData() {
+        offer();
+        return conflatingQueue.take();
+    }
+}
@@ -0,0 +1,76 @@
+package throttler;
+
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pojo.ConflatingQueue;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Three feed threads ticking skewed updates into the processor while the publisher thread keeps calling publishData, i.e. the application
+ * without the schedulers. Reports the ingestion throughput and the latency distribution of both sides under contention, run with
+ * -prof gc to check ingestion stays allocation free and -prof perfasm (needs hsdis) to see where the cycles go.
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndThrottlingBenchmark {
+    private static final int NO_OF_UPDATES = 1 << 20;
+
+    @Param({"10", "10000"})
+    private int noOfSymbols;
+    @Param({"100", "100000"})
+    private int maxRequestPerInterval;
+
+    private MarketDataProcessor marketDataProcessor;
+    private ThrottledPublisher  throttledPublisher;
+    private int[]               symbolIds;
+
+    @State(Scope.Thread)
+    public static class Feed {
+        private int next;
+    }
+
+    @Setup
+    public void setUp() {
+        LogManager.getRootLogger().setLevel(org.apache.log4j.Level.OFF);
+        ConflatingQueue conflatingQueue = new ConflatingQueue(noOfSymbols);
+        for (int symbolId = 0; symbolId < noOfSymbols; symbolId++) {
+            conflatingQueue.getSymbolRegistry().register("A" + symbolId);
+        }
+        marketDataProcessor = new MarketDataProcessor(null, conflatingQueue);
+        throttledPublisher  = new ThrottledPublisher(conflatingQueue, marketDataProcessor, maxRequestPerInterval, 1, RateLimiterType.SLIDING_LOG);
+        symbolIds           = SymbolSkew.ZIPF.symbolIds(noOfSymbols, NO_OF_UPDATES, new SplittableRandom(42));
+    }
+
+    @Benchmark
+    @Group("throttling")
+    @GroupThreads(3)
+    public void onTick(Feed feed) {
+        int i = feed.next = (feed.next + 1) & (NO_OF_UPDATES - 1);
+        marketDataProcessor.onTick(symbolIds[i], i, i, i, i);
+    }
+
+    @Benchmark
+    @Group("throttling")
+    @GroupThreads(1)
+    public void publishData() {
+        throttledPublisher.publishData();
+    }
+}
@@ -0,0 +1,56 @@
+package throttler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the publish decision for every rate limiter at different limits. Symbols are cycled so that the run covers both publishes
+ * and rejections by the per symbol window or the global budget, which is what a publisher with a backlog sees.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlidingWindowBenchmark {
+    private static final int NO_OF_SYMBOLS = 1 << 16;
+
+    @Param({"100", "10000", "1000000"})
+    private int maxRequestPerInterval;
+    @Param({"SLIDING_LOG", "GCRA", "SLIDING_COUNTER"})
+    private RateLimiterType rateLimiterType;
+
+    private SlidingWindow slidingWindow;
+    private int           symbolId;
+
+    @Setup
+    public void setUp() {
+        slidingWindow = new SlidingWindow(maxRequestPerInterval, 1, rateLimiterType);
+    }
+
+    @Benchmark
+    public boolean canPublish() {
+        symbolId = (symbolId + 1) & (NO_OF_SYMBOLS - 1);
+        return slidingWindow.canPublish(symbolId);
+    }
+
+    /**
+     * The global budget on its own.
+     */
+    @Benchmark
+    public boolean isAllowed() {
+        return slidingWindow.isAllowed();
+    }
+}
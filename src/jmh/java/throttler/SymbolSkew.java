@@ -0,0 +1,43 @@
+package throttler;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * How the updates of a benchmark are spread over the symbol universe. Real feeds are heavily skewed, a handful of symbols tick most of the time.
+ */
+public enum SymbolSkew {
+    UNIFORM {
+        @Override
+        int[] symbolIds(int noOfSymbols, int noOfUpdates, SplittableRandom random) {
+            int[] symbolIds = new int[noOfUpdates];
+            Arrays.setAll(symbolIds, i -> random.nextInt(noOfSymbols));
+            return symbolIds;
+        }
+    },
+    /**
+     * Zipf with exponent 1, sampled by a binary search over the precomputed cumulative distribution.
+     */
+    ZIPF {
+        @Override
+        int[] symbolIds(int noOfSymbols, int noOfUpdates, SplittableRandom random) {
+            double[] cumulative = new double[noOfSymbols];
+            double   sum        = 0;
+            for (int rank = 0; rank < noOfSymbols; rank++) {
+                sum += 1.0 / (rank + 1);
+                cumulative[rank] = sum;
+            }
+            int[] symbolIds = new int[noOfUpdates];
+            for (int i = 0; i < noOfUpdates; i++) {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                symbolIds[i] = Math.min(rank < 0 ? -rank - 1 : rank, noOfSymbols - 1);
+            }
+            return symbolIds;
+        }
+    };
+
+    /**
+     * Precomputed so that drawing the next symbol costs nothing inside the measured loop.
+     */
+    abstract int[] symbolIds(int noOfSymbols, int noOfUpdates, SplittableRandom random);
+}
@@ -0,0 +1,82 @@
+package throttler;
+
+import interfaces.IMarketDataProcessor;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.SymbolRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single publishData pass with a backlog of pending symbols. Every iteration starts from a fresh queue and publisher so it is measured single shot.
+ * FIRST_PASS is the pass which finds the whole backlog newly pending, BACKLOGGED the next one, with the budget spent and the backlog still waiting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+public class ThrottledPublisherBenchmark {
+    public enum Pass { FIRST_PASS, BACKLOGGED }
+
+    @Param({"1", "10000", "1000000"})
+    private int noOfPendingSymbols;
+    @Param({"FIRST_PASS", "BACKLOGGED"})
+    private Pass pass;
+
+    private SymbolRegistry     symbolRegistry;
+    private ThrottledPublisher throttledPublisher;
+    private long               noOfPublishes;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        LogManager.getRootLogger().setLevel(org.apache.log4j.Level.OFF);
+        symbolRegistry = new SymbolRegistry(noOfPendingSymbols);
+        for (int symbolId = 0; symbolId < noOfPendingSymbols; symbolId++) {
+            symbolRegistry.register("A" + symbolId);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        ConflatingQueue conflatingQueue = new ConflatingQueue(symbolRegistry);//The registry is shared as interning a million symbols is not what is measured
+        for (int symbolId = 0; symbolId < noOfPendingSymbols; symbolId++) {
+            conflatingQueue.offer(symbolId, symbolId, symbolId, symbolId, symbolId);
+        }
+        throttledPublisher = new ThrottledPublisher(conflatingQueue, new CountingProcessor(), 100, 1, RateLimiterType.SLIDING_LOG);
+        if (pass == Pass.BACKLOGGED) {
+            throttledPublisher.publishData();
+        }
+    }
+
+    @Benchmark
+    public long publishData() {
+        throttledPublisher.publishData();
+        return noOfPublishes;
+    }
+
+    private class CountingProcessor implements IMarketDataProcessor {
+        @Override
+        public void publishAggregatedMarketData(MarketData data) {
+            noOfPublishes++;
+        }
+
+        @Override
+        public void onMessage(MarketData data) {
+        }
+    }
+}
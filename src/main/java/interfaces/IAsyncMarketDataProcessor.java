@@ -0,0 +1,10 @@
+package interfaces;
+
+import pojo.MarketData;
+
+public interface IAsyncMarketDataProcessor extends IMarketDataProcessor {
+    /**
+     * Returns straight away, the outcome is reported through listener.onAck with the same symbolId and publishTimeNanos.
+     */
+    void publishAggregatedMarketData(MarketData data, int symbolId, long publishTimeNanos, IPublishAckListener listener);
+}
@@ -0,0 +1,10 @@
+package interfaces;
+
+import pojo.MarketDataBasket;
+
+public interface IBasketMarketDataProcessor extends IMarketDataProcessor {
+    /**
+     * The basket gets reused once the call returns.
+     */
+    void publishAggregatedMarketData(MarketDataBasket basket);
+}
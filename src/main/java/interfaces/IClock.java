@@ -0,0 +1,14 @@
+package interfaces;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time source of the sliding window and the throttled publisher, the wall clock live and virtual time in the ThrottleSimulator and in tests.
+ */
+public interface IClock {
+    long epochNanos();
+
+    default long epochMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(epochNanos());
+    }
+}
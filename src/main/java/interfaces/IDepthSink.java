@@ -0,0 +1,10 @@
+package interfaces;
+
+import pojo.LevelAction;
+
+public interface IDepthSink {
+    /**
+     * @param side Price.BID or Price.ASK
+     */
+    void onLevel(int symbolId, int side, LevelAction action, double price, double size, long updateTimeNanos);
+}
@@ -0,0 +1,7 @@
+package interfaces;
+
+import pojo.MarketData;
+
+public interface IFeedHandler {
+    void onMessage(MarketData data);
+}
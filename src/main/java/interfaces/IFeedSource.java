@@ -0,0 +1,17 @@
+package interfaces;
+
+import pojo.SymbolRegistry;
+
+/**
+ * Feed the ThrottleSimulator steps through in virtual time, opened again for every run so candidate settings are compared on the same ticks.
+ */
+public interface IFeedSource {
+    void open(SymbolRegistry symbolRegistry, long startEpochNanos);
+
+    /**
+     * @return epoch nanos the next tick arrives at, Long.MAX_VALUE once the feed is over
+     */
+    long peekTime();
+
+    void next(ITickSink tickSink);
+}
@@ -0,0 +1,11 @@
+package interfaces;
+
+/**
+ * Written by the feed thread which owns the slot, so writes for one symbol never race and writes for different symbols run in parallel.
+ */
+public interface ILatestValueStore {
+    /**
+     * @param version the slot's sequence once the write is complete, even and higher than any version written for the symbol before
+     */
+    void write(int symbolId, long version, double bid, double ask, double last, long updateTimeNanos);
+}
@@ -2,7 +2,6 @@ package interfaces;
 
 import pojo.MarketData;
 
-public interface IMarketDataProcessor {
+public interface IMarketDataProcessor extends IFeedHandler {
     void publishAggregatedMarketData(MarketData data);
-    void onMessage(MarketData data);
 }
@@ -0,0 +1,10 @@
+package interfaces;
+
+import pojo.OrderBookSnapshot;
+
+public interface IOrderBookMarketDataProcessor extends IMarketDataProcessor {
+    /**
+     * The snapshot gets reused once the call returns.
+     */
+    void publishOrderBook(OrderBookSnapshot book);
+}
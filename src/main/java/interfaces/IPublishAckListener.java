@@ -0,0 +1,8 @@
+package interfaces;
+
+public interface IPublishAckListener {
+    /**
+     * Can be called from any thread, exactly once per publish.
+     */
+    void onAck(int symbolId, long publishTimeNanos, boolean success);
+}
@@ -0,0 +1,28 @@
+package interfaces;
+
+/**
+ * Global publish budget of the sliding window. Checking and consuming are separate steps so an attempt rejected for any other reason does not use up a slot.
+ * Implementations are not thread safe, they are owned by the publisher thread.
+ */
+public interface IRateLimiter {
+    boolean canAcquire(long now);
+
+    /**
+     * Should only be called after canAcquire returned true for the same now.
+     */
+    void acquire(long now);
+
+    long nextAvailableTime(long now);
+
+    int getSize();
+
+    int getMaxRequestPerInterval();
+
+    default boolean tryAcquire(long now) {
+        if (canAcquire(now)) {
+            acquire(now);
+            return true;
+        }
+        return false;
+    }
+}
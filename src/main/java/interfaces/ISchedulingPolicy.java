@@ -0,0 +1,31 @@
+package interfaces;
+
+/**
+ * Decides which of the symbols that are pending and out of their own window get the global budget first. Only ever touched by the publisher thread.
+ */
+public interface ISchedulingPolicy {
+    int EMPTY = -1;
+
+    /**
+     * @param staleSince time in millis since which downstream has been missing an update of the symbol,
+     *                   i.e. its last publish or its first tick after that, whichever is later
+     */
+    void add(int symbolId, long staleSince);
+
+    int peek();
+
+    int poll();
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return whether the policy has a setting of the symbol's own, e.g. a weight, which would go to another symbol along with its id
+     */
+    default boolean isConfigured(int symbolId) {
+        return false;
+    }
+}
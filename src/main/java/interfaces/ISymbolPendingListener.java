@@ -0,0 +1,13 @@
+package interfaces;
+
+public interface ISymbolPendingListener {
+    /**
+     * Called on the feed thread whenever a symbol moves from clean to dirty in the conflating queue, i.e. at most once per symbol between two takes.
+     */
+    void onSymbolPending(int symbolId);
+
+    /**
+     * Called when the publisher has work which is not a pending symbol, e.g. a subscriber attaching to or detaching from a fan-out publisher.
+     */
+    void onWakeUp();
+}
@@ -2,4 +2,14 @@ package interfaces;
 
 public interface IThrottledPublisher {
     void publishData();
+
+    /**
+     * @return the earliest time in millis at which the next publishData could publish something, Long.MAX_VALUE if nothing is pending
+     */
+    long getNextPublishTime();
+
+    /**
+     * @return the clock getNextPublishTime is on
+     */
+    IClock getClock();
 }
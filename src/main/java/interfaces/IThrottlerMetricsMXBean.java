@@ -0,0 +1,58 @@
+package interfaces;
+
+/**
+ * Management view of a throttled publisher. Latencies and stalenesses describe the last snapshot interval, counters are totals since start.
+ */
+public interface IThrottlerMetricsMXBean {
+    /**
+     * @return every update received, the evicted symbols' included like their publishes are in getNoOfPublishes
+     */
+    long getNoOfUpdatesReceived();
+
+    long getNoOfPublishes();
+
+    double getConflationRatio();
+
+    /**
+     * @return the symbol's ratio since it got its id, what an evicted symbol had under the id does not count
+     */
+    double getConflationRatio(String symbol);
+
+    /**
+     * @return ready symbols held back as the global budget was used up, a symbol counts once for every pass it is left waiting
+     */
+    long getNoOfDeniedByGlobalLimit();
+
+    /**
+     * @return symbols which had an update within their own window, a symbol counts once for every time it is put back to wait out its window
+     */
+    long getNoOfDeniedBySymbolLimit();
+
+    long getNoOfSuppressedUpdates();
+
+    long getNoOfEvictedSymbols();
+
+    int getPendingSymbols();
+
+    /**
+     * @return 0 to 1
+     */
+    double getWindowUtilisation();
+
+    long getTickToPublishLatencyP50Micros();
+
+    long getTickToPublishLatencyP99Micros();
+
+    long getTickToPublishLatencyP999Micros();
+
+    long getTickToPublishLatencyMaxMicros();
+
+    /**
+     * @return how long downstream had been missing an update of a symbol by the time it got published, in millis
+     */
+    long getStalenessP50Millis();
+
+    long getStalenessP99Millis();
+
+    long getStalenessMaxMillis();
+}
@@ -0,0 +1,5 @@
+package interfaces;
+
+public interface ITickSink {
+    void onTick(int symbolId, double bid, double ask, double last, long updateTimeNanos);
+}
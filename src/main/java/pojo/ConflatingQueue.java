@@ -1,65 +1,359 @@
 package pojo;
 
+import interfaces.ILatestValueStore;
+import interfaces.ISymbolPendingListener;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
-import java.util.*;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Multi producer, single consumer conflating queue. Any number of feed threads can offer concurrently while the throttled publisher
+ * peeks and takes without ever taking a lock.
+ * Every symbol is interned to a dense id by the symbol registry once at ingress and owns a preallocated slot of primitive fields at that index.
+ * Ticks are copied into the slot (latest wins) under a seqlock: a writer moves the slot's sequence to odd, writes the fields and moves it to the next even
+ * number, so the publisher reads a consistent snapshot by retrying until it sees the same even sequence before and after, without locking or allocating.
+ * The symbol id is put on the dirty symbols ring only when it moves from clean to dirty, so it appears at most once in the ring and the publisher sees symbols in the order they first became pending.
+ */
 @Getter @Setter @ToString @EqualsAndHashCode
 public class ConflatingQueue {
 
-    private final Map<String, MarketData> marketDataSymbolMap;
-    private final Queue<String>           symbols;
-    private final Set<String>             pendingSymbolsForPublishing;
+    private final SymbolRegistry            symbolRegistry;
+    private final AtomicLongArray           sequences; //seqlock per slot, odd while a write is in progress, 0 if never written
+    private final double[]                  bids;
+    private final double[]                  asks;
+    private final double[]                  lasts;
+    private final long[]                    updateTimesNanos;
+    private final long[]                    takenSequences; //sequence of the last snapshot taken per slot, only touched by the consumer
+    private final long[]                    ingressSequences; //order of the tick in the slot for the ordered offer, only touched while owning the slot
+    private final AtomicIntegerArray        pendingSymbolsForPublishing; //dirty flag per symbol id, a symbol only enters the ring when its flag gets raised
+    private final SymbolRing                symbols;
+    @ToString.Exclude @EqualsAndHashCode.Exclude
+    private final MarketDataSnapshot        snapshot = new MarketDataSnapshot(); //scratch for the MarketData adapters, consumer thread only
+    @ToString.Exclude @EqualsAndHashCode.Exclude
+    private volatile ISymbolPendingListener symbolPendingListener;
+    @ToString.Exclude @EqualsAndHashCode.Exclude
+    private volatile ILatestValueStore      latestValueStore; //written through while owning the slot
+    @ToString.Exclude @EqualsAndHashCode.Exclude
+    private DepthBooks                      depthBooks;
 
     public ConflatingQueue(int size) {
-        marketDataSymbolMap         = new HashMap<>(size);
-        symbols                     = new ArrayDeque<>(5000);
-        pendingSymbolsForPublishing = Collections.synchronizedSet(new LinkedHashSet<>()); //maintains insertion order concurrently
+        this(new SymbolRegistry(size));
+    }
+
+    public ConflatingQueue(SymbolRegistry symbolRegistry) {
+        int capacity                = symbolRegistry.capacity();
+        this.symbolRegistry         = symbolRegistry;
+        sequences                   = new AtomicLongArray(capacity);
+        bids                        = new double[capacity];
+        asks                        = new double[capacity];
+        lasts                       = new double[capacity];
+        updateTimesNanos            = new long[capacity];
+        takenSequences              = new long[capacity];
+        ingressSequences            = new long[capacity];
+        pendingSymbolsForPublishing = new AtomicIntegerArray(capacity);
+        symbols                     = new SymbolRing(capacity);
+        symbolRegistry.setReusable(symbolId -> !isPending(symbolId));//a tick which raced with the release still goes out under the released symbol
     }
 
     /**
-     * Conflation queue puts the latest market data for every symbol in the map. It gets overwritten for every symbol.
-     * The key is the conflation key which is used for conflating the entries as when the queue is called, the latest data for the key is fetched.
+     * Conflation queue puts the latest market data for every symbol in its slot. It gets overwritten for every symbol.
+     * The symbol is the conflation key, it is interned here once and the id is used for everything downstream.
      * @param marketData
      */
     public void offer(MarketData marketData) {
-        String symbol = marketData.getSymbol();
-        if(!marketDataSymbolMap.containsKey(symbol)){
-            symbols.add(symbol);
+        offer(symbolRegistry.register(marketData.getSymbol()), marketData);
+    }
+
+    public void offer(int symbolId, MarketData marketData) {
+        Price price = marketData.getPrice();
+        offer(symbolId, price.getBid(), price.getAsk(), price.getLast(), MarketData.toEpochNanos(marketData.getUpdateTime()));
+    }
+
+    /**
+     * The slot is written before the dirty flag is raised so whoever clears the dirty flag afterwards is guaranteed to see this update.
+     */
+    public void offer(int symbolId, double bid, double ask, double last, long updateTimeNanos) {
+        long sequence = beginWrite(symbolId);
+        write(symbolId, sequence, bid, ask, last, updateTimeNanos);
+        markPending(symbolId);
+    }
+
+    /**
+     * Ordered variant, a tick older than the one in the slot is ignored. The check is done while owning the slot so it is atomic with the write.
+     */
+    public boolean offer(int symbolId, double bid, double ask, double last, long updateTimeNanos, long ingressSequence) {
+        long sequence = beginWrite(symbolId);
+        if (ingressSequence < ingressSequences[symbolId]) {
+            sequences.set(symbolId, sequence);//nothing changed, so readers which started before still read a consistent slot
+            return false;
         }
-        marketDataSymbolMap.put(symbol, marketData);
-        pendingSymbolsForPublishing.add(symbol);//This is for the throttled publisher to pull
+        ingressSequences[symbolId] = ingressSequence;
+        write(symbolId, sequence, bid, ask, last, updateTimeNanos);
+        markPending(symbolId);
+        return true;
+    }
+
+    /**
+     * Ticks of a depth feed have to come in through offerLevel only. Call before any feed thread starts.
+     */
+    public void enableDepth(int depth) {
+        depthBooks = new DepthBooks(symbolRegistry.capacity(), depth);
     }
 
     /**
-     * Gets the latest market data for the symbol from the map
+     * Applies the level update to the symbol's book in place under the slot's seqlock, so the updates between two publishes merge into the book.
+     * The depth mode check comes before the slot is owned so readers never wait on it.
+     */
+    public void offerLevel(int symbolId, int side, LevelAction action, double price, double size, long updateTimeNanos) {
+        if (depthBooks == null) {
+            throw new IllegalStateException("Level updates need a conflating queue in depth mode, see enableDepth");
+        }
+        long sequence = beginWrite(symbolId);
+        depthBooks.apply(symbolId, side, action, price, size);
+        write(symbolId, sequence, depthBooks.getBestBid(symbolId), depthBooks.getBestAsk(symbolId), lasts[symbolId], updateTimeNanos);
+        markPending(symbolId);
+    }
+
+    private void write(int symbolId, long sequence, double bid, double ask, double last, long updateTimeNanos) {
+        bids[symbolId]             = bid;
+        asks[symbolId]             = ask;
+        lasts[symbolId]            = last;
+        updateTimesNanos[symbolId] = updateTimeNanos;
+        ILatestValueStore store = latestValueStore;
+        if (store != null) {
+            store.write(symbolId, sequence + 2, bid, ask, last, updateTimeNanos);
+        }
+        sequences.set(symbolId, sequence + 2);
+    }
+
+    /**
+     * Puts back a slot saved before a restart with its original version so versions never go backwards. Only to be called before any feed thread or consumer starts.
+     */
+    public void restore(int symbolId, long version, long takenVersion, double bid, double ask, double last, long updateTimeNanos) {
+        bids[symbolId]             = bid;
+        asks[symbolId]             = ask;
+        lasts[symbolId]            = last;
+        updateTimesNanos[symbolId] = updateTimeNanos;
+        takenSequences[symbolId]   = takenVersion;
+        sequences.set(symbolId, version);
+        if (version != takenVersion) {
+            markPending(symbolId);
+        }
+    }
+
+    private void markPending(int symbolId) {
+        if (pendingSymbolsForPublishing.get(symbolId) == 0 && pendingSymbolsForPublishing.compareAndSet(symbolId, 0, 1)) {
+            enqueue(symbolId);//This is for the throttled publisher to pull
+            ISymbolPendingListener listener = symbolPendingListener;
+            if (listener != null) {
+                listener.onSymbolPending(symbolId);
+            }
+        }
+    }
+
+    /**
+     * Several feed threads may write the same symbol, the one which moves the sequence from even to odd owns the slot until it is even again.
+     */
+    private long beginWrite(int symbolId) {
+        while (true) {
+            long sequence = sequences.get(symbolId);
+            if ((sequence & 1) == 0 && sequences.compareAndSet(symbolId, sequence, sequence + 1)) {
+                return sequence;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Copies a consistent view of the symbol's slot into the snapshot, retrying while a feed thread is half way through a write.
+     * @return false if the symbol was never written
+     */
+    public boolean readSnapshot(int symbolId, MarketDataSnapshot snapshot) {
+        while (true) {
+            long sequence = sequences.get(symbolId);
+            if ((sequence & 1) == 1) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (sequence == 0) {
+                return false;
+            }
+            snapshot.setBid(bids[symbolId]);
+            snapshot.setAsk(asks[symbolId]);
+            snapshot.setLast(lasts[symbolId]);
+            snapshot.setUpdateTimeNanos(updateTimesNanos[symbolId]);
+            VarHandle.acquireFence();//the field reads above must not move below the re-read of the sequence
+            if (sequences.get(symbolId) == sequence) {
+                snapshot.setSymbolId(symbolId);
+                snapshot.setSequence(sequence);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Copies a consistent view of the symbol's book in depth mode, retrying while a feed thread is half way through an update.
+     * @return false if the symbol was never written
+     */
+    public boolean readBook(int symbolId, OrderBookSnapshot book) {
+        while (true) {
+            long sequence = sequences.get(symbolId);
+            if ((sequence & 1) == 1) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (sequence == 0) {
+                return false;
+            }
+            depthBooks.copyTo(symbolId, book);
+            book.setUpdateTimeNanos(updateTimesNanos[symbolId]);
+            VarHandle.acquireFence();//the reads above must not move below the re-read of the sequence
+            if (sequences.get(symbolId) == sequence) {
+                book.setSymbolId(symbolId);
+                book.setSequence(sequence);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Should only be called from the single consumer thread.
+     */
+    public boolean takeBook(int symbolId, OrderBookSnapshot book) {
+        pendingSymbolsForPublishing.set(symbolId, 0);
+        if (!readBook(symbolId, book) || book.getSequence() == takenSequences[symbolId]) {
+            return false;
+        }
+        takenSequences[symbolId] = book.getSequence();
+        return true;
+    }
+
+    /**
+     * Gets the latest market data for the symbol at the head of the queue and removes it.
+     * Should only be called from the single consumer thread.
      */
     public MarketData take() {
-        MarketData marketData = null;
-        if(!symbols.isEmpty()) {
-            String symbol = symbols.remove();
-            if(symbol!=null){
-                marketData = marketDataSymbolMap.remove(symbol);
+        int symbolId;
+        while ((symbolId = symbols.poll()) != SymbolRing.EMPTY) {
+            MarketData marketData = take(symbolId);
+            if (marketData != null) {
+                return marketData;
+            }
+            //The update for this entry was already returned by an earlier take which raced with the offer, so skip it
+        }
+        return null;
+    }
+
+    /**
+     * Removes the symbol at the head of the dirty ring but leaves it pending, i.e. the caller now owns the symbol until it calls take(symbolId)
+     * and further offers for it only overwrite the slot. Returns SymbolRing.EMPTY once the ring is drained.
+     * Should only be called from the single consumer thread.
+     */
+    public int pollPendingSymbolId() {
+        int symbolId;
+        while ((symbolId = symbols.poll()) != SymbolRing.EMPTY) {
+            if (hasUntakenUpdate(symbolId)) {
+                return symbolId;
             }
+            clearStale(symbolId);
+        }
+        return SymbolRing.EMPTY;
+    }
+
+    /**
+     * Gets the latest market data for a symbol handed out by pollPendingSymbolId and marks it clean, the next offer for it puts it back on the ring.
+     * Should only be called from the single consumer thread.
+     */
+    public MarketData take(int symbolId) {
+        return take(symbolId, snapshot) ? snapshot.toMarketData(symbolRegistry.getSymbol(symbolId)) : null;
+    }
+
+    /**
+     * The dirty flag is cleared before the slot is read, so an update racing with this call is either returned here or re-queues the symbol.
+     */
+    public boolean take(int symbolId, MarketDataSnapshot snapshot) {
+        pendingSymbolsForPublishing.set(symbolId, 0);
+        if (!readSnapshot(symbolId, snapshot) || snapshot.getSequence() == takenSequences[symbolId]) {
+            return false;
         }
-        return marketData;
+        takenSequences[symbolId] = snapshot.getSequence();
+        return true;
     }
+
     /**
-     * Peeks the latest market data for the symbol from the map
+     * Peeks the latest market data for the symbol at the head of the queue.
+     * Should only be called from the single consumer thread.
      */
     public MarketData peek() {
-        MarketData marketData = null;
-        if(!symbols.isEmpty()) {
-            String symbol = symbols.peek();
-            if(symbol!=null){
-                marketData = marketDataSymbolMap.get(symbol);
+        int symbolId = peekSymbolId();
+        return symbolId != SymbolRing.EMPTY && readSnapshot(symbolId, snapshot) ? snapshot.toMarketData(symbolRegistry.getSymbol(symbolId)) : null;
+    }
+
+    /**
+     * Id of the symbol at the head of the queue, or SymbolRing.EMPTY if nothing is pending.
+     * Should only be called from the single consumer thread.
+     */
+    public int peekSymbolId() {
+        int symbolId;
+        while ((symbolId = symbols.peek()) != SymbolRing.EMPTY) {
+            if (hasUntakenUpdate(symbolId)) {
+                return symbolId;
             }
+            dropStaleHead(symbolId);
+        }
+        return SymbolRing.EMPTY;
+    }
+
+    /**
+     * Lets go of a symbol handed out by pollPendingSymbolId whose latest update was taken already, an update which slips in meanwhile puts it back on the ring.
+     * Should only be called from the single consumer thread.
+     */
+    public boolean dropIfTaken(int symbolId) {
+        if (hasUntakenUpdate(symbolId)) {
+            return false;
+        }
+        clearStale(symbolId);
+        return true;
+    }
+
+    /**
+     * A write in progress counts as an update, its sequence will end up above the taken one.
+     */
+    private boolean hasUntakenUpdate(int symbolId) {
+        long sequence = sequences.get(symbolId);
+        return sequence != 0 && sequence != takenSequences[symbolId];
+    }
+
+    private void dropStaleHead(int symbolId) {
+        symbols.poll();
+        clearStale(symbolId);
+    }
+
+    /**
+     * The update for the entry was already returned by an earlier take which raced with the offer, so the entry is dropped.
+     * An update which slipped in after the slot was read must not be lost, hence the re-check once the dirty flag is cleared.
+     */
+    private void clearStale(int symbolId) {
+        pendingSymbolsForPublishing.set(symbolId, 0);
+        if (hasUntakenUpdate(symbolId) && pendingSymbolsForPublishing.compareAndSet(symbolId, 0, 1)) {
+            enqueue(symbolId);
+        }
+    }
+
+    /**
+     * Only for a symbol whose pending flag the caller has just set, so a symbol is in the ring at most once and the ring, as big as the registry,
+     * always has room. Should it not, the flag is cleared again rather than leave a symbol marked pending which nobody would ever publish.
+     */
+    private void enqueue(int symbolId) {
+        if (!symbols.offer(symbolId)) {
+            pendingSymbolsForPublishing.set(symbolId, 0);
+            throw new IllegalStateException("No room for symbol id " + symbolId + " in the pending symbols, which has a slot per symbol");
         }
-        return marketData;
     }
 
     public boolean isEmpty() {
@@ -70,11 +364,47 @@ public class ConflatingQueue {
         return symbols.size();
     }
 
+    /**
+     * Counted by the seqlock for free. Safe to call from any thread.
+     */
+    public long getNoOfUpdates(int symbolId) {
+        return sequences.get(symbolId) >>> 1;
+    }
+
+    /**
+     * Only ever goes up, odd while a write is in progress, 0 if never written. Safe to call from any thread.
+     */
+    public long getVersion(int symbolId) {
+        return sequences.get(symbolId);
+    }
+
+    /**
+     * Should only be called from the single consumer thread.
+     */
+    public void retry(int symbolId) {
+        takenSequences[symbolId] = 0;
+        if (sequences.get(symbolId) != 0) {
+            markPending(symbolId);
+        }
+    }
+
+    /**
+     * Consumer thread only.
+     */
+    public long getTakenVersion(int symbolId) {
+        return takenSequences[symbolId];
+    }
+
+    public boolean isPending(int symbolId) {
+        return pendingSymbolsForPublishing.get(symbolId) == 1;
+    }
+
     public MarketData getMarketData(String symbol){
         //Ideally should make this private as only used in tests and then use Whitebox.invokeMethod for private method testing
-        if (marketDataSymbolMap.containsKey(symbol)){
-            return marketDataSymbolMap.get(symbol);
+        int symbolId = symbolRegistry.getSymbolId(symbol);
+        if (symbolId == SymbolRegistry.UNKNOWN_SYMBOL || !hasUntakenUpdate(symbolId) || !readSnapshot(symbolId, snapshot)) {
+            return null;
         }
-        return null;
+        return snapshot.toMarketData(symbol);
     }
 }
@@ -0,0 +1,117 @@
+package pojo;
+
+/**
+ * Fixed depth books of every symbol slot in primitive arrays, the levels of a symbol's side are depth consecutive entries, best first.
+ * Not thread safe on its own, the conflating queue applies updates while owning the symbol's slot.
+ */
+public class DepthBooks {
+    public static final int MAX_DEPTH = Long.SIZE; //a level per bit of the changed masks
+
+    private final int      depth;
+    private final double[] bidPrices;
+    private final double[] bidSizes;
+    private final double[] askPrices;
+    private final double[] askSizes;
+    private final int[]    noOfBidLevels;
+    private final int[]    noOfAskLevels;
+
+    public DepthBooks(int capacity, int depth) {
+        if (depth <= 0 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth has to be between 1 and " + MAX_DEPTH + ", not " + depth);
+        }
+        this.depth    = depth;
+        bidPrices     = new double[capacity * depth];
+        bidSizes      = new double[capacity * depth];
+        askPrices     = new double[capacity * depth];
+        askSizes      = new double[capacity * depth];
+        noOfBidLevels = new int[capacity];
+        noOfAskLevels = new int[capacity];
+    }
+
+    /**
+     * @param size a MODIFY to a size of 0 or less deletes the level
+     */
+    public void apply(int symbolId, int side, LevelAction action, double price, double size) {
+        boolean  bid    = side == Price.BID;
+        double[] prices = bid ? bidPrices : askPrices;
+        double[] sizes  = bid ? bidSizes : askSizes;
+        int[]    counts = bid ? noOfBidLevels : noOfAskLevels;
+        int      base   = symbolId * depth;
+        int      count  = counts[symbolId];
+        int      level  = 0;
+        while (level < count && (bid ? prices[base + level] > price : prices[base + level] < price)) {
+            level++;
+        }
+        boolean found = level < count && prices[base + level] == price;
+        if (action == LevelAction.DELETE || (found && size <= 0)) {
+            if (found) {
+                System.arraycopy(prices, base + level + 1, prices, base + level, count - level - 1);
+                System.arraycopy(sizes, base + level + 1, sizes, base + level, count - level - 1);
+                counts[symbolId] = count - 1;
+            }
+        } else if (found) {
+            sizes[base + level] = size;
+        } else if (level < depth && size > 0) {//a level worse than a full book's worst is out of view
+            int moved = Math.min(count, depth - 1) - level;
+            System.arraycopy(prices, base + level, prices, base + level + 1, moved);
+            System.arraycopy(sizes, base + level, sizes, base + level + 1, moved);
+            prices[base + level] = price;
+            sizes[base + level]  = size;
+            counts[symbolId]     = Math.min(count + 1, depth);
+        }
+    }
+
+    public double getBestBid(int symbolId) {
+        return noOfBidLevels[symbolId] == 0 ? Double.NaN : bidPrices[symbolId * depth];
+    }
+
+    public double getBestAsk(int symbolId) {
+        return noOfAskLevels[symbolId] == 0 ? Double.NaN : askPrices[symbolId * depth];
+    }
+
+    /**
+     * Copies the symbol's levels into the snapshot, the caller makes sure no update is applied meanwhile or reads again if one was.
+     */
+    public void copyTo(int symbolId, OrderBookSnapshot book) {
+        int base = symbolId * depth;
+        int bids = Math.min(noOfBidLevels[symbolId], depth);
+        int asks = Math.min(noOfAskLevels[symbolId], depth);
+        System.arraycopy(bidPrices, base, book.getBidPrices(), 0, bids);
+        System.arraycopy(bidSizes, base, book.getBidSizes(), 0, bids);
+        System.arraycopy(askPrices, base, book.getAskPrices(), 0, asks);
+        System.arraycopy(askSizes, base, book.getAskSizes(), 0, asks);
+        book.setNoOfBidLevels(bids);
+        book.setNoOfAskLevels(asks);
+    }
+
+    /**
+     * For a copy of the books as they were last published.
+     */
+    public void recordChanges(OrderBookSnapshot book) {
+        int symbolId = book.getSymbolId();
+        book.setChangedBidLevels(changedLevels(symbolId, bidPrices, bidSizes, noOfBidLevels[symbolId], book.getBidPrices(), book.getBidSizes(), book.getNoOfBidLevels()));
+        book.setChangedAskLevels(changedLevels(symbolId, askPrices, askSizes, noOfAskLevels[symbolId], book.getAskPrices(), book.getAskSizes(), book.getNoOfAskLevels()));
+        int base = symbolId * depth;
+        System.arraycopy(book.getBidPrices(), 0, bidPrices, base, book.getNoOfBidLevels());
+        System.arraycopy(book.getBidSizes(), 0, bidSizes, base, book.getNoOfBidLevels());
+        System.arraycopy(book.getAskPrices(), 0, askPrices, base, book.getNoOfAskLevels());
+        System.arraycopy(book.getAskSizes(), 0, askSizes, base, book.getNoOfAskLevels());
+        noOfBidLevels[symbolId] = book.getNoOfBidLevels();
+        noOfAskLevels[symbolId] = book.getNoOfAskLevels();
+    }
+
+    private long changedLevels(int symbolId, double[] prices, double[] sizes, int count, double[] newPrices, double[] newSizes, int newCount) {
+        int  base    = symbolId * depth;
+        long changed = 0;
+        for (int level = 0; level < Math.max(count, newCount); level++) {
+            if (level >= count || level >= newCount || prices[base + level] != newPrices[level] || sizes[base + level] != newSizes[level]) {
+                changed |= 1L << level;
+            }
+        }
+        return changed;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+}
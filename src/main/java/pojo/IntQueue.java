@@ -0,0 +1,62 @@
+package pojo;
+
+import java.util.Arrays;
+
+/**
+ * Single threaded FIFO of primitive ints backed by a growable ring, so queueing symbol ids never boxes or allocates in steady state.
+ */
+public class IntQueue {
+    public static final int EMPTY = -1;
+
+    private int[] elements;
+    private int   head;
+    private int   size;
+
+    public IntQueue(int initialCapacity) {
+        elements = new int[Math.max(2, initialCapacity)];
+    }
+
+    public void add(int element) {
+        if (size == elements.length) {
+            grow();
+        }
+        int tail = head + size;
+        elements[tail >= elements.length ? tail - elements.length : tail] = element;
+        size++;
+    }
+
+    public int peek() {
+        return size == 0 ? EMPTY : elements[head];
+    }
+
+    public int poll() {
+        if (size == 0) {
+            return EMPTY;
+        }
+        int element = elements[head];
+        head = head + 1 == elements.length ? 0 : head + 1;
+        size--;
+        return element;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        int[] grown = Arrays.copyOf(elements, elements.length * 2);
+        if (head > 0) {//unwrap so that the elements are contiguous from head again
+            System.arraycopy(elements, 0, grown, elements.length, head);
+        }
+        elements = grown;
+    }
+}
@@ -0,0 +1,13 @@
+package pojo;
+
+/**
+ * What an incremental depth update does to the level at its price, see ConflatingQueue.offerLevel.
+ */
+public enum LevelAction {
+    /** The worse levels move down, the worst one falls off a full book */
+    ADD,
+    /** A level the book does not have yet is added */
+    MODIFY,
+    /** The worse levels move up, the feed sends the level which comes into view as an ADD */
+    DELETE
+}
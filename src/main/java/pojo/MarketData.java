@@ -7,6 +7,8 @@ import java.time.Instant;
 
 @NoArgsConstructor @Getter @Setter @EqualsAndHashCode @ToString @Builder
 public class MarketData {
+    public static final long NO_UPDATE_TIME = Long.MIN_VALUE;
+
     private Instant updateTime;
     private String  symbol;
     private Price   price;
@@ -16,4 +18,25 @@ public class MarketData {
         this.symbol     = symbol;
         this.price      = price;
     }
-}
\ No newline at end of file
+
+    /**
+     * Epoch nanos as carried in the conflation slots, saturating for instants a long of nanos cannot hold (e.g. Instant.MIN).
+     */
+    public static long toEpochNanos(Instant instant) {
+        if (instant == null) {
+            return NO_UPDATE_TIME;
+        }
+        long epochSecond = instant.getEpochSecond();
+        if (epochSecond >= Long.MAX_VALUE / 1_000_000_000L) {
+            return Long.MAX_VALUE;
+        }
+        if (epochSecond <= Long.MIN_VALUE / 1_000_000_000L) {
+            return NO_UPDATE_TIME + 1;
+        }
+        return epochSecond * 1_000_000_000L + instant.getNano();
+    }
+
+    public static Instant fromEpochNanos(long epochNanos) {
+        return epochNanos == NO_UPDATE_TIME ? null : Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L), Math.floorMod(epochNanos, 1_000_000_000L));
+    }
+}
@@ -0,0 +1,109 @@
+package pojo;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable batch of the latest market data of several symbols, only valid for the duration of the publishAggregatedMarketData call it is handed to.
+ */
+public class MarketDataBasket {
+    public static final int ENTRY_OVERHEAD_BYTES = 3 * Double.BYTES + Long.BYTES + Integer.BYTES;
+
+    @Getter
+    private final int      maxSize;
+    @Getter
+    private final int      maxBytes;
+    private final int[]    symbolIds;
+    private final String[] symbols;
+    private final double[] bids;
+    private final double[] asks;
+    private final double[] lasts;
+    private final long[]   updateTimesNanos;
+    @Getter
+    private int            size;
+    @Getter
+    private int            byteSize;
+
+    public MarketDataBasket(int maxSize, int maxBytes) {
+        this.maxSize          = maxSize;
+        this.maxBytes         = maxBytes;
+        this.symbolIds        = new int[maxSize];
+        this.symbols          = new String[maxSize];
+        this.bids             = new double[maxSize];
+        this.asks             = new double[maxSize];
+        this.lasts            = new double[maxSize];
+        this.updateTimesNanos = new long[maxSize];
+    }
+
+    public static int entryBytes(String symbol) {
+        return ENTRY_OVERHEAD_BYTES + symbol.length();
+    }
+
+    /**
+     * A single entry bigger than maxBytes still goes out on its own.
+     */
+    public boolean fits(String symbol) {
+        return size < maxSize && (size == 0 || byteSize + entryBytes(symbol) <= maxBytes);
+    }
+
+    public void add(String symbol, MarketDataSnapshot snapshot) {
+        add(symbol, snapshot, Price.ALL_FIELDS);
+    }
+
+    /**
+     * Delta entry, the prices not in fields are NaN. Still counted at its full size against maxBytes.
+     */
+    public void add(String symbol, MarketDataSnapshot snapshot, int fields) {
+        symbolIds[size]        = snapshot.getSymbolId();
+        symbols[size]          = symbol;
+        bids[size]             = (fields & Price.BID) == 0 ? Double.NaN : snapshot.getBid();
+        asks[size]             = (fields & Price.ASK) == 0 ? Double.NaN : snapshot.getAsk();
+        lasts[size]            = (fields & Price.LAST) == 0 ? Double.NaN : snapshot.getLast();
+        updateTimesNanos[size] = snapshot.getUpdateTimeNanos();
+        byteSize              += entryBytes(symbol);
+        size++;
+    }
+
+    public void clear() {
+        size     = 0;
+        byteSize = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getSymbolId(int i) {
+        return symbolIds[i];
+    }
+
+    public String getSymbol(int i) {
+        return symbols[i];
+    }
+
+    public double getBid(int i) {
+        return bids[i];
+    }
+
+    public double getAsk(int i) {
+        return asks[i];
+    }
+
+    public double getLast(int i) {
+        return lasts[i];
+    }
+
+    public long getUpdateTimeNanos(int i) {
+        return updateTimesNanos[i];
+    }
+
+    public List<MarketData> toMarketData() {
+        List<MarketData> marketData = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            marketData.add(new MarketData(MarketData.fromEpochNanos(updateTimesNanos[i]), symbols[i], new Price(bids[i], asks[i], lasts[i])));
+        }
+        return marketData;
+    }
+}
@@ -0,0 +1,107 @@
+package pojo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static pojo.MarketDataEncoder.*;
+
+/**
+ * Flyweight decoder of a frame written by MarketDataEncoder, only getSymbol and toMarketData allocate. Not thread safe.
+ */
+public class MarketDataDecoder {
+    private ByteBuffer buffer;
+    private int        frameOffset;
+    private int        entryOffset;
+    private int        nextEntryOffset;
+    private int        entryIndex;
+    private int        bidOffset; //-1 if the entry does not carry the price
+    private int        askOffset;
+    private int        lastOffset;
+    private int        symbolOffset;
+
+    public MarketDataDecoder wrap(ByteBuffer buffer, int offset) {
+        this.buffer          = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.frameOffset     = offset;
+        this.entryOffset     = -1;
+        this.nextEntryOffset = offset + FRAME_HEADER_SIZE;
+        this.entryIndex      = -1;
+        return this;
+    }
+
+    public int getFrameLength() {
+        return buffer.getInt(frameOffset + FRAME_LENGTH_OFFSET);
+    }
+
+    public int getNoOfEntries() {
+        return buffer.getInt(frameOffset + NO_OF_ENTRIES_OFFSET);
+    }
+
+    public long getSequence() {
+        return buffer.getLong(frameOffset + SEQUENCE_OFFSET);
+    }
+
+    /**
+     * @return false once all the frame's entries have been read
+     */
+    public boolean next() {
+        if (entryIndex + 1 >= getNoOfEntries()) {
+            return false;
+        }
+        entryOffset     = nextEntryOffset;
+        int fields      = getFields();
+        int position    = entryOffset + PRICES_OFFSET;
+        bidOffset       = (fields & Price.BID) == 0 ? -1 : position;
+        position       += (fields & Price.BID) == 0 ? 0 : Double.BYTES;
+        askOffset       = (fields & Price.ASK) == 0 ? -1 : position;
+        position       += (fields & Price.ASK) == 0 ? 0 : Double.BYTES;
+        lastOffset      = (fields & Price.LAST) == 0 ? -1 : position;
+        position       += (fields & Price.LAST) == 0 ? 0 : Double.BYTES;
+        symbolOffset    = position;
+        nextEntryOffset = symbolOffset + getSymbolLength();
+        entryIndex++;
+        return true;
+    }
+
+    /**
+     * @return NaN if the entry does not carry it, e.g. unchanged in a delta publish
+     */
+    public double getBid() {
+        return bidOffset < 0 ? Double.NaN : buffer.getDouble(bidOffset);
+    }
+
+    public double getAsk() {
+        return askOffset < 0 ? Double.NaN : buffer.getDouble(askOffset);
+    }
+
+    public double getLast() {
+        return lastOffset < 0 ? Double.NaN : buffer.getDouble(lastOffset);
+    }
+
+    public int getFields() {
+        return buffer.getInt(entryOffset + LENGTH_OFFSET) >>> FIELDS_SHIFT;
+    }
+
+    public long getUpdateTimeNanos() {
+        return buffer.getLong(entryOffset + UPDATE_TIME_OFFSET);
+    }
+
+    public int getSymbolLength() {
+        return buffer.getInt(entryOffset + LENGTH_OFFSET) & SYMBOL_LENGTH_MASK;
+    }
+
+    public byte getSymbolByte(int i) {
+        return buffer.get(symbolOffset + i);
+    }
+
+    public String getSymbol() {
+        char[] symbol = new char[getSymbolLength()];
+        for (int i = 0; i < symbol.length; i++) {
+            symbol[i] = (char) (getSymbolByte(i) & 0xFF);
+        }
+        return new String(symbol);
+    }
+
+    public MarketData toMarketData() {
+        return new MarketData(MarketData.fromEpochNanos(getUpdateTimeNanos()), getSymbol(), new Price(getBid(), getAsk(), getLast()));
+    }
+}
@@ -0,0 +1,96 @@
+package pojo;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Flyweight encoder of the binary wire format, absolute puts only so the buffer's position is left alone.
+ * Layout (little endian): a frame is a FRAME_HEADER_SIZE byte header of frame length, number of entries and sequence, followed by the entries.
+ * An entry is the symbol length with the Price field bits of the prices it carries in the high byte, the update time in epoch nanos, those of bid, ask
+ * and last which are not NaN and the symbol's bytes. Symbols are expected to be ASCII, any other char is truncated to its low byte.
+ */
+public class MarketDataEncoder {
+    public static final int FRAME_HEADER_SIZE     = 16;
+    static final int        FRAME_LENGTH_OFFSET   = 0;
+    static final int        NO_OF_ENTRIES_OFFSET  = 4;
+    static final int        SEQUENCE_OFFSET       = 8;
+    static final int        LENGTH_OFFSET         = 0;
+    static final int        UPDATE_TIME_OFFSET    = 4;
+    static final int        PRICES_OFFSET         = 12;
+    static final int        SYMBOL_LENGTH_MASK    = 0xFFFFFF;
+    static final int        FIELDS_SHIFT          = 24;
+
+    private ByteBuffer buffer;
+    private int        offset;
+    private int        limit;
+    private int        noOfEntries;
+
+    public MarketDataEncoder wrap(ByteBuffer buffer, int offset) {
+        this.buffer      = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.offset      = offset;
+        this.limit       = offset;
+        this.noOfEntries = 0;
+        return this;
+    }
+
+    /**
+     * A NaN price is left out of the entry and decodes as NaN.
+     */
+    public MarketDataEncoder encode(String symbol, double bid, double ask, double last, long updateTimeNanos) {
+        int symbolLength = symbol.length();
+        int fields       = (Double.isNaN(bid) ? 0 : Price.BID) | (Double.isNaN(ask) ? 0 : Price.ASK) | (Double.isNaN(last) ? 0 : Price.LAST);
+        int entryLength  = PRICES_OFFSET + Integer.bitCount(fields) * Double.BYTES + symbolLength;
+        if (limit + entryLength > buffer.capacity()) {
+            throw new BufferOverflowException();
+        }
+        buffer.putInt(limit + LENGTH_OFFSET, fields << FIELDS_SHIFT | symbolLength);
+        buffer.putLong(limit + UPDATE_TIME_OFFSET, updateTimeNanos);
+        int position = limit + PRICES_OFFSET;
+        position = putIfPresent(position, fields, Price.BID, bid);
+        position = putIfPresent(position, fields, Price.ASK, ask);
+        position = putIfPresent(position, fields, Price.LAST, last);
+        for (int i = 0; i < symbolLength; i++) {
+            buffer.put(position + i, (byte) symbol.charAt(i));
+        }
+        limit += entryLength;
+        noOfEntries++;
+        return this;
+    }
+
+    private int putIfPresent(int position, int fields, int field, double price) {
+        if ((fields & field) == 0) {
+            return position;
+        }
+        buffer.putDouble(position, price);
+        return position + Double.BYTES;
+    }
+
+    public MarketDataEncoder encode(MarketData data) {
+        Price price = data.getPrice();
+        return encode(data.getSymbol(), price.getBid(), price.getAsk(), price.getLast(), MarketData.toEpochNanos(data.getUpdateTime()));
+    }
+
+    public MarketDataEncoder encode(MarketDataBasket basket) {
+        for (int i = 0; i < basket.getSize(); i++) {
+            encode(basket.getSymbol(i), basket.getBid(i), basket.getAsk(i), basket.getLast(i), basket.getUpdateTimeNanos(i));
+        }
+        return this;
+    }
+
+    public int getEncodedLength() {
+        return limit - offset;
+    }
+
+    public int getNoOfEntries() {
+        return noOfEntries;
+    }
+
+    public static int encodeHeader(ByteBuffer buffer, int offset, long sequence, int noOfEntries, int entriesLength) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(offset + FRAME_LENGTH_OFFSET, FRAME_HEADER_SIZE + entriesLength);
+        buffer.putInt(offset + NO_OF_ENTRIES_OFFSET, noOfEntries);
+        buffer.putLong(offset + SEQUENCE_OFFSET, sequence);
+        return FRAME_HEADER_SIZE;
+    }
+}
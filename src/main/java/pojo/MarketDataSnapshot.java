@@ -0,0 +1,22 @@
+package pojo;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Reusable holder for a consistent read of one symbol's conflation slot.
+ */
+@Getter @Setter @ToString
+public class MarketDataSnapshot {
+    private int    symbolId;
+    private long   sequence;
+    private double bid;
+    private double ask;
+    private double last;
+    private long   updateTimeNanos;
+
+    public MarketData toMarketData(String symbol) {
+        return new MarketData(MarketData.fromEpochNanos(updateTimeNanos), symbol, new Price(bid, ask, last));
+    }
+}
@@ -0,0 +1,65 @@
+package pojo;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Reusable holder for a consistent read of one symbol's book in depth mode, level 0 is the best on each side.
+ */
+@Getter @Setter @ToString
+public class OrderBookSnapshot {
+    private int            symbolId;
+    private String         symbol;
+    private long           sequence;
+    private long           updateTimeNanos;
+    private int            noOfBidLevels;
+    private int            noOfAskLevels;
+    private final double[] bidPrices;
+    private final double[] bidSizes;
+    private final double[] askPrices;
+    private final double[] askSizes;
+    private long           changedBidLevels; //bit per level, a level which is gone since the previous publish counts as changed
+    private long           changedAskLevels;
+
+    public OrderBookSnapshot(int depth) {
+        bidPrices = new double[depth];
+        bidSizes  = new double[depth];
+        askPrices = new double[depth];
+        askSizes  = new double[depth];
+    }
+
+    public int getDepth() {
+        return bidPrices.length;
+    }
+
+    public double getBidPrice(int level) {
+        return bidPrices[level];
+    }
+
+    public double getBidSize(int level) {
+        return bidSizes[level];
+    }
+
+    public double getAskPrice(int level) {
+        return askPrices[level];
+    }
+
+    public double getAskSize(int level) {
+        return askSizes[level];
+    }
+
+    /**
+     * @return NaN if the side is empty
+     */
+    public double getBestBid() {
+        return noOfBidLevels == 0 ? Double.NaN : bidPrices[0];
+    }
+
+    /**
+     * @return NaN if the side is empty
+     */
+    public double getBestAsk() {
+        return noOfAskLevels == 0 ? Double.NaN : askPrices[0];
+    }
+}
@@ -9,6 +9,14 @@ import lombok.*;
 @ToString
 @EqualsAndHashCode
 public class Price {
+    /**
+     * Field bits, e.g. of the fields a delta publish carries.
+     */
+    public static final int BID        = 1;
+    public static final int ASK        = 2;
+    public static final int LAST       = 4;
+    public static final int ALL_FIELDS = BID | ASK | LAST;
+
     private double bid;
     private double ask;
     private double last;
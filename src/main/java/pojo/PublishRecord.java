@@ -0,0 +1,19 @@
+package pojo;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * One entry of the publish journal, reused by the reader for every record it decodes.
+ */
+@Getter @Setter @ToString
+public class PublishRecord {
+    private int    symbolId;
+    private int    windowSize; //size of the sliding window right after the publish
+    private double bid;
+    private double ask;
+    private double last;
+    private long   updateTimeNanos; //MarketData.NO_UPDATE_TIME if unknown
+    private long   publishTimeNanos;
+}
@@ -0,0 +1,132 @@
+package pojo;
+
+import interfaces.IClock;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntPredicate;
+
+/**
+ * Interns every symbol to a dense int id at ingress, so everything downstream is an array index instead of a String hash lookup.
+ * Ids are only reused once a symbol gone idle is released.
+ */
+public class SymbolRegistry {
+    public static final int  UNKNOWN_SYMBOL      = -1;
+    public static final long RELEASE_GRACE_NANOS = TimeUnit.SECONDS.toNanos(1); //a feed thread may still hold the id it looked up before the release
+
+    private final ConcurrentHashMap<String, Integer> symbolIds;
+    private final AtomicReferenceArray<String>       symbols;
+    private final AtomicInteger                      nextSymbolId = new AtomicInteger();
+    private int[]                                    releasedIds; //FIFO ring, guarded by this
+    private long[]                                   releaseTimesNanos;
+    private int                                      releasedHead;
+    private volatile int                             noOfReleased;
+    private volatile IntPredicate                    reusable = symbolId -> true;
+    private volatile IClock                          clock    = System::nanoTime;
+
+    public SymbolRegistry(int capacity) {
+        symbolIds = new ConcurrentHashMap<>(capacity);
+        symbols   = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Safe to be called from several feed threads.
+     */
+    public int register(String symbol) {
+        Integer symbolId = symbolIds.get(symbol);
+        if (symbolId != null) {
+            return symbolId;
+        }
+        return symbolIds.computeIfAbsent(symbol, this::assignSymbolId);
+    }
+
+    /**
+     * For a restore which puts symbols back under their old ids, call before the feed starts.
+     */
+    public void skipTo(int symbolId) {
+        if (symbolId > symbols.length()) {
+            throw new IllegalArgumentException("Symbol registry sized for " + symbols.length() + " symbols cannot skip to id " + symbolId);
+        }
+        nextSymbolId.accumulateAndGet(symbolId, Math::max);
+    }
+
+    private Integer assignSymbolId(String symbol) {
+        int symbolId = noOfReleased == 0 ? UNKNOWN_SYMBOL : reuseReleasedId();
+        while (symbolId == UNKNOWN_SYMBOL) {
+            int nextId = nextSymbolId.get();
+            if (nextId >= symbols.length()) {
+                throw new IllegalStateException("Symbol registry sized for " + symbols.length() + " symbols cannot register symbol " + symbol);
+            }
+            if (nextSymbolId.compareAndSet(nextId, nextId + 1)) {
+                symbolId = nextId;
+            }
+        }
+        symbols.set(symbolId, symbol);
+        return symbolId;
+    }
+
+    private synchronized int reuseReleasedId() {
+        if (noOfReleased == 0 || clock.epochNanos() - releaseTimesNanos[releasedHead] < RELEASE_GRACE_NANOS || !reusable.test(releasedIds[releasedHead])) {
+            return UNKNOWN_SYMBOL;
+        }
+        int symbolId = releasedIds[releasedHead];
+        releasedHead = releasedHead + 1 == releasedIds.length ? 0 : releasedHead + 1;
+        noOfReleased--;
+        return symbolId;
+    }
+
+    /**
+     * Until RELEASE_GRACE_NANOS is over getSymbol still names the released id, so a tick which raced with the release is published under the right name.
+     */
+    public boolean release(int symbolId) {
+        String symbol = symbols.get(symbolId);
+        if (symbol == null || !symbolIds.remove(symbol, symbolId)) {
+            return false;
+        }
+        synchronized (this) {
+            if (releasedIds == null) {
+                releasedIds       = new int[symbols.length()];
+                releaseTimesNanos = new long[symbols.length()];
+            }
+            int tail                = (releasedHead + noOfReleased) % releasedIds.length;
+            releasedIds[tail]       = symbolId;
+            releaseTimesNanos[tail] = clock.epochNanos();
+            noOfReleased++;
+        }
+        return true;
+    }
+
+    public void setReusable(IntPredicate reusable) {
+        this.reusable = reusable;
+    }
+
+    public void setClock(IClock clock) {
+        this.clock = clock;
+    }
+
+    public int getSymbolId(String symbol) {
+        Integer symbolId = symbolIds.get(symbol);
+        return symbolId == null ? UNKNOWN_SYMBOL : symbolId;
+    }
+
+    public String getSymbol(int symbolId) {
+        return symbols.get(symbolId);
+    }
+
+    /**
+     * @return ids handed out so far, released ones included
+     */
+    public int size() {
+        return nextSymbolId.get();
+    }
+
+    public int getNoOfActiveSymbols() {
+        return symbolIds.size();
+    }
+
+    public int capacity() {
+        return symbols.length();
+    }
+}
@@ -0,0 +1,72 @@
+package pojo;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free ring of dirty symbol ids. Many feed threads can offer concurrently (slots are claimed with a CAS on the tail)
+ * while a single publisher thread peeks and polls from the head. Nothing in here ever blocks or allocates.
+ */
+public class SymbolRing {
+    public static final int EMPTY = -1;
+
+    private final AtomicIntegerArray buffer; //holds symbolId + 1 so that the default 0 marks a free slot
+    private final int                mask;
+    private final AtomicLong         tail = new AtomicLong();
+    private volatile long            head;
+
+    public SymbolRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        buffer   = new AtomicIntegerArray(size);
+        mask     = size - 1;
+    }
+
+    /**
+     * @return false if the ring is full
+     */
+    public boolean offer(int symbolId) {
+        long currentTail;
+        do {
+            currentTail = tail.get();
+            if (currentTail - head >= buffer.length()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(currentTail, currentTail + 1));
+        buffer.lazySet((int) currentTail & mask, symbolId + 1);
+        return true;
+    }
+
+    /**
+     * Only to be called from the consumer thread. Returns EMPTY if the ring is empty or the producer which claimed the head slot has not published it yet.
+     */
+    public int peek() {
+        return buffer.get((int) head & mask) - 1;
+    }
+
+    /**
+     * Only to be called from the consumer thread.
+     */
+    public int poll() {
+        long currentHead = head;
+        int  index       = (int) currentHead & mask;
+        int  symbolId    = buffer.get(index) - 1;
+        if (symbolId != EMPTY) {
+            buffer.lazySet(index, 0);
+            head = currentHead + 1;
+        }
+        return symbolId;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int size() {
+        long currentHead = head;
+        return (int) (tail.get() - currentHead);
+    }
+
+    public int capacity() {
+        return buffer.length();
+    }
+}
@@ -0,0 +1,217 @@
+package pojo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Per symbol state kept only for the symbols which have some, in an open addressing table keyed by symbol id with linear probing and backward shift deletion.
+ * Layout of a record: symbol id + 1 (0 for a free slot, so a new table is free as it is) followed by the fields. Only touched by a single thread.
+ */
+public class SymbolStateStore {
+    public static final int NO_SYMBOL = -1;
+
+    private final int     noOfFields;
+    private final int     stride; //longs per record
+    private final int     minCapacity;
+    private final boolean offHeap;
+    private long[]        records;
+    private ByteBuffer    buffer;
+    private int           capacity; //a power of two
+    private int           size;
+
+    public SymbolStateStore(int noOfFields, int initialCapacity, boolean offHeap) {
+        if (noOfFields <= 0) {
+            throw new IllegalArgumentException("A record needs at least one field");
+        }
+        this.noOfFields  = noOfFields;
+        this.stride      = noOfFields + 1;
+        this.offHeap     = offHeap;
+        this.minCapacity = Integer.highestOneBit(Math.max(2, initialCapacity - 1)) << 1;
+        allocate(minCapacity);
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        if (offHeap) {
+            buffer  = ByteBuffer.allocateDirect(capacity * stride * Long.BYTES).order(ByteOrder.nativeOrder());
+        } else {
+            records = new long[capacity * stride];
+        }
+    }
+
+    /**
+     * @return the symbol's field, missing if the symbol has no record
+     */
+    public long get(int symbolId, int field, long missing) {
+        int slot = find(symbolId);
+        return slot < 0 ? missing : read(slot * stride + 1 + field);
+    }
+
+    public void put(int symbolId, int field, long value) {
+        write(slotOf(symbolId) * stride + 1 + field, value);
+    }
+
+    public long add(int symbolId, int field, long delta) {
+        int  index = slotOf(symbolId) * stride + 1 + field;
+        long value = read(index) + delta;
+        write(index, value);
+        return value;
+    }
+
+    public boolean contains(int symbolId) {
+        return find(symbolId) >= 0;
+    }
+
+    /**
+     * The records further along the probe sequence move back into the gap so lookups never need a tombstone.
+     */
+    public boolean remove(int symbolId) {
+        int slot = find(symbolId);
+        if (slot < 0) {
+            return false;
+        }
+        int mask = capacity - 1;
+        int gap  = slot;
+        for (int next = (gap + 1) & mask; ; next = (next + 1) & mask) {
+            long key = read(next * stride);
+            if (key == 0) {
+                break;
+            }
+            int home = hash((int) key - 1);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {//its home is at or before the gap, so it may move back into it
+                for (int i = 0; i < stride; i++) {
+                    write(gap * stride + i, read(next * stride + i));
+                }
+                gap = next;
+            }
+        }
+        for (int i = 0; i < stride; i++) {
+            write(gap * stride + i, 0);
+        }
+        size--;
+        if (capacity > minCapacity && size < capacity >>> 3) {
+            rehash(capacity >>> 1);
+        }
+        return true;
+    }
+
+    private int find(int symbolId) {
+        long key  = symbolId + 1L;
+        int  mask = capacity - 1;
+        for (int slot = hash(symbolId); ; slot = (slot + 1) & mask) {
+            long slotKey = read(slot * stride);
+            if (slotKey == key) {
+                return slot;
+            }
+            if (slotKey == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private int slotOf(int symbolId) {
+        if (symbolId < 0) {
+            throw new IllegalArgumentException("Not a symbol id " + symbolId);
+        }
+        int slot = find(symbolId);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (size + 1 > capacity - (capacity >>> 2)) {
+            rehash(capacity << 1);
+        }
+        int mask = capacity - 1;
+        slot     = hash(symbolId);
+        while (read(slot * stride) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        write(slot * stride, symbolId + 1L);
+        size++;
+        return slot;
+    }
+
+    private void rehash(int newCapacity) {
+        long[]     oldRecords  = records;
+        ByteBuffer oldBuffer   = buffer;
+        int        oldCapacity = capacity;
+        allocate(newCapacity);
+        int mask = newCapacity - 1;
+        for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+            long key = offHeap ? oldBuffer.getLong(oldSlot * stride * Long.BYTES) : oldRecords[oldSlot * stride];
+            if (key == 0) {
+                continue;
+            }
+            int slot = hash((int) key - 1);
+            while (read(slot * stride) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            for (int i = 0; i < stride; i++) {
+                write(slot * stride + i, offHeap ? oldBuffer.getLong((oldSlot * stride + i) * Long.BYTES) : oldRecords[oldSlot * stride + i]);
+            }
+        }
+    }
+
+    /**
+     * Fibonacci hashing, spreads the dense ids of the registry over the whole table.
+     */
+    private int hash(int symbolId) {
+        return (symbolId * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(capacity));
+    }
+
+    private long read(int index) {
+        return offHeap ? buffer.getLong(index * Long.BYTES) : records[index];
+    }
+
+    private void write(int index, long value) {
+        if (offHeap) {
+            buffer.putLong(index * Long.BYTES, value);
+        } else {
+            records[index] = value;
+        }
+    }
+
+    public void copyTo(SymbolStateStore other) {
+        if (other.noOfFields != noOfFields) {
+            throw new IllegalArgumentException("Records of " + noOfFields + " fields do not fit in records of " + other.noOfFields);
+        }
+        for (int slot = 0; slot < capacity; slot++) {
+            int symbolId = getSymbolIdAt(slot);
+            if (symbolId != NO_SYMBOL) {
+                for (int field = 0; field < noOfFields; field++) {
+                    other.put(symbolId, field, getAt(slot, field));
+                }
+            }
+        }
+    }
+
+    /**
+     * A removal may move a record back into a slot already scanned.
+     */
+    public int getSymbolIdAt(int slot) {
+        return (int) read(slot * stride) - 1;
+    }
+
+    public long getAt(int slot, int field) {
+        return read(slot * stride + 1 + field);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getNoOfFields() {
+        return noOfFields;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public long getFootprintBytes() {
+        return (long) capacity * stride * Long.BYTES;
+    }
+}
@@ -0,0 +1,146 @@
+package pojo;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Preallocated ring of ticks, Disruptor style. A producer claims a sequence, writes the slot it maps to and publishes it by storing the sequence in it,
+ * a single consumer reads the slots in sequence order. With claimOverwriting the consumer skips the ticks overwritten before it read them.
+ */
+public class TickRing {
+    private static final long EMPTY   = -2; //slot never written
+    private static final long WRITING = -1;
+
+    private final AtomicLongArray slotSequences; //sequence last published in every slot
+    private final int[]           symbolIds;
+    private final double[]        bids;
+    private final double[]        asks;
+    private final double[]        lasts;
+    private final long[]          updateTimesNanos;
+    private final int             mask;
+    private final boolean         multiProducer;
+    private final AtomicLong      cursor   = new AtomicLong();
+    private final AtomicLong      consumed = new AtomicLong(); //sequence up to which the consumer released the slots
+    private long                  nextToConsume; //consumer thread only
+    private volatile long         noOfDropped; //only written by the consumer thread
+
+    public TickRing(int capacity, boolean multiProducer) {
+        int size              = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slotSequences    = new AtomicLongArray(size);
+        this.symbolIds        = new int[size];
+        this.bids             = new double[size];
+        this.asks             = new double[size];
+        this.lasts            = new double[size];
+        this.updateTimesNanos = new long[size];
+        this.mask             = size - 1;
+        this.multiProducer    = multiProducer;
+        for (int i = 0; i < size; i++) {
+            slotSequences.set(i, EMPTY);
+        }
+    }
+
+    /**
+     * @return the claimed sequence, or -1 if the ring is full, i.e. the consumer has not released the slot yet
+     */
+    public long tryClaim() {
+        long sequence;
+        do {
+            sequence = cursor.get();
+            if (sequence - consumed.get() >= capacity()) {
+                return -1;
+            }
+        } while (!claim(sequence));
+        return sequence;
+    }
+
+    public long claimOverwriting() {
+        if (multiProducer) {
+            return cursor.getAndIncrement();
+        }
+        long sequence = cursor.get();
+        cursor.lazySet(sequence + 1);
+        return sequence;
+    }
+
+    private boolean claim(long sequence) {
+        if (multiProducer) {
+            return cursor.compareAndSet(sequence, sequence + 1);
+        }
+        cursor.lazySet(sequence + 1);//a single producer has nobody to race with
+        return true;
+    }
+
+    /**
+     * The slot is taken over with a CAS so that a consumer which is reading an older tick of the same slot notices the overwrite.
+     */
+    public void publish(long sequence, int symbolId, double bid, double ask, double last, long updateTimeNanos) {
+        int index = (int) sequence & mask;
+        long previous;
+        do {
+            while ((previous = slotSequences.get(index)) == WRITING) {
+                Thread.onSpinWait();//only when overwriting, a producer a whole ring behind is still writing the slot
+            }
+            if (previous > sequence) {
+                return;//only when overwriting, a producer a whole ring ahead already took the slot over so this tick is lost anyway
+            }
+        } while (!slotSequences.compareAndSet(index, previous, WRITING));
+        symbolIds[index]        = symbolId;
+        bids[index]             = bid;
+        asks[index]             = ask;
+        lasts[index]            = last;
+        updateTimesNanos[index] = updateTimeNanos;
+        slotSequences.set(index, sequence);
+    }
+
+    /**
+     * Consumer thread only, the slot is not handed back to the producers until release is called.
+     */
+    public boolean poll(MarketDataSnapshot tick) {
+        while (true) {
+            long expected  = nextToConsume;
+            int  index     = (int) expected & mask;
+            long published = slotSequences.get(index);
+            if (published < expected) {//still being written, or not even claimed
+                return false;
+            }
+            if (published > expected) {//lapped by the producers, resume from the oldest tick which can still be in the ring
+                long resumeAt = Math.max(expected + 1, cursor.get() - capacity());
+                noOfDropped  += resumeAt - expected;
+                nextToConsume = resumeAt;
+                continue;
+            }
+            tick.setSymbolId(symbolIds[index]);
+            tick.setBid(bids[index]);
+            tick.setAsk(asks[index]);
+            tick.setLast(lasts[index]);
+            tick.setUpdateTimeNanos(updateTimesNanos[index]);
+            VarHandle.acquireFence();//the field reads above must not move below the re-read of the slot sequence
+            if (slotSequences.get(index) == expected) {
+                tick.setSequence(expected);
+                nextToConsume = expected + 1;
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        consumed.lazySet(nextToConsume);
+    }
+
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    public long getNoOfDropped() {
+        return noOfDropped;
+    }
+
+    public int size() {
+        return (int) Math.max(0, cursor.get() - consumed.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,120 @@
+package throttler;
+
+import interfaces.IAsyncMarketDataProcessor;
+import interfaces.IClock;
+import interfaces.IPublishAckListener;
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.SymbolRing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AIMD controller of the sliding window's effective limit from the acknowledgements of an asynchronous processor, cut on failures or a p99 ack latency
+ * over the target and raised while downstream keeps up with a full window.
+ * Acks can come from any thread, everything else runs on the publisher thread.
+ */
+@Getter
+public class AdaptiveThrottle implements IPublishAckListener {
+    private static final Logger logger = LogManager.getLogger(AdaptiveThrottle.class.getSimpleName());
+    public static final double  DECREASE_FACTOR = 0.7;
+
+    private final SlidingWindow             slidingWindow;
+    private final ConflatingQueue           conflatingQueue;
+    private final IAsyncMarketDataProcessor marketDataProcessor;
+    private final IClock                    clock;
+    private final int                       minLimit;
+    private final int                       increaseStep;
+    private final long                      targetAckLatencyNanos;
+    private final long                      controlPeriodMillis;
+    private final Recorder                  ackLatencies       = new Recorder(TimeUnit.HOURS.toNanos(1), 3);
+    private final AtomicIntegerArray        failedFlags; //a failed symbol only enters the ring once
+    private final SymbolRing                failedSymbols;
+    private final AtomicLong                noOfFailures       = new AtomicLong();
+    private final AtomicLong                noOfAcks           = new AtomicLong();
+    private final AtomicLong                noOfDroppedRetries = new AtomicLong();
+    private Histogram                       periodLatencies; //publisher thread only, recycled every period
+    private long                            periodFailures;
+    private long                            nextAdjustTime     = Long.MIN_VALUE;
+    private volatile long                   ackLatencyP99Micros;
+
+    public AdaptiveThrottle(SlidingWindow slidingWindow, ConflatingQueue conflatingQueue, IAsyncMarketDataProcessor marketDataProcessor, int minLimit,
+                            long targetAckLatencyMillis) {
+        this.slidingWindow         = slidingWindow;
+        this.conflatingQueue       = conflatingQueue;
+        this.marketDataProcessor   = marketDataProcessor;
+        this.clock                 = slidingWindow.getClock();
+        this.minLimit              = Math.max(1, Math.min(minLimit, slidingWindow.getMaxRequestPerInterval()));
+        this.increaseStep          = Math.max(1, slidingWindow.getMaxRequestPerInterval() / 20);
+        this.targetAckLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetAckLatencyMillis);
+        this.controlPeriodMillis   = Math.max(1, slidingWindow.getTimeIntervalInMillisecs() / 4);
+        int capacity               = conflatingQueue.getSymbolRegistry().capacity();
+        this.failedFlags           = new AtomicIntegerArray(capacity);
+        this.failedSymbols         = new SymbolRing(capacity);
+        slidingWindow.setEffectiveLimit(slidingWindow.getMaxRequestPerInterval());
+    }
+
+    public void publish(MarketData marketData, int symbolId, long publishTimeNanos) {
+        marketDataProcessor.publishAggregatedMarketData(marketData, symbolId, publishTimeNanos, this);
+    }
+
+    @Override
+    public void onAck(int symbolId, long publishTimeNanos, boolean success) {
+        noOfAcks.incrementAndGet();
+        ackLatencies.recordValue(Math.min(Math.max(0, clock.epochNanos() - publishTimeNanos), TimeUnit.HOURS.toNanos(1)));
+        if (!success) {
+            noOfFailures.incrementAndGet();
+            if (failedFlags.get(symbolId) == 0 && failedFlags.compareAndSet(symbolId, 0, 1) && !failedSymbols.offer(symbolId)) {
+                failedFlags.set(symbolId, 0);
+                noOfDroppedRetries.incrementAndGet();
+                logger.error("No room in the failed symbols for symbol id " + symbolId + ", its failed publish is not retried");
+            }
+        }
+    }
+
+    /**
+     * Publisher thread, at the start of every pass.
+     */
+    public void onPass(long now) {
+        int symbolId;
+        while ((symbolId = failedSymbols.poll()) != SymbolRing.EMPTY) {
+            failedFlags.set(symbolId, 0);
+            conflatingQueue.retry(symbolId);
+        }
+        if (now >= nextAdjustTime) {
+            adjust();
+            nextAdjustTime = now + controlPeriodMillis;
+        }
+    }
+
+    void adjust() {
+        periodLatencies     = ackLatencies.getIntervalHistogram(periodLatencies);
+        long failures       = noOfFailures.get();
+        boolean failed      = failures > periodFailures;
+        periodFailures      = failures;
+        long p99            = periodLatencies.getTotalCount() == 0 ? 0 : periodLatencies.getValueAtPercentile(99);
+        ackLatencyP99Micros = TimeUnit.NANOSECONDS.toMicros(p99);
+        int limit           = slidingWindow.getEffectiveLimit();
+        int newLimit        = limit;
+        if (failed || p99 > targetAckLatencyNanos) {
+            newLimit = Math.max(minLimit, (int) (limit * DECREASE_FACTOR));
+        } else if (periodLatencies.getTotalCount() > 0 && slidingWindow.getSize() >= limit) {
+            newLimit = Math.min(slidingWindow.getMaxRequestPerInterval(), limit + increaseStep);
+        }
+        if (newLimit != limit) {
+            slidingWindow.setEffectiveLimit(newLimit);
+            logger.info("Effective limit " + limit + " -> " + newLimit + (failed ? " after failed publishes" : "") + " ackLatencyP99Micros=" + ackLatencyP99Micros);
+        }
+    }
+
+    public int getEffectiveLimit() {
+        return slidingWindow.getEffectiveLimit();
+    }
+}
@@ -0,0 +1,26 @@
+package throttler;
+
+import java.util.Random;
+
+/**
+ * When the LoadGenerator's ticks arrive, each keeping to the target rate on average.
+ */
+public enum ArrivalProcess {
+    /** Evenly spaced ticks */
+    CONSTANT,
+    /** Exponentially distributed gaps, i.e. ticks arriving independently of each other */
+    POISSON,
+    /** Bursts of back to back ticks with exponentially distributed gaps in between, e.g. an opening auction */
+    BURSTY;
+
+    public double nextGapNanos(double meanGapNanos, int burstSize, long tickNo, Random random) {
+        switch (this) {
+            case CONSTANT:
+                return meanGapNanos;
+            case POISSON:
+                return -Math.log(1 - random.nextDouble()) * meanGapNanos;
+            default:
+                return (tickNo + 1) % burstSize == 0 ? -Math.log(1 - random.nextDouble()) * meanGapNanos * burstSize : 0;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package throttler;
+
+import interfaces.IPublishAckListener;
+import lombok.Getter;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.MarketDataBasket;
+import pojo.MarketDataEncoder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SelectableChannel;
+
+/**
+ * Publishes in the binary wire format of MarketDataEncoder to a channel, every publish going out as one frame with a single gathering write.
+ * A frame which only got partly out leaves the stream out of step, so the channel is closed then and opened again before the next frame.
+ * Only to be called from the publisher thread.
+ */
+public class ChannelMarketDataProcessor extends MarketDataProcessor implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ChannelMarketDataProcessor.class.getSimpleName());
+
+    private final ChannelOpener        channelOpener; //null if the channel cannot be opened again
+    private GatheringByteChannel       channel; //null once closed after a partly written frame
+    private final MarketDataEncoder    encoder = new MarketDataEncoder();
+    private final ByteBuffer           header  = ByteBuffer.allocateDirect(MarketDataEncoder.FRAME_HEADER_SIZE);
+    private final ByteBuffer[]         frame   = new ByteBuffer[2];
+    private ByteBuffer                 entries;
+    @Getter
+    private long                       sequence;
+    @Getter
+    private long                       bytesWritten;
+    @Getter
+    private long                       noOfFailures;
+    @Getter
+    private long                       noOfReconnects;
+
+    public interface ChannelOpener {
+        GatheringByteChannel open() throws IOException;
+    }
+
+    /**
+     * @param channel has to be in blocking mode, a frame is always written out in full
+     */
+    public ChannelMarketDataProcessor(MarketDataGenerator marketDataGenerator, ConflatingQueue conflatingQueue, GatheringByteChannel channel, int maxFrameBytes) {
+        this(marketDataGenerator, conflatingQueue, channel, null, maxFrameBytes);
+    }
+
+    public ChannelMarketDataProcessor(MarketDataGenerator marketDataGenerator, ConflatingQueue conflatingQueue, ChannelOpener channelOpener, int maxFrameBytes) throws IOException {
+        this(marketDataGenerator, conflatingQueue, channelOpener.open(), channelOpener, maxFrameBytes);
+    }
+
+    private ChannelMarketDataProcessor(MarketDataGenerator marketDataGenerator, ConflatingQueue conflatingQueue, GatheringByteChannel channel, ChannelOpener channelOpener, int maxFrameBytes) {
+        super(marketDataGenerator, conflatingQueue);
+        checkBlocking(channel);
+        this.channel       = channel;
+        this.channelOpener = channelOpener;
+        this.entries       = ByteBuffer.allocateDirect(maxFrameBytes);
+        frame[0]           = header;
+        frame[1]           = entries;
+    }
+
+    private static void checkBlocking(GatheringByteChannel channel) {
+        if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalArgumentException("Channel has to be in blocking mode");
+        }
+    }
+
+    @Override
+    public void publishAggregatedMarketData(MarketData data) {
+        ensureCapacity(MarketDataBasket.entryBytes(data.getSymbol()));
+        write(encoder.wrap(entries, 0).encode(data));
+    }
+
+    @Override
+    public void publishAggregatedMarketData(MarketData data, int symbolId, long publishTimeNanos, IPublishAckListener listener) {
+        ensureCapacity(MarketDataBasket.entryBytes(data.getSymbol()));
+        listener.onAck(symbolId, publishTimeNanos, write(encoder.wrap(entries, 0).encode(data)));
+    }
+
+    @Override
+    public void publishAggregatedMarketData(MarketDataBasket basket) {
+        ensureCapacity(basket.getByteSize());
+        write(encoder.wrap(entries, 0).encode(basket));
+    }
+
+    private boolean write(MarketDataEncoder encoder) {
+        MarketDataEncoder.encodeHeader(header, 0, ++sequence, encoder.getNoOfEntries(), encoder.getEncodedLength());
+        header.clear();
+        entries.limit(encoder.getEncodedLength()).position(0);
+        if (channel == null && !reopen()) {
+            noOfFailures++;
+            return false;
+        }
+        try {
+            while (entries.hasRemaining() || header.hasRemaining()) {
+                bytesWritten += channel.write(frame);
+            }
+            return true;
+        } catch (IOException e) {
+            noOfFailures++;
+            logger.error("Failed to write frame " + sequence, e);
+            if (header.position() > 0) {//the buffers tell how far the frame got, even if the write which failed had taken some of it
+                closeOutOfStep();
+            }
+            return false;
+        }
+    }
+
+    private void closeOutOfStep() {
+        logger.warn("Frame " + sequence + " only got partly out, closing the channel as the stream is out of step"
+                + (channelOpener == null ? " for good" : ", it is opened again for the next frame"));
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Could not close the channel", e);
+        }
+        channel = null;
+    }
+
+    private boolean reopen() {
+        if (channelOpener == null) {
+            return false;
+        }
+        try {
+            GatheringByteChannel reopened = channelOpener.open();
+            checkBlocking(reopened);
+            channel = reopened;
+            noOfReconnects++;
+            logger.info("Opened the channel again before frame " + sequence);
+            return true;
+        } catch (IOException e) {
+            logger.error("Could not open the channel again for frame " + sequence, e);
+            return false;
+        }
+    }
+
+    private void ensureCapacity(int entriesLength) {
+        if (entriesLength > entries.capacity()) {
+            entries  = ByteBuffer.allocateDirect(entriesLength);
+            frame[1] = entries;
+        }
+        entries.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
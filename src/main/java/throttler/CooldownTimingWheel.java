@@ -0,0 +1,109 @@
+package throttler;
+
+import pojo.IntQueue;
+
+import java.util.Arrays;
+
+/**
+ * Hashed timing wheel of the symbols which are pending but still within their once per window cooldown, spanning a bit more than the interval
+ * so a cooldown never wraps around it. Only touched by the publisher thread.
+ */
+public class CooldownTimingWheel {
+    private static final int NONE = -1;
+
+    private final long  tickMillis;
+    private final int[] bucketHeads;
+    private final int   mask;
+    private int[]       nextInBucket = new int[1024];
+    private long[]      deadlines    = new long[1024];
+    private long        cursorTick   = Long.MIN_VALUE;
+    private int         size;
+
+    public CooldownTimingWheel(long intervalInMillisecs) {
+        this(intervalInMillisecs, 64);
+    }
+
+    public CooldownTimingWheel(long intervalInMillisecs, int ticksPerInterval) {
+        int noOfBuckets = Integer.highestOneBit(ticksPerInterval + 1) << 1;//more than ticksPerInterval + 1 so that a deadline never lands in a bucket which is still to be expired
+        this.tickMillis  = Math.max(1, (intervalInMillisecs + ticksPerInterval - 1) / ticksPerInterval);
+        this.bucketHeads = new int[noOfBuckets];
+        this.mask        = noOfBuckets - 1;
+        Arrays.fill(bucketHeads, NONE);
+    }
+
+    /**
+     * @param deadline at most one interval from the last advance
+     */
+    public void schedule(int symbolId, long deadline) {
+        ensureCapacity(symbolId);
+        long tick = Math.max(deadline / tickMillis, cursorTick);
+        int  bucket = (int) tick & mask;
+        deadlines[symbolId]    = deadline;
+        nextInBucket[symbolId] = bucketHeads[bucket];
+        bucketHeads[bucket]    = symbolId;
+        size++;
+    }
+
+    public void advance(long now, IntQueue expired) {
+        long nowTick = now / tickMillis;
+        if (size > 0) {
+            long fromTick = Math.max(cursorTick, nowTick - mask);
+            for (long tick = fromTick; tick <= nowTick; tick++) {
+                expireBucket((int) tick & mask, now, expired);
+            }
+        }
+        cursorTick = nowTick;
+    }
+
+    private void expireBucket(int bucket, long now, IntQueue expired) {
+        int previous = NONE;
+        int symbolId = bucketHeads[bucket];
+        while (symbolId != NONE) {
+            int next = nextInBucket[symbolId];
+            if (deadlines[symbolId] <= now) {
+                if (previous == NONE) {
+                    bucketHeads[bucket] = next;
+                } else {
+                    nextInBucket[previous] = next;
+                }
+                size--;
+                expired.add(symbolId);
+            } else {
+                previous = symbolId;//same tick but a bit later than now, stays for the next advance
+            }
+            symbolId = next;
+        }
+    }
+
+    /**
+     * @return Long.MAX_VALUE if the wheel is empty
+     */
+    public long getEarliestDeadline() {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        for (long tick = cursorTick; tick <= cursorTick + mask; tick++) {
+            int symbolId = bucketHeads[(int) tick & mask];
+            if (symbolId != NONE) {
+                long earliest = Long.MAX_VALUE;
+                for (; symbolId != NONE; symbolId = nextInBucket[symbolId]) {
+                    earliest = Math.min(earliest, deadlines[symbolId]);
+                }
+                return earliest;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void ensureCapacity(int symbolId) {
+        if (symbolId >= nextInBucket.length) {
+            int newLength = Math.max(symbolId + 1, nextInBucket.length * 2);
+            nextInBucket  = Arrays.copyOf(nextInBucket, newLength);
+            deadlines     = Arrays.copyOf(deadlines, newLength);
+        }
+    }
+}
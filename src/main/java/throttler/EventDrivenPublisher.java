@@ -0,0 +1,81 @@
+package throttler;
+
+import interfaces.IClock;
+import interfaces.ISymbolPendingListener;
+import interfaces.IThrottledPublisher;
+import lombok.Getter;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.ConflatingQueue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the throttled publisher on its own thread, sleeping until the earliest moment something can be published instead of polling.
+ * A symbol becoming pending in the conflating queue wakes it up straight away.
+ */
+@Getter
+public class EventDrivenPublisher implements Runnable, ISymbolPendingListener {
+    private static final Logger logger = LogManager.getLogger(EventDrivenPublisher.class.getSimpleName());
+    private final IThrottledPublisher throttledPublisher;
+    private final IClock              clock;
+    private final AtomicLong          wakeUps  = new AtomicLong();
+    private volatile Thread           publisherThread;
+    private volatile boolean          sleeping;
+    private volatile boolean          running  = true;
+
+    public EventDrivenPublisher(IThrottledPublisher throttledPublisher, ConflatingQueue conflatingQueue) {
+        this.throttledPublisher = throttledPublisher;
+        this.clock              = throttledPublisher.getClock();
+        conflatingQueue.setSymbolPendingListener(this);
+    }
+
+    @Override
+    public void run() {
+        publisherThread = Thread.currentThread();
+        while (running && !publisherThread.isInterrupted()) {
+            long wakeUpsSeen = wakeUps.get();
+            throttledPublisher.publishData();
+            long nextPublishTime = throttledPublisher.getNextPublishTime();
+            sleeping = true;
+            if (wakeUps.get() == wakeUpsSeen) {//Anything which turned pending after this check sees sleeping and unparks us
+                if (nextPublishTime == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    long sleepMillis = nextPublishTime - clock.epochMillis();
+                    if (sleepMillis > 0) {
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(sleepMillis));
+                    }
+                }
+            }
+            sleeping = false;
+        }
+        logger.info("Event driven publisher stopped");
+    }
+
+    /**
+     * Called on the feed thread, only pays for an unpark when the publisher is actually asleep.
+     */
+    @Override
+    public void onSymbolPending(int symbolId) {
+        onWakeUp();
+    }
+
+    @Override
+    public void onWakeUp() {
+        wakeUps.incrementAndGet();
+        if (sleeping) {
+            LockSupport.unpark(publisherThread);
+        }
+    }
+
+    public void stop() {
+        running = false;
+        Thread thread = publisherThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package throttler;
+
+import interfaces.IClock;
+import interfaces.IMarketDataProcessor;
+import interfaces.ISymbolPendingListener;
+import interfaces.IThrottledPublisher;
+import lombok.Getter;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.ConflatingQueue;
+import pojo.MarketDataSnapshot;
+import pojo.SymbolRing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Serves any number of downstream consumers, each with its own rate limit, off one conflating queue. Each ThrottledSubscriber only keeps a cursor
+ * of the slot versions it has published. Subscribers can attach and detach from any thread, the change is picked up at the start of the next pass.
+ */
+@Getter
+public class FanOutPublisher implements IThrottledPublisher {
+    private static final Logger logger = LogManager.getLogger(FanOutPublisher.class.getSimpleName());
+    private final ConflatingQueue             conflatingQueue;
+    private final IClock                      clock;
+    private final List<ThrottledSubscriber>   subscribers = new ArrayList<>(); //publisher thread only
+    private final Queue<ThrottledSubscriber>  attaching   = new ConcurrentLinkedQueue<>();
+    private final Queue<ThrottledSubscriber>  detaching   = new ConcurrentLinkedQueue<>();
+    private final MarketDataSnapshot          snapshot    = new MarketDataSnapshot();
+    private volatile long                     nextPublishTime = Long.MAX_VALUE;
+
+    public FanOutPublisher(ConflatingQueue conflatingQueue) {
+        this(conflatingQueue, SystemClock.INSTANCE);
+    }
+
+    public FanOutPublisher(ConflatingQueue conflatingQueue, IClock clock) {
+        this.conflatingQueue = conflatingQueue;
+        this.clock           = clock;
+    }
+
+    /**
+     * @param slidingWindow on the clock of this publisher
+     */
+    public ThrottledSubscriber attach(String name, IMarketDataProcessor marketDataProcessor, SlidingWindow slidingWindow) {
+        if (slidingWindow.getClock() != clock) {
+            throw new IllegalArgumentException("The sliding window of subscriber " + name + " runs on another clock than the fan-out publisher");
+        }
+        ThrottledSubscriber subscriber = new ThrottledSubscriber(name, marketDataProcessor, slidingWindow, conflatingQueue);
+        attaching.add(subscriber);
+        wakeUp();
+        return subscriber;
+    }
+
+    public void detach(ThrottledSubscriber subscriber) {
+        detaching.add(subscriber);
+        wakeUp();
+    }
+
+    @Override
+    public void publishData() {
+        long now = clock.epochMillis();
+        ThrottledSubscriber subscriber;
+        while ((subscriber = detaching.poll()) != null) {
+            subscribers.remove(subscriber);
+            logger.info("Detached subscriber " + subscriber.getName());
+        }
+        while ((subscriber = attaching.poll()) != null) {
+            subscriber.catchUp(conflatingQueue, now);
+            subscribers.add(subscriber);
+            logger.info("Attached subscriber " + subscriber.getName() + " catching up on " + subscriber.getNoOfPendingSymbols() + " symbols");
+        }
+        int symbolId;
+        while ((symbolId = conflatingQueue.pollPendingSymbolId()) != SymbolRing.EMPTY) {
+            conflatingQueue.take(symbolId, snapshot);//only clears the dirty flag so the next write queues the symbol again, subscribers read the slot themselves
+            for (int i = 0; i < subscribers.size(); i++) {
+                subscribers.get(i).onUpdate(symbolId, now);
+            }
+        }
+        long nextTime = Long.MAX_VALUE;
+        for (int i = 0; i < subscribers.size(); i++) {
+            subscriber = subscribers.get(i);
+            subscriber.publish(conflatingQueue, snapshot, now);
+            nextTime = Math.min(nextTime, subscriber.getNextPublishTime());
+        }
+        nextPublishTime = conflatingQueue.isEmpty() ? nextTime : clock.epochMillis();
+    }
+
+    private void wakeUp() {
+        nextPublishTime = clock.epochMillis();
+        ISymbolPendingListener listener = conflatingQueue.getSymbolPendingListener();
+        if (listener != null) {
+            listener.onWakeUp();
+        }
+    }
+}
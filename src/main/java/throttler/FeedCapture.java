@@ -0,0 +1,146 @@
+package throttler;
+
+import interfaces.IFeedHandler;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.MarketData;
+import pojo.Price;
+import pojo.SymbolRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Records the incoming feed in front of a processor so an incident can be replayed against the throttler later on, see FeedReplayer.
+ * Layout (little endian): a HEADER_SIZE byte header (magic, version, record size, number of records, capture start in epoch nanos) followed by RECORD_SIZE byte records
+ * of receive time in nanos since the capture started, update time, bid, ask, last and symbol id. Symbol ids are resolved through a "<capture>.symbols" file written on close.
+ * Feed threads are serialised on the capture, which is fine for the single feed thread it is meant for.
+ */
+public class FeedCapture implements IFeedHandler, Closeable {
+    private static final Logger logger = LogManager.getLogger(FeedCapture.class.getSimpleName());
+    public static final long MAGIC                     = 0x31305041434E4654L; //"TFNCAP01"
+    public static final int  VERSION                   = 1;
+    public static final int  HEADER_SIZE               = 64;
+    public static final int  RECORD_SIZE               = 48;
+    static final int         VERSION_OFFSET            = 8;
+    static final int         RECORD_SIZE_OFFSET        = 12;
+    static final int         NO_OF_RECORDS_OFFSET      = 16;
+    static final int         START_TIME_OFFSET         = 24;
+    static final int         RECEIVE_TIME_OFFSET       = 0;
+    static final int         UPDATE_TIME_OFFSET        = 8;
+    static final int         BID_OFFSET                = 16;
+    static final int         ASK_OFFSET                = 24;
+    static final int         LAST_OFFSET               = 32;
+    static final int         SYMBOL_ID_OFFSET          = 40;
+    private static final int DEFAULT_RECORDS_PER_CHUNK = 1 << 20;
+
+    private final IFeedHandler         feedHandler;
+    private final Path                 path;
+    private final SymbolRegistry       symbolRegistry;
+    private final FileChannel          channel;
+    private final MappedByteBuffer     header;
+    private final int                  recordsPerChunk;
+    private final long                 nanoTimeAtStart = System.nanoTime();
+    private MappedByteBuffer           chunk;
+    private int                        chunkPosition;
+    private long                       noOfRecords;
+    private volatile boolean           full; //out of symbol ids, the capture has stopped and the feed goes on uncaptured
+
+    public FeedCapture(IFeedHandler feedHandler, Path path, int maxSymbols) throws IOException {
+        this(feedHandler, path, maxSymbols, DEFAULT_RECORDS_PER_CHUNK);
+    }
+
+    /**
+     * An existing file at path is overwritten.
+     * @param maxSymbols over the whole capture, ids are never released as the records keep them
+     */
+    public FeedCapture(IFeedHandler feedHandler, Path path, int maxSymbols, int recordsPerChunk) throws IOException {
+        this.feedHandler         = feedHandler;
+        this.path                = path;
+        this.symbolRegistry      = new SymbolRegistry(maxSymbols);
+        this.recordsPerChunk     = recordsPerChunk;
+        this.channel             = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.header              = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(0, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+        header.putLong(NO_OF_RECORDS_OFFSET, 0);
+        header.putLong(START_TIME_OFFSET, MarketData.toEpochNanos(Instant.now()));
+    }
+
+    @Override
+    public void onMessage(MarketData data) {
+        if (!full) {
+            append(data);
+        }
+        feedHandler.onMessage(data);
+    }
+
+    private synchronized void append(MarketData data) {
+        int symbolId = symbolRegistry.getSymbolId(data.getSymbol());
+        if (symbolId == SymbolRegistry.UNKNOWN_SYMBOL) {
+            if (full || symbolRegistry.size() == symbolRegistry.capacity()) {//checked under the lock, nothing else registers
+                stop(data.getSymbol());
+                return;
+            }
+            symbolId = symbolRegistry.register(data.getSymbol());
+        }
+        if (chunk == null || chunkPosition == chunk.capacity()) {
+            mapNextChunk();
+        }
+        Price price = data.getPrice();
+        chunk.putLong(chunkPosition + RECEIVE_TIME_OFFSET, System.nanoTime() - nanoTimeAtStart);
+        chunk.putLong(chunkPosition + UPDATE_TIME_OFFSET, MarketData.toEpochNanos(data.getUpdateTime()));
+        chunk.putDouble(chunkPosition + BID_OFFSET, price.getBid());
+        chunk.putDouble(chunkPosition + ASK_OFFSET, price.getAsk());
+        chunk.putDouble(chunkPosition + LAST_OFFSET, price.getLast());
+        chunk.putInt(chunkPosition + SYMBOL_ID_OFFSET, symbolId);
+        chunkPosition += RECORD_SIZE;
+        header.putLong(NO_OF_RECORDS_OFFSET, ++noOfRecords);
+    }
+
+    private void stop(String symbol) {
+        if (!full) {
+            full = true;
+            logger.error("Feed capture " + path + " has no id left for symbol " + symbol + " after " + symbolRegistry.capacity()
+                    + " symbols, it stops at " + noOfRecords + " records and the feed goes on uncaptured");
+        }
+    }
+
+    private void mapNextChunk() {
+        try {
+            chunk = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + noOfRecords * RECORD_SIZE, (long) recordsPerChunk * RECORD_SIZE);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            chunkPosition = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not extend feed capture " + path, e);
+        }
+    }
+
+    public synchronized long getNoOfRecords() {
+        return noOfRecords;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (chunk != null) {
+            chunk.force();
+        }
+        header.force();
+        channel.close();
+        PublishJournal.writeSymbols(PublishJournal.symbolsPath(path), symbolRegistry);
+        logger.info("Closed feed capture " + path + " with " + noOfRecords + " records");
+    }
+}
@@ -0,0 +1,246 @@
+package throttler;
+
+import interfaces.IFeedHandler;
+import interfaces.IFeedSource;
+import interfaces.ITickSink;
+import lombok.Getter;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.Price;
+import pojo.SymbolRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a FeedCapture into a processor's onMessage, at the captured pace, N times faster or as fast as it goes. Every tick's update time keeps
+ * its original lag behind the receive time, so tick to publish latencies mean the same as they did live. As a command line tool it replays a capture through a
+ * ThrottledPublisher and prints what was replayed and published,
+ *  java -cp SlidingWindowMarketDataThrottler-1.0-SNAPSHOT-jar-with-dependencies.jar throttler.FeedReplayer <capture> [speed, 0 for max] [maxRequestPerInterval] [intervalInSecs]
+ */
+public class FeedReplayer implements Closeable {
+    private static final Logger logger = LogManager.getLogger(FeedReplayer.class.getSimpleName());
+    public static final double MAX_SPEED            = 0;
+    private static final int   RECORDS_PER_MAP      = 1 << 20;
+    private static final long  SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(50); //parking overshoots, the last stretch before a tick is spun
+
+    private final Path        path;
+    private final FileChannel channel;
+    @Getter
+    private final long        noOfRecords;
+    private final long        captureStartNanos;
+    private final String[]    symbols;
+
+    public FeedReplayer(Path path) throws IOException {
+        this.path    = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(FeedCapture.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        if (header.getLong(0) != FeedCapture.MAGIC || header.getInt(FeedCapture.VERSION_OFFSET) != FeedCapture.VERSION
+                || header.getInt(FeedCapture.RECORD_SIZE_OFFSET) != FeedCapture.RECORD_SIZE) {
+            channel.close();
+            throw new IOException(path + " is not a version " + FeedCapture.VERSION + " feed capture");
+        }
+        noOfRecords       = header.getLong(FeedCapture.NO_OF_RECORDS_OFFSET);
+        captureStartNanos = header.getLong(FeedCapture.START_TIME_OFFSET);
+        Map<Integer, String> symbolsById = PublishJournalReader.readSymbols(PublishJournal.symbolsPath(path));
+        symbols = new String[symbolsById.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1];
+        symbolsById.forEach((symbolId, symbol) -> symbols[symbolId] = symbol);
+    }
+
+    /**
+     * @param speed 1 for the captured pace, N for N times faster, MAX_SPEED for no pauses at all
+     */
+    public Summary replay(IFeedHandler feedHandler, double speed) throws IOException {
+        Summary summary         = new Summary(speed);
+        long    startNanoTime   = System.nanoTime();
+        long    startEpochNanos = MarketData.toEpochNanos(Instant.now());
+        for (long firstRecord = 0; firstRecord < noOfRecords; firstRecord += RECORDS_PER_MAP) {
+            int              noOfRecordsInMap = (int) Math.min(RECORDS_PER_MAP, noOfRecords - firstRecord);
+            MappedByteBuffer records          = channel.map(FileChannel.MapMode.READ_ONLY, FeedCapture.HEADER_SIZE + firstRecord * FeedCapture.RECORD_SIZE, (long) noOfRecordsInMap * FeedCapture.RECORD_SIZE);
+            records.order(ByteOrder.LITTLE_ENDIAN);
+            for (int position = 0; position < records.capacity(); position += FeedCapture.RECORD_SIZE) {
+                long receiveNanos = records.getLong(position + FeedCapture.RECEIVE_TIME_OFFSET);
+                long now          = System.nanoTime();
+                if (speed > MAX_SPEED) {
+                    long dueNanoTime = startNanoTime + (long) (receiveNanos / speed);
+                    now = waitUntil(dueNanoTime, now);
+                    summary.maxLagNanos = Math.max(summary.maxLagNanos, now - dueNanoTime);
+                }
+                long updateTimeNanos = records.getLong(position + FeedCapture.UPDATE_TIME_OFFSET);
+                if (updateTimeNanos != MarketData.NO_UPDATE_TIME) {
+                    updateTimeNanos = startEpochNanos + (now - startNanoTime) - (captureStartNanos + receiveNanos - updateTimeNanos);
+                }
+                feedHandler.onMessage(new MarketData(MarketData.fromEpochNanos(updateTimeNanos), getSymbol(records.getInt(position + FeedCapture.SYMBOL_ID_OFFSET)),
+                        new Price(records.getDouble(position + FeedCapture.BID_OFFSET), records.getDouble(position + FeedCapture.ASK_OFFSET), records.getDouble(position + FeedCapture.LAST_OFFSET))));
+                summary.noOfTicks++;
+                summary.capturedNanos = receiveNanos;
+            }
+        }
+        summary.elapsedNanos = System.nanoTime() - startNanoTime;
+        return summary;
+    }
+
+    private static long waitUntil(long dueNanoTime, long now) {
+        if (dueNanoTime - now > SPIN_THRESHOLD_NANOS) {
+            LockSupport.parkNanos(dueNanoTime - now - SPIN_THRESHOLD_NANOS);
+        }
+        while ((now = System.nanoTime()) < dueNanoTime) {
+            Thread.onSpinWait();
+        }
+        return now;
+    }
+
+    public IFeedSource asFeedSource() {
+        return new RecordedFeed();
+    }
+
+    /**
+     * @return #symbolId if the symbol table has none
+     */
+    public String getSymbol(int symbolId) {
+        return symbolId < symbols.length && symbols[symbolId] != null ? symbols[symbolId] : "#" + symbolId;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private class RecordedFeed implements IFeedSource {
+        private int[]            symbolIds = new int[0]; //capture symbol id to the run's, -1 until registered
+        private SymbolRegistry   symbolRegistry;
+        private long             startEpochNanos;
+        private long             nextRecord;
+        private MappedByteBuffer records;
+        private long             firstRecordInMap;
+
+        @Override
+        public void open(SymbolRegistry symbolRegistry, long startEpochNanos) {
+            this.symbolRegistry  = symbolRegistry;
+            this.startEpochNanos = startEpochNanos;
+            this.nextRecord      = 0;
+            this.records         = null;
+            Arrays.fill(symbolIds, -1);
+        }
+
+        @Override
+        public long peekTime() {
+            if (nextRecord >= noOfRecords) {
+                return Long.MAX_VALUE;
+            }
+            return startEpochNanos + records().getLong(position() + FeedCapture.RECEIVE_TIME_OFFSET);
+        }
+
+        @Override
+        public void next(ITickSink tickSink) {
+            MappedByteBuffer records  = records();
+            int              position = position();
+            long receiveNanos    = records.getLong(position + FeedCapture.RECEIVE_TIME_OFFSET);
+            long updateTimeNanos = records.getLong(position + FeedCapture.UPDATE_TIME_OFFSET);
+            if (updateTimeNanos != MarketData.NO_UPDATE_TIME) {
+                updateTimeNanos = startEpochNanos + (updateTimeNanos - captureStartNanos);//same lag behind the receive time as when captured
+            }
+            tickSink.onTick(symbolId(records.getInt(position + FeedCapture.SYMBOL_ID_OFFSET)), records.getDouble(position + FeedCapture.BID_OFFSET),
+                    records.getDouble(position + FeedCapture.ASK_OFFSET), records.getDouble(position + FeedCapture.LAST_OFFSET), updateTimeNanos);
+            nextRecord++;
+        }
+
+        private MappedByteBuffer records() {
+            if (records == null || nextRecord >= firstRecordInMap + RECORDS_PER_MAP || nextRecord < firstRecordInMap) {
+                firstRecordInMap = nextRecord - nextRecord % RECORDS_PER_MAP;
+                int noOfRecordsInMap = (int) Math.min(RECORDS_PER_MAP, noOfRecords - firstRecordInMap);
+                try {
+                    records = channel.map(FileChannel.MapMode.READ_ONLY, FeedCapture.HEADER_SIZE + firstRecordInMap * FeedCapture.RECORD_SIZE, (long) noOfRecordsInMap * FeedCapture.RECORD_SIZE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not map " + path, e);
+                }
+                records.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return records;
+        }
+
+        private int position() {
+            return (int) (nextRecord - firstRecordInMap) * FeedCapture.RECORD_SIZE;
+        }
+
+        private int symbolId(int captureSymbolId) {
+            if (captureSymbolId >= symbolIds.length) {
+                int oldLength = symbolIds.length;
+                symbolIds     = Arrays.copyOf(symbolIds, Math.max(captureSymbolId + 1, oldLength * 2));
+                Arrays.fill(symbolIds, oldLength, symbolIds.length, -1);
+            }
+            if (symbolIds[captureSymbolId] < 0) {
+                symbolIds[captureSymbolId] = symbolRegistry.register(getSymbol(captureSymbolId));
+            }
+            return symbolIds[captureSymbolId];
+        }
+    }
+
+    @Getter
+    public static class Summary {
+        private final double speed;
+        private long         noOfTicks;
+        private long         capturedNanos;
+        private long         elapsedNanos;
+        private long         maxLagNanos;   //furthest a tick went out behind its due time
+
+        Summary(double speed) {
+            this.speed = speed;
+        }
+
+        public double getTicksPerSec() {
+            return elapsedNanos == 0 ? 0 : noOfTicks * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "ticks=" + noOfTicks + " speed=" + (speed > MAX_SPEED ? speed + "x" : "max") + " capturedMillis=" + TimeUnit.NANOSECONDS.toMillis(capturedNanos)
+                    + " elapsedMillis=" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ticksPerSec=" + (long) getTicksPerSec()
+                    + " maxLagMicros=" + TimeUnit.NANOSECONDS.toMicros(maxLagNanos);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Usage: FeedReplayer <capture> [speed, 0 for max] [maxRequestPerInterval] [intervalInSecs]");
+            System.exit(1);
+        }
+        double speed                 = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+        int    maxRequestPerInterval = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        long   intervalInSecs        = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        try (FeedReplayer replayer = new FeedReplayer(Paths.get(args[0]))) {
+            ConflatingQueue       conflatingQueue       = new ConflatingQueue(Math.max(1024, replayer.symbols.length));
+            MarketDataProcessor   marketDataProcessor   = new MarketDataProcessor(new MarketDataGenerator(0, 0), conflatingQueue);
+            ThrottledPublisher    throttledPublisher    = new ThrottledPublisher(conflatingQueue, marketDataProcessor, new SlidingWindow(maxRequestPerInterval, intervalInSecs));
+            EventDrivenPublisher  eventDrivenPublisher  = new EventDrivenPublisher(throttledPublisher, conflatingQueue);
+            Thread                publisherThread       = new Thread(eventDrivenPublisher, "throttled-publisher-thread-0");
+            publisherThread.start();
+            Summary summary = replayer.replay(marketDataProcessor, speed);
+            Thread.sleep(TimeUnit.SECONDS.toMillis(intervalInSecs));//a window for the tail of the replay to go out
+            eventDrivenPublisher.stop();
+            publisherThread.join();
+            throttledPublisher.getMetrics().snapshot();
+            System.out.println("Replayed " + summary);
+            System.out.println("Published " + throttledPublisher.getMetrics().getNoOfPublishes() + " conflationRatio=" + throttledPublisher.getMetrics().getConflationRatio()
+                    + " tickToPublishLatencyMicros(p50=" + throttledPublisher.getMetrics().getTickToPublishLatencyP50Micros()
+                    + " p99=" + throttledPublisher.getMetrics().getTickToPublishLatencyP99Micros() + ") publishCounts=" + throttledPublisher.getPublishCounts());
+        }
+        logger.info("Replay of " + args[0] + " done");
+    }
+}
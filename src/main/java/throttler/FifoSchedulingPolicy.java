@@ -0,0 +1,31 @@
+package throttler;
+
+import interfaces.ISchedulingPolicy;
+import pojo.IntQueue;
+
+/**
+ * Symbols get the budget in the order they became ready, how long downstream has been waiting for them does not matter.
+ */
+public class FifoSchedulingPolicy implements ISchedulingPolicy {
+    private final IntQueue readySymbols = new IntQueue(1024);
+
+    @Override
+    public void add(int symbolId, long staleSince) {
+        readySymbols.add(symbolId);
+    }
+
+    @Override
+    public int peek() {
+        return readySymbols.peek();
+    }
+
+    @Override
+    public int poll() {
+        return readySymbols.poll();
+    }
+
+    @Override
+    public int size() {
+        return readySymbols.size();
+    }
+}
@@ -0,0 +1,58 @@
+package throttler;
+
+import interfaces.IRateLimiter;
+
+/**
+ * Generic cell rate algorithm, a token bucket kept as a single theoretical arrival time. Publishes are spaced by interval / maxRequestPerInterval
+ * rounded up, a burst above 1 allows up to burst - 1 extra publishes within a window.
+ */
+public class GcraRateLimiter implements IRateLimiter {
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final long interval;
+    private final int  maxRequestPerInterval;
+    private long       theoreticalArrivalTime = Long.MIN_VALUE;
+    private long       lastSeen;
+
+    public GcraRateLimiter(int maxRequestPerInterval, long interval) {
+        this(maxRequestPerInterval, interval, 1);
+    }
+
+    public GcraRateLimiter(int maxRequestPerInterval, long interval, int burst) {
+        this.emissionInterval      = Math.max(1, (interval + maxRequestPerInterval - 1) / maxRequestPerInterval);
+        this.burstTolerance        = (burst - 1) * emissionInterval;
+        this.interval              = interval;
+        this.maxRequestPerInterval = maxRequestPerInterval;
+    }
+
+    @Override
+    public boolean canAcquire(long now) {
+        lastSeen = now;
+        return theoreticalArrivalTime == Long.MIN_VALUE || now >= theoreticalArrivalTime - burstTolerance;
+    }
+
+    @Override
+    public void acquire(long now) {
+        lastSeen = now;
+        theoreticalArrivalTime = (theoreticalArrivalTime == Long.MIN_VALUE ? now : Math.max(theoreticalArrivalTime, now)) + emissionInterval;
+    }
+
+    @Override
+    public long nextAvailableTime(long now) {
+        return canAcquire(now) ? now : theoreticalArrivalTime - burstTolerance;
+    }
+
+    @Override
+    public int getSize() {
+        if (theoreticalArrivalTime == Long.MIN_VALUE) {
+            return 0;
+        }
+        long backlog = theoreticalArrivalTime - lastSeen;
+        return backlog <= 0 ? 0 : (int) ((Math.min(interval, backlog) + emissionInterval - 1) / emissionInterval);
+    }
+
+    @Override
+    public int getMaxRequestPerInterval() {
+        return maxRequestPerInterval;
+    }
+}
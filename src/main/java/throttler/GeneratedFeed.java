@@ -0,0 +1,64 @@
+package throttler;
+
+import interfaces.IFeedSource;
+import interfaces.ITickSink;
+import pojo.SymbolRegistry;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The LoadGenerator's feed in virtual time, every open starts over from the same seed so every run sees the very same ticks.
+ */
+public class GeneratedFeed implements IFeedSource {
+    private final int            noOfSymbols;
+    private final ZipfSampler    zipfSampler;
+    private final ArrivalProcess arrivalProcess;
+    private final double         meanGapNanos;
+    private final int            burstSize;
+    private final long           durationNanos;
+    private final long           seed;
+    private final int[]          symbolIds;
+    private Random               random;
+    private long                 startEpochNanos;
+    private double               nextTickNanos; //since the start, a double of epoch nanos would be off by hundreds of nanos
+    private long                 tickNo;
+
+    /**
+     * @param burstSize only used by ArrivalProcess.BURSTY
+     */
+    public GeneratedFeed(int noOfSymbols, double zipfExponent, ArrivalProcess arrivalProcess, double updatesPerSec, int burstSize, long duration, TimeUnit unit, long seed) {
+        this.noOfSymbols    = noOfSymbols;
+        this.zipfSampler    = new ZipfSampler(noOfSymbols, zipfExponent);
+        this.arrivalProcess = arrivalProcess;
+        this.meanGapNanos   = TimeUnit.SECONDS.toNanos(1) / updatesPerSec;
+        this.burstSize      = Math.max(1, burstSize);
+        this.durationNanos  = unit.toNanos(duration);
+        this.seed           = seed;
+        this.symbolIds      = new int[noOfSymbols];
+    }
+
+    @Override
+    public void open(SymbolRegistry symbolRegistry, long startEpochNanos) {
+        for (int i = 0; i < noOfSymbols; i++) {
+            symbolIds[i] = symbolRegistry.register("A" + i);
+        }
+        this.random          = new Random(seed);
+        this.startEpochNanos = startEpochNanos;
+        this.nextTickNanos   = 0;
+        this.tickNo          = 0;
+    }
+
+    @Override
+    public long peekTime() {
+        return nextTickNanos >= durationNanos ? Long.MAX_VALUE : startEpochNanos + (long) nextTickNanos;
+    }
+
+    @Override
+    public void next(ITickSink tickSink) {
+        int    symbolIndex = zipfSampler.sample(random) - 1;
+        double mid         = LoadGenerator.midPrice(symbolIndex, random);
+        tickSink.onTick(symbolIds[symbolIndex], mid - 0.01, mid + 0.01, mid, startEpochNanos + (long) nextTickNanos);
+        nextTickNanos += arrivalProcess.nextGapNanos(meanGapNanos, burstSize, tickNo++, random);
+    }
+}
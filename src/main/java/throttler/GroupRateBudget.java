@@ -0,0 +1,126 @@
+package throttler;
+
+import interfaces.IRateLimiter;
+
+import java.util.Arrays;
+
+/**
+ * Two level publish budget of a single publisher. Every group has a reserved quota only its own symbols can use, and whatever is not reserved
+ * is a parent pool any group can borrow from once its own quota is used up. Not thread safe, owned by the publisher thread.
+ */
+public class GroupRateBudget {
+    private final int            maxRequestPerInterval;
+    private final IRateLimiter   parentPool; //null if everything is reserved
+    private final IRateLimiter[] reservedQuotas; //per group, null if the group has no reservation
+    private final IRateLimiter[] groupRateLimiters;
+    private final int            defaultGroup;
+    private int[]                groupsBySymbolId = new int[1024];
+
+    /**
+     * @param reservedQuotas group 0 first, symbols which are never assigned a group end up in the last one
+     */
+    public GroupRateBudget(int maxRequestPerInterval, long interval, int... reservedQuotas) {
+        if (reservedQuotas.length == 0) {
+            throw new IllegalArgumentException("At least one group is needed");
+        }
+        int noOfReserved = Arrays.stream(reservedQuotas).sum();
+        if (noOfReserved > maxRequestPerInterval || Arrays.stream(reservedQuotas).anyMatch(quota -> quota < 0)) {
+            throw new IllegalArgumentException("Reserved quotas " + Arrays.toString(reservedQuotas) + " do not fit in " + maxRequestPerInterval);
+        }
+        this.maxRequestPerInterval = maxRequestPerInterval;
+        this.parentPool            = noOfReserved < maxRequestPerInterval ? new SlidingLogRateLimiter(maxRequestPerInterval - noOfReserved, interval) : null;
+        this.reservedQuotas        = new IRateLimiter[reservedQuotas.length];
+        this.groupRateLimiters     = new IRateLimiter[reservedQuotas.length];
+        this.defaultGroup          = reservedQuotas.length - 1;
+        for (int group = 0; group < reservedQuotas.length; group++) {
+            if (reservedQuotas[group] == 0 && parentPool == null) {
+                throw new IllegalArgumentException("Group " + group + " has neither a reserved quota nor a parent pool to borrow from");
+            }
+            this.reservedQuotas[group]    = reservedQuotas[group] > 0 ? new SlidingLogRateLimiter(reservedQuotas[group], interval) : null;
+            this.groupRateLimiters[group] = new GroupRateLimiter(this.reservedQuotas[group]);
+        }
+        Arrays.fill(groupsBySymbolId, defaultGroup);
+    }
+
+    public void assignGroup(int symbolId, int group) {
+        if (group < 0 || group >= groupRateLimiters.length) {
+            throw new IllegalArgumentException("Unknown group " + group);
+        }
+        ensureCapacity(symbolId);
+        groupsBySymbolId[symbolId] = group;
+    }
+
+    public int getGroup(int symbolId) {
+        return symbolId < groupsBySymbolId.length ? groupsBySymbolId[symbolId] : defaultGroup;
+    }
+
+    public int getNoOfGroups() {
+        return groupRateLimiters.length;
+    }
+
+    public int getDefaultGroup() {
+        return defaultGroup;
+    }
+
+    public IRateLimiter forGroup(int group) {
+        return groupRateLimiters[group];
+    }
+
+    public int getSize() {
+        int size = parentPool == null ? 0 : parentPool.getSize();
+        for (IRateLimiter reservedQuota : reservedQuotas) {
+            size += reservedQuota == null ? 0 : reservedQuota.getSize();
+        }
+        return size;
+    }
+
+    private void ensureCapacity(int symbolId) {
+        if (symbolId >= groupsBySymbolId.length) {
+            int oldLength    = groupsBySymbolId.length;
+            groupsBySymbolId = Arrays.copyOf(groupsBySymbolId, Math.max(symbolId + 1, oldLength * 2));
+            Arrays.fill(groupsBySymbolId, oldLength, groupsBySymbolId.length, defaultGroup);
+        }
+    }
+
+    private class GroupRateLimiter implements IRateLimiter {
+        private final IRateLimiter reservedQuota;
+
+        private GroupRateLimiter(IRateLimiter reservedQuota) {
+            this.reservedQuota = reservedQuota;
+        }
+
+        @Override
+        public boolean canAcquire(long now) {
+            return (reservedQuota != null && reservedQuota.canAcquire(now)) || (parentPool != null && parentPool.canAcquire(now));
+        }
+
+        /**
+         * Borrows from the parent pool only once the group's own quota is used up, so the pool stays free for the others as long as possible.
+         */
+        @Override
+        public void acquire(long now) {
+            if (reservedQuota != null && reservedQuota.canAcquire(now)) {
+                reservedQuota.acquire(now);
+            } else {
+                parentPool.acquire(now);
+            }
+        }
+
+        @Override
+        public long nextAvailableTime(long now) {
+            long reservedNext = reservedQuota == null ? Long.MAX_VALUE : reservedQuota.nextAvailableTime(now);
+            long parentNext   = parentPool == null ? Long.MAX_VALUE : parentPool.nextAvailableTime(now);
+            return Math.min(reservedNext, parentNext);
+        }
+
+        @Override
+        public int getSize() {
+            return GroupRateBudget.this.getSize();
+        }
+
+        @Override
+        public int getMaxRequestPerInterval() {
+            return maxRequestPerInterval;
+        }
+    }
+}
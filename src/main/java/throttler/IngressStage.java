@@ -0,0 +1,127 @@
+package throttler;
+
+import interfaces.IFeedHandler;
+import interfaces.ITickSink;
+import lombok.Getter;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.MarketDataSnapshot;
+import pojo.Price;
+import pojo.TickRing;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decouples the feed threads from the conflation work: a feed thread only copies the tick into a TickRing, the ingress thread drains it in batches
+ * and only the last tick of each symbol in a batch touches the conflating queue. Ticks go through with their ring sequence as ingress sequence,
+ * so a tick conflated in place while the ring is full is never overwritten by an older one still in the ring.
+ */
+@Getter
+public class IngressStage implements IFeedHandler, ITickSink, Runnable {
+    private static final Logger logger = LogManager.getLogger(IngressStage.class.getSimpleName());
+    private final ConflatingQueue      conflatingQueue;
+    private final TickRing             ring;
+    private final OverflowPolicy       overflowPolicy;
+    private final WaitStrategy         waitStrategy;
+    private final LongAdder            noOfConflatedInPlace = new LongAdder();
+    private final MarketDataSnapshot[] batch; //ingress thread only from here on
+    private final int[]                lastInBatchBySymbolId; //-1 if the symbol has no tick in the batch
+    private final int[]                batchSymbolIds;
+    private volatile boolean           running = true;
+
+    public IngressStage(ConflatingQueue conflatingQueue, int ringCapacity, int maxBatchSize, boolean multiProducer, OverflowPolicy overflowPolicy, WaitStrategy waitStrategy) {
+        this.conflatingQueue       = conflatingQueue;
+        this.ring                  = new TickRing(ringCapacity, multiProducer);
+        this.overflowPolicy        = overflowPolicy;
+        this.waitStrategy          = waitStrategy;
+        this.batch                 = new MarketDataSnapshot[maxBatchSize];
+        this.batchSymbolIds        = new int[maxBatchSize];
+        this.lastInBatchBySymbolId = new int[conflatingQueue.getSymbolRegistry().capacity()];
+        Arrays.setAll(batch, i -> new MarketDataSnapshot());
+        Arrays.fill(lastInBatchBySymbolId, -1);
+    }
+
+    /**
+     * Called on the feed thread.
+     */
+    @Override
+    public void onMessage(MarketData data) {
+        Price price = data.getPrice();
+        onTick(conflatingQueue.getSymbolRegistry().register(data.getSymbol()), price.getBid(), price.getAsk(), price.getLast(), MarketData.toEpochNanos(data.getUpdateTime()));
+    }
+
+    /**
+     * Called on the feed thread.
+     */
+    @Override
+    public void onTick(int symbolId, double bid, double ask, double last, long updateTimeNanos) {
+        long sequence;
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            sequence = ring.claimOverwriting();
+        } else if ((sequence = ring.tryClaim()) < 0) {
+            if (overflowPolicy == OverflowPolicy.CONFLATE_IN_PLACE) {
+                noOfConflatedInPlace.increment();
+                conflatingQueue.offer(symbolId, bid, ask, last, updateTimeNanos, 2 * ring.getCursor());//after every tick which claimed the ring before and ahead of every one claiming it after
+                return;
+            }
+            for (int attempt = 0; (sequence = ring.tryClaim()) < 0; attempt++) {
+                waitStrategy.idle(attempt);
+            }
+        }
+        ring.publish(sequence, symbolId, bid, ask, last, updateTimeNanos);
+    }
+
+    @Override
+    public void run() {
+        int attempt = 0;
+        while (running && !Thread.currentThread().isInterrupted()) {
+            if (drain() > 0) {
+                attempt = 0;
+            } else {
+                waitStrategy.idle(attempt++);
+            }
+        }
+        logger.info("Ingress stage stopped, dropped=" + ring.getNoOfDropped() + " conflatedInPlace=" + noOfConflatedInPlace);
+    }
+
+    /**
+     * Ingress thread only.
+     * @return the number of ticks drained
+     */
+    public int drain() {
+        int noOfTicks = 0;
+        while (noOfTicks < batch.length && ring.poll(batch[noOfTicks])) {
+            noOfTicks++;
+        }
+        if (noOfTicks == 0) {
+            return 0;
+        }
+        ring.release();//everything is copied out, the producers can have the slots back
+        int noOfSymbols = 0;
+        for (int i = 0; i < noOfTicks; i++) {
+            int symbolId = batch[i].getSymbolId();
+            if (lastInBatchBySymbolId[symbolId] == -1) {
+                batchSymbolIds[noOfSymbols++] = symbolId;
+            }
+            lastInBatchBySymbolId[symbolId] = i;
+        }
+        for (int i = 0; i < noOfSymbols; i++) {
+            int                symbolId = batchSymbolIds[i];
+            MarketDataSnapshot tick     = batch[lastInBatchBySymbolId[symbolId]];
+            conflatingQueue.offer(symbolId, tick.getBid(), tick.getAsk(), tick.getLast(), tick.getUpdateTimeNanos(), 2 * tick.getSequence() + 1);
+            lastInBatchBySymbolId[symbolId] = -1;
+        }
+        return noOfTicks;
+    }
+
+    public long getNoOfDropped() {
+        return ring.getNoOfDropped();
+    }
+
+    public void stop() {
+        running = false;
+    }
+}
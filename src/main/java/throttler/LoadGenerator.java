@@ -0,0 +1,114 @@
+package throttler;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import interfaces.ITickSink;
+import lombok.Getter;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.MarketData;
+import pojo.SymbolRegistry;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Synthetic feed at a target rate of updates per second, symbols A0..An-1 picked with Zipf skew (A0 the hottest).
+ * With more than one producer the sink has to take several feed threads, e.g. a MarketDataProcessor or a multi producer IngressStage.
+ */
+@Getter
+public class LoadGenerator {
+    private static final Logger logger = LogManager.getLogger(LoadGenerator.class.getSimpleName());
+    static final long          MAX_BACKLOG_NANOS    = TimeUnit.SECONDS.toNanos(1);
+    private static final long  SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final ITickSink      tickSink;
+    private final int[]          symbolIds;
+    private final ZipfSampler    zipfSampler;
+    private final ArrivalProcess arrivalProcess;
+    private final double         updatesPerSec;
+    private final int            burstSize;
+    private final LongAdder      noOfTicks         = new LongAdder();
+    private final long           epochNanosAtStart = MarketData.toEpochNanos(Instant.now());
+    private final long           nanoTimeAtStart   = System.nanoTime();
+    private volatile boolean     running;
+    private ExecutorService      producerExecutor;
+
+    /**
+     * @param burstSize only used by ArrivalProcess.BURSTY
+     */
+    public LoadGenerator(ITickSink tickSink, SymbolRegistry symbolRegistry, int noOfSymbols, double zipfExponent, ArrivalProcess arrivalProcess, double updatesPerSec, int burstSize) {
+        this.tickSink       = tickSink;
+        this.symbolIds      = new int[noOfSymbols];
+        this.zipfSampler    = new ZipfSampler(noOfSymbols, zipfExponent);
+        this.arrivalProcess = arrivalProcess;
+        this.updatesPerSec  = updatesPerSec;
+        this.burstSize      = Math.max(1, burstSize);
+        for (int i = 0; i < noOfSymbols; i++) {
+            symbolIds[i] = symbolRegistry.register("A" + i);
+        }
+    }
+
+    public synchronized void start(int noOfProducers) {
+        running          = true;
+        producerExecutor = Executors.newFixedThreadPool(noOfProducers, new ThreadFactoryBuilder().setNameFormat("load-generator-thread-%d").setDaemon(true).build());
+        for (int i = 0; i < noOfProducers; i++) {
+            producerExecutor.execute(() -> produce(updatesPerSec / noOfProducers));
+        }
+        logger.info("Started " + noOfProducers + " producers of " + updatesPerSec + " updates/sec over " + symbolIds.length + " symbols, zipfExponent="
+                + zipfSampler.getExponent() + " arrivalProcess=" + arrivalProcess);
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (producerExecutor != null) {
+            producerExecutor.shutdown();
+        }
+    }
+
+    private void produce(double updatesPerSec) {
+        Random random       = ThreadLocalRandom.current();
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / updatesPerSec;
+        double dueNanoTime  = System.nanoTime();
+        long   tickNo       = 0;
+        while (running) {
+            long now = System.nanoTime();
+            if (now < dueNanoTime) {
+                if (dueNanoTime - now > SPIN_THRESHOLD_NANOS) {
+                    LockSupport.parkNanos((long) (dueNanoTime - now) - SPIN_THRESHOLD_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+                continue;
+            }
+            tick(random, now);
+            dueNanoTime = Math.max(dueNanoTime, now - MAX_BACKLOG_NANOS) + arrivalProcess.nextGapNanos(meanGapNanos, burstSize, tickNo++, random);
+        }
+    }
+
+    public void generate(long noOfTicks, Random random) {
+        for (long i = 0; i < noOfTicks; i++) {
+            tick(random, System.nanoTime());
+        }
+    }
+
+    private void tick(Random random, long nanoTime) {
+        int    symbolIndex = zipfSampler.sample(random) - 1;
+        double mid         = midPrice(symbolIndex, random);
+        tickSink.onTick(symbolIds[symbolIndex], mid - 0.01, mid + 0.01, mid, epochNanosAtStart + (nanoTime - nanoTimeAtStart));
+        noOfTicks.increment();
+    }
+
+    static double midPrice(int symbolIndex, Random random) {
+        return 100 + (symbolIndex % 1000) * 0.01 + random.nextInt(100) * 0.001;
+    }
+
+    public long getNoOfTicks() {
+        return noOfTicks.sum();
+    }
+}
@@ -0,0 +1,195 @@
+package throttler;
+
+import interfaces.IRateLimiter;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publish budget shared by every throttler process on the host which maps the same file, like SharedRateBudget across processes: a publish claims
+ * one of the maxRequestPerInterval slots by CASing its timestamp from one out of the window to now, so a process which dies never holds on to anything.
+ * The processes have to agree on the limit and the interval, and share the host's wall clock.
+ * Layout (little endian): a HEADER_SIZE byte header (magic, version, limit, interval, pid of the initialising process, cursor) and a long per slot.
+ * Claiming is safe from any thread of any process, the instance's own bookkeeping (cursor hint, last time seen) belongs to its publisher thread.
+ */
+public class MappedRateBudget implements IRateLimiter, Closeable {
+    private static final Logger logger = LogManager.getLogger(MappedRateBudget.class.getSimpleName());
+    public static final long  MAGIC              = 0x3130544547445542L; //"BUDGET01"
+    public static final int   VERSION            = 1;
+    public static final int   HEADER_SIZE        = 64;
+    static final int          VERSION_OFFSET     = 8;
+    static final int          LIMIT_OFFSET       = 12;
+    static final int          INTERVAL_OFFSET    = 16;
+    static final int          INIT_OWNER_OFFSET  = 24;
+    static final int          CURSOR_OFFSET      = 32;
+    static final long         NEVER_USED         = 0; //what a slot of a new file holds
+    static final long         INIT_TIMEOUT_NANOS = 5_000_000_000L;
+    static final VarHandle    LONGS              = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    static final VarHandle    INTS               = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path             path;
+    private final FileChannel      channel;
+    private final MappedByteBuffer buffer;
+    private final int              maxRequestPerInterval;
+    private final long             interval;
+    private long                   lastSeen;
+
+    /**
+     * @param interval in millis, as a SlidingWindow works in millis
+     */
+    public MappedRateBudget(Path path, int maxRequestPerInterval, long interval) throws IOException {
+        if (maxRequestPerInterval <= 0 || interval <= 0) {
+            throw new IllegalArgumentException("The limit and the interval have to be positive");
+        }
+        this.path                  = path;
+        this.maxRequestPerInterval = maxRequestPerInterval;
+        this.interval              = interval;
+        this.channel               = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer                = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) maxRequestPerInterval * Long.BYTES);//grows a new file, zeroed
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            awaitLayout();
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Whoever CASes its pid into the owner word lays the file out, the others wait for the magic and take the word over if its owner died half way through.
+     */
+    private void awaitLayout() {
+        long pid      = ProcessHandle.current().pid();
+        long deadline = System.nanoTime() + INIT_TIMEOUT_NANOS;
+        while ((long) LONGS.getAcquire(buffer, 0) != MAGIC) {
+            long owner = (long) LONGS.getVolatile(buffer, INIT_OWNER_OFFSET);
+            if ((owner == 0 || (owner != pid && !isAlive(owner))) && LONGS.compareAndSet(buffer, INIT_OWNER_OFFSET, owner, pid)) {
+                if (owner != 0) {
+                    logger.warn("Process " + owner + " died laying out the rate budget " + path + ", taking over");
+                }
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putInt(LIMIT_OFFSET, maxRequestPerInterval);
+                buffer.putLong(INTERVAL_OFFSET, interval);
+                LONGS.setRelease(buffer, 0, MAGIC);//last, the others only trust the header once they see the magic
+                return;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("Process " + owner + " has not finished laying out the rate budget " + path);
+            }
+            LockSupport.parkNanos(100_000);
+        }
+        if (buffer.getInt(VERSION_OFFSET) != VERSION || buffer.getInt(LIMIT_OFFSET) != maxRequestPerInterval || buffer.getLong(INTERVAL_OFFSET) != interval) {
+            throw new IllegalStateException("Rate budget " + path + " is for " + buffer.getInt(LIMIT_OFFSET) + " per " + buffer.getLong(INTERVAL_OFFSET)
+                    + " millis, not " + maxRequestPerInterval + " per " + interval);
+        }
+    }
+
+    private static boolean isAlive(long pid) {
+        return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    @Override
+    public boolean canAcquire(long now) {
+        lastSeen = now;
+        for (int slot = 0; slot < maxRequestPerInterval; slot++) {
+            if (isFree(slotTimestamp(slot), now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The budget is shared so a slot seen free by canAcquire may be gone by now, use tryAcquire to check and claim in one go.
+     * @throws IllegalStateException if another process took the last free slot, rather than publish over the host wide limit
+     */
+    @Override
+    public void acquire(long now) {
+        if (!tryAcquire(now)) {
+            throw new IllegalStateException("No free slot of the host rate budget at " + now + ", it is claimed with tryAcquire");
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(long now) {
+        lastSeen   = now;
+        int cursor = (int) INTS.getAcquire(buffer, CURSOR_OFFSET);
+        if (cursor < 0 || cursor >= maxRequestPerInterval) {
+            cursor = 0;
+        }
+        for (int k = 0; k < maxRequestPerInterval; k++) {
+            int  slot      = cursor + k < maxRequestPerInterval ? cursor + k : cursor + k - maxRequestPerInterval;
+            long timestamp = slotTimestamp(slot);
+            if (isFree(timestamp, now) && LONGS.compareAndSet(buffer, slotOffset(slot), timestamp, now)) {
+                INTS.setRelease(buffer, CURSOR_OFFSET, slot + 1 == maxRequestPerInterval ? 0 : slot + 1);//only a hint, a stale one just costs a longer scan
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long nextAvailableTime(long now) {
+        lastSeen  = now;
+        long next = Long.MAX_VALUE;
+        for (int slot = 0; slot < maxRequestPerInterval; slot++) {
+            long timestamp = slotTimestamp(slot);
+            if (isFree(timestamp, now)) {
+                return now;
+            }
+            next = Math.min(next, timestamp + interval);
+        }
+        return next;
+    }
+
+    @Override
+    public int getSize() {
+        return getSize(lastSeen);
+    }
+
+    public int getSize(long now) {
+        int size = 0;
+        for (int slot = 0; slot < maxRequestPerInterval; slot++) {
+            if (!isFree(slotTimestamp(slot), now)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int getMaxRequestPerInterval() {
+        return maxRequestPerInterval;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private long slotTimestamp(int slot) {
+        return (long) LONGS.getVolatile(buffer, slotOffset(slot));
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * Long.BYTES;
+    }
+
+    private boolean isFree(long timestamp, long now) {
+        return timestamp == NEVER_USED || timestamp <= now - interval;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
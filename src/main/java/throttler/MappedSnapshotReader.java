@@ -0,0 +1,102 @@
+package throttler;
+
+import pojo.MarketDataSnapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static throttler.MappedSnapshotStore.*;
+
+/**
+ * Read only view of a MappedSnapshotStore for sidecar processes on the same host, reading under the records' seqlock while the throttler writes.
+ */
+public class MappedSnapshotReader implements Closeable {
+    private final FileChannel      channel;
+    private final MappedByteBuffer buffer;
+    private final int              recordsOffset;
+    private final int              capacity;
+
+    public MappedSnapshotReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.buffer  = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if ((long) LONGS.getAcquire(buffer, 0) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION || buffer.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+            channel.close();
+            throw new IOException(path + " is not a snapshot store of version " + VERSION);
+        }
+        this.capacity      = buffer.getInt(CAPACITY_OFFSET);
+        this.recordsOffset = recordsOffset(buffer.getInt(WINDOW_CAPACITY_OFFSET));
+    }
+
+    public int getNoOfSymbols() {
+        return (int) INTS.getAcquire(buffer, NO_OF_SYMBOLS_OFFSET);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return null if the symbol id was never written or its symbol is too long to have been kept whole
+     */
+    public String getSymbol(int symbolId) {
+        return readSymbol(buffer, recordOffset(symbolId));
+    }
+
+    /**
+     * @return false if the symbol was never written
+     */
+    public boolean read(int symbolId, MarketDataSnapshot snapshot) {
+        int offset = recordOffset(symbolId);
+        while (true) {
+            long version = (long) LONGS.getAcquire(buffer, offset + SLOT_VERSION_OFFSET);
+            if ((version & 1) == 1) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (version == 0) {
+                return false;
+            }
+            snapshot.setBid(buffer.getDouble(offset + BID_OFFSET));
+            snapshot.setAsk(buffer.getDouble(offset + ASK_OFFSET));
+            snapshot.setLast(buffer.getDouble(offset + LAST_OFFSET));
+            snapshot.setUpdateTimeNanos(buffer.getLong(offset + UPDATE_TIME_OFFSET));
+            VarHandle.acquireFence();
+            if ((long) LONGS.getAcquire(buffer, offset + SLOT_VERSION_OFFSET) == version) {
+                snapshot.setSymbolId(symbolId);
+                snapshot.setSequence(version);
+                return true;
+            }
+        }
+    }
+
+    public boolean isPending(int symbolId) {
+        int offset = recordOffset(symbolId);
+        return (long) LONGS.getAcquire(buffer, offset + TAKEN_VERSION_OFFSET) != (long) LONGS.getAcquire(buffer, offset + SLOT_VERSION_OFFSET);
+    }
+
+    /**
+     * @return 0 if never published
+     */
+    public long getLastPublishTime(int symbolId) {
+        return (long) LONGS.getAcquire(buffer, recordOffset(symbolId) + LAST_PUBLISH_TIME_OFFSET);
+    }
+
+    private int recordOffset(int symbolId) {
+        if (symbolId < 0 || symbolId >= capacity) {
+            throw new IndexOutOfBoundsException("Symbol id " + symbolId + " outside of a store of " + capacity);
+        }
+        return recordsOffset + symbolId * RECORD_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,234 @@
+package throttler;
+
+import interfaces.ILatestValueStore;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.ConflatingQueue;
+import pojo.SymbolRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory mapped copy of the throttler's state so a restarted process resumes where it stopped and sidecars can read the latest values.
+ * Records are written through by the feed thread owning the slot under the conflating queue's seqlock version.
+ * Layout (little endian): a HEADER_SIZE byte header (magic, version, record size, capacity, window capacity, number of symbols, number of acquires),
+ * the window ring of longs and RECORD_SIZE byte records of version, bid, ask, last, update time, taken version, last publish time and the symbol
+ * (its UTF-8 length and up to MAX_SYMBOL_BYTES of it).
+ */
+public class MappedSnapshotStore implements ILatestValueStore, Closeable {
+    private static final Logger logger = LogManager.getLogger(MappedSnapshotStore.class.getSimpleName());
+    public static final long  MAGIC                    = 0x313050414E534854L; //"THSNAP01"
+    public static final int   VERSION                  = 1;
+    public static final int   HEADER_SIZE              = 64;
+    public static final int   RECORD_SIZE              = 96;
+    public static final int   MAX_SYMBOL_BYTES         = 32;
+    static final int          VERSION_OFFSET           = 8;
+    static final int          RECORD_SIZE_OFFSET       = 12;
+    static final int          CAPACITY_OFFSET          = 16;
+    static final int          WINDOW_CAPACITY_OFFSET   = 20;
+    static final int          NO_OF_SYMBOLS_OFFSET     = 24;
+    static final int          NO_OF_ACQUIRES_OFFSET    = 32;
+    static final int          SLOT_VERSION_OFFSET      = 0;
+    static final int          BID_OFFSET               = 8;
+    static final int          ASK_OFFSET               = 16;
+    static final int          LAST_OFFSET              = 24;
+    static final int          UPDATE_TIME_OFFSET       = 32;
+    static final int          TAKEN_VERSION_OFFSET     = 40;
+    static final int          LAST_PUBLISH_TIME_OFFSET = 48;
+    static final int          SYMBOL_LENGTH_OFFSET     = 56;
+    static final int          SYMBOL_OFFSET            = 64;
+    static final VarHandle    LONGS                    = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    static final VarHandle    INTS                     = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path             path;
+    private final SymbolRegistry   symbolRegistry;
+    private final FileChannel      channel;
+    private final MappedByteBuffer buffer;
+    private final int              windowCapacity;
+    private final int              recordsOffset;
+    private final boolean          warm;
+    private final String[]         writtenSymbols;
+    private long                   noOfAcquires; //publisher thread only
+
+    /**
+     * Keeps the content at path if it was written with the same layout, otherwise starts an empty one.
+     * @param windowCapacity i.e. maxRequestPerInterval
+     */
+    public MappedSnapshotStore(Path path, SymbolRegistry symbolRegistry, int windowCapacity) throws IOException {
+        this.path           = path;
+        this.symbolRegistry = symbolRegistry;
+        this.windowCapacity = windowCapacity;
+        this.recordsOffset  = recordsOffset(windowCapacity);
+        this.writtenSymbols = new String[symbolRegistry.capacity()];
+        long size           = recordsOffset + (long) symbolRegistry.capacity() * RECORD_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A snapshot of " + symbolRegistry.capacity() + " symbols does not fit in one mapping");
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.warm    = hasSameLayout(channel, symbolRegistry.capacity(), windowCapacity);
+        if (!warm) {
+            channel.truncate(0);
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (warm) {
+            noOfAcquires = buffer.getLong(NO_OF_ACQUIRES_OFFSET);
+        } else {
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+            buffer.putInt(CAPACITY_OFFSET, symbolRegistry.capacity());
+            buffer.putInt(WINDOW_CAPACITY_OFFSET, windowCapacity);
+            LONGS.setRelease(buffer, 0, MAGIC);//last, a reader only trusts the header once it sees the magic
+        }
+    }
+
+    static int recordsOffset(int windowCapacity) {
+        return HEADER_SIZE + ((windowCapacity * 8 + HEADER_SIZE - 1) / HEADER_SIZE) * HEADER_SIZE;
+    }
+
+    private static boolean hasSameLayout(FileChannel channel, int capacity, int windowCapacity) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        return header.getLong(0) == MAGIC && header.getInt(VERSION_OFFSET) == VERSION && header.getInt(RECORD_SIZE_OFFSET) == RECORD_SIZE
+                && header.getInt(CAPACITY_OFFSET) == capacity && header.getInt(WINDOW_CAPACITY_OFFSET) == windowCapacity;
+    }
+
+    /**
+     * Same seqlock as the conflating queue's slot: the version goes odd, the fields are written and the version goes to its new even value.
+     */
+    @Override
+    public void write(int symbolId, long version, double bid, double ask, double last, long updateTimeNanos) {
+        int    offset = recordsOffset + symbolId * RECORD_SIZE;
+        String symbol = symbolRegistry.getSymbol(symbolId);
+        if (writtenSymbols[symbolId] != symbol) {//the registry hands out the same instance for as long as the id is the symbol's
+            writeSymbol(symbolId, offset, symbol);
+            writtenSymbols[symbolId] = symbol;
+        }
+        LONGS.setRelease(buffer, offset + SLOT_VERSION_OFFSET, version - 1);
+        VarHandle.storeStoreFence();//the odd version must be visible before any of the fields change
+        buffer.putDouble(offset + BID_OFFSET, bid);
+        buffer.putDouble(offset + ASK_OFFSET, ask);
+        buffer.putDouble(offset + LAST_OFFSET, last);
+        buffer.putLong(offset + UPDATE_TIME_OFFSET, updateTimeNanos);
+        LONGS.setRelease(buffer, offset + SLOT_VERSION_OFFSET, version);
+    }
+
+    /**
+     * Only the first MAX_SYMBOL_BYTES of a longer symbol are kept, such a symbol is neither named to sidecars nor restored.
+     * The name of an earlier run, or of a symbol which had the id before, is overwritten.
+     */
+    private void writeSymbol(int symbolId, int offset, String name) {
+        byte[] symbol = name.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < Math.min(symbol.length, MAX_SYMBOL_BYTES); i++) {
+            buffer.put(offset + SYMBOL_OFFSET + i, symbol[i]);
+        }
+        INTS.setRelease(buffer, offset + SYMBOL_LENGTH_OFFSET, symbol.length);
+        int noOfSymbols;
+        do {
+            noOfSymbols = (int) INTS.getAcquire(buffer, NO_OF_SYMBOLS_OFFSET);
+        } while (noOfSymbols <= symbolId && !INTS.compareAndSet(buffer, NO_OF_SYMBOLS_OFFSET, noOfSymbols, symbolId + 1));
+    }
+
+    /**
+     * Publisher thread only.
+     */
+    public void recordPublish(int symbolId, long takenVersion, long publishTime) {
+        int offset = recordsOffset + symbolId * RECORD_SIZE;
+        LONGS.setRelease(buffer, offset + LAST_PUBLISH_TIME_OFFSET, publishTime);
+        LONGS.setRelease(buffer, offset + TAKEN_VERSION_OFFSET, takenVersion);
+    }
+
+    /**
+     * Publisher thread only, once per publishAggregatedMarketData call.
+     */
+    public void recordAcquire(long publishTime) {
+        buffer.putLong(HEADER_SIZE + (int) (noOfAcquires % windowCapacity) * 8, publishTime);
+        LONGS.setRelease(buffer, NO_OF_ACQUIRES_OFFSET, ++noOfAcquires);
+    }
+
+    /**
+     * Into a fresh conflating queue and sliding window before anything starts. A record it cannot restore under its old id is skipped and its id is not handed out again.
+     */
+    public int restore(ConflatingQueue conflatingQueue, SlidingWindow slidingWindow) {
+        if (conflatingQueue.getSymbolRegistry() != symbolRegistry) {
+            throw new IllegalArgumentException("The conflating queue is not the one backed by this store");
+        }
+        int noOfSymbols = buffer.getInt(NO_OF_SYMBOLS_OFFSET);
+        int restored    = 0;
+        for (int symbolId = 0; symbolId < noOfSymbols; symbolId++) {
+            int    offset = recordsOffset + symbolId * RECORD_SIZE;
+            String symbol = readSymbol(buffer, offset);
+            if (symbol == null) {
+                if (buffer.getInt(offset + SYMBOL_LENGTH_OFFSET) > MAX_SYMBOL_BYTES) {
+                    logger.warn("Not restoring symbol id " + symbolId + " of " + path + ", its symbol is longer than " + MAX_SYMBOL_BYTES + " bytes");
+                }
+                continue;
+            }
+            symbolRegistry.skipTo(symbolId);
+            if (symbolRegistry.register(symbol) != symbolId) {
+                logger.warn("Not restoring symbol id " + symbolId + " (" + symbol + ") of " + path + ", the symbol has id " + symbolRegistry.getSymbolId(symbol) + " already");
+                continue;
+            }
+            writtenSymbols[symbolId] = symbolRegistry.getSymbol(symbolId);
+            restored++;
+            long version = buffer.getLong(offset + SLOT_VERSION_OFFSET);
+            if ((version & 1) == 1) {
+                logger.warn("Not restoring the values of " + symbol + " as the process stopped half way through writing them");
+            } else if (version != 0) {
+                conflatingQueue.restore(symbolId, version, buffer.getLong(offset + TAKEN_VERSION_OFFSET), buffer.getDouble(offset + BID_OFFSET),
+                        buffer.getDouble(offset + ASK_OFFSET), buffer.getDouble(offset + LAST_OFFSET), buffer.getLong(offset + UPDATE_TIME_OFFSET));
+            }
+            long lastPublishTime = buffer.getLong(offset + LAST_PUBLISH_TIME_OFFSET);
+            if (lastPublishTime != 0) {
+                slidingWindow.restoreLastPublishTime(symbolId, lastPublishTime);
+            }
+        }
+        for (long acquire = Math.max(0, noOfAcquires - windowCapacity); acquire < noOfAcquires; acquire++) {//oldest first
+            slidingWindow.restoreAcquired(buffer.getLong(HEADER_SIZE + (int) (acquire % windowCapacity) * 8));
+        }
+        logger.info("Restored " + restored + " symbols and " + slidingWindow.getSize() + " publishes within the window from " + path);
+        return restored;
+    }
+
+    /**
+     * @return null if the symbol is not there or too long to have been kept whole
+     */
+    static String readSymbol(MappedByteBuffer buffer, int offset) {
+        int length = (int) INTS.getAcquire(buffer, offset + SYMBOL_LENGTH_OFFSET);
+        if (length <= 0 || length > MAX_SYMBOL_BYTES) {
+            return null;
+        }
+        byte[] symbol = new byte[length];
+        for (int i = 0; i < length; i++) {
+            symbol[i] = buffer.get(offset + SYMBOL_OFFSET + i);
+        }
+        return new String(symbol, StandardCharsets.UTF_8);
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+        logger.info("Closed snapshot store " + path);
+    }
+}
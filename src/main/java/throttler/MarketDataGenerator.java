@@ -15,20 +15,40 @@ import java.util.Queue;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+/**
+ * Round robin mock ticks for the demo, see LoadGenerator for a configurable feed at a target rate.
+ */
 @Getter @Setter @ToString
 public class MarketDataGenerator {
+    /**
+     * Keeps the mock prices a symbol gets first (bid 4, ask 5, last 3) as they were.
+     */
+    public static final int DEFAULT_FIRST_STEP = 3;
+
     private Queue<MarketData> mockMarketData = new ArrayDeque<>(1000);
+    private List<String> mockSymbols = new ArrayList<>();
     private int noOfSymbols;
     private int noOfRecordsPerSymbol;
-    private static int count = 1;
+    private int count;
     public MarketDataGenerator(int noOfSymbols, int noOfRecordsPerSymbol){
+        this(noOfSymbols, noOfRecordsPerSymbol, DEFAULT_FIRST_STEP);
+    }
+
+    public MarketDataGenerator(int noOfSymbols, int noOfRecordsPerSymbol, int firstStep){
         this.noOfSymbols = noOfSymbols;
         this.noOfRecordsPerSymbol = noOfRecordsPerSymbol;
+        this.count = firstStep - 1;
     }
 
+    /**
+     * The queue is reused and only valid until the next call.
+     */
     public Queue<MarketData> generateMockMarketData() {
         count++;
-        List<String> mockSymbols = IntStream.range(0, noOfSymbols).mapToObj(i -> "A" + i).collect(Collectors.toCollection(() -> new ArrayList<>(100)));
+        if (mockSymbols.size() != noOfSymbols) {
+            mockSymbols = IntStream.range(0, noOfSymbols).mapToObj(i -> "A" + i).collect(Collectors.toCollection(() -> new ArrayList<>(noOfSymbols)));
+        }
+        mockMarketData.clear();
         for (int i = 1; i <= noOfRecordsPerSymbol; i++) {
             for (String symbol : mockSymbols) {
                 MarketData data = new MarketData(Instant.now().plus(count, ChronoUnit.MILLIS),symbol,new Price(count+i, count+i + i, count+i - 1));
@@ -1,6 +1,11 @@
 package throttler;
 
-import interfaces.IMarketDataProcessor;
+import interfaces.IAsyncMarketDataProcessor;
+import interfaces.IBasketMarketDataProcessor;
+import interfaces.IDepthSink;
+import interfaces.IOrderBookMarketDataProcessor;
+import interfaces.IPublishAckListener;
+import interfaces.ITickSink;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -8,7 +13,10 @@ import lombok.ToString;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import pojo.ConflatingQueue;
+import pojo.LevelAction;
 import pojo.MarketData;
+import pojo.MarketDataBasket;
+import pojo.OrderBookSnapshot;
 
 
 /**
@@ -20,7 +28,7 @@ import pojo.MarketData;
  *  Ensure the latest market data on each symbol will be published. At least fulfill,
  */
 @Getter @Setter @EqualsAndHashCode @ToString
-public class MarketDataProcessor implements IMarketDataProcessor {
+public class MarketDataProcessor implements IAsyncMarketDataProcessor, IBasketMarketDataProcessor, IOrderBookMarketDataProcessor, ITickSink, IDepthSink {
     private static final Logger logger = LogManager.getLogger(MarketDataProcessor.class.getSimpleName());
 
     private MarketDataGenerator marketDataGenerator;
@@ -35,8 +43,36 @@ public class MarketDataProcessor implements IMarketDataProcessor {
         // For test do Nothing, assume implemented.
     }
 
+    @Override
+    public void publishAggregatedMarketData(MarketData data, int symbolId, long publishTimeNanos, IPublishAckListener listener) {
+        publishAggregatedMarketData(data);
+        listener.onAck(symbolId, publishTimeNanos, true);
+    }
+
+    @Override
+    public void publishAggregatedMarketData(MarketDataBasket basket) {
+        // For test do Nothing, assume implemented.
+    }
+
+    @Override
+    public void publishOrderBook(OrderBookSnapshot book) {
+        // For test do Nothing, assume implemented.
+    }
+
+    /**
+     * Safe to be called from several feed threads at once, the conflating queue never locks.
+     */
     public void onMessage(MarketData data) {
         conflatingQueue.offer(data);
     }
-}
 
+    @Override
+    public void onTick(int symbolId, double bid, double ask, double last, long epochNanos) {
+        conflatingQueue.offer(symbolId, bid, ask, last, epochNanos);
+    }
+
+    @Override
+    public void onLevel(int symbolId, int side, LevelAction action, double price, double size, long updateTimeNanos) {
+        conflatingQueue.offerLevel(symbolId, side, action, price, size, updateTimeNanos);
+    }
+}
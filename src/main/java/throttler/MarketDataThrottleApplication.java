@@ -1,12 +1,20 @@
 package throttler;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import interfaces.IFeedHandler;
 import interfaces.IMarketDataProcessor;
-import interfaces.IThrottledPublisher;
+import interfaces.ITickSink;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import pojo.ConflatingQueue;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -17,31 +25,312 @@ public class MarketDataThrottleApplication {
     private static final long maxIntervalInSecs           = 1;
     private static final int noOfSymbols                  = 10;
     private static final int noOfRecordsPerSymbol         = 1000;
-    private static final ConflatingQueue conflatingQueue  = new ConflatingQueue(1000000);
-    private static final SlidingWindow slidingWindow      = new SlidingWindow(maxRequestPerInterval, maxIntervalInSecs);
+    private static final int symbolCapacity               = Integer.getInteger("symbolCapacity", 1000000);
+    private static final RateLimiterType rateLimiterType  = RateLimiterType.valueOf(System.getProperty("rateLimiterType", RateLimiterType.SLIDING_LOG.name()));
+    private static final boolean eventDrivenPublisher     = Boolean.getBoolean("eventDrivenPublisher");
+    private static final int noOfShards                   = Integer.getInteger("noOfShards", 1);
+    private static final int metricsIntervalInSecs        = Integer.getInteger("metricsIntervalInSecs", 10);
+    private static final String publishJournal            = System.getProperty("publishJournal");
+    private static final String ingressRing               = System.getProperty("ingressRing");
+    private static final int maxBasketSize                = Integer.getInteger("maxBasketSize", 1);
+    private static final int maxBasketBytes               = Integer.getInteger("maxBasketBytes", 64 * 1024);
+    private static final SchedulingPolicyType schedulingPolicy = SchedulingPolicyType.valueOf(System.getProperty("schedulingPolicy", SchedulingPolicyType.FIFO.name()));
+    private static final String snapshotStore             = System.getProperty("snapshotStore");
+    private static final Integer adaptiveMinLimit         = Integer.getInteger("adaptiveMinLimit");
+    private static final long targetAckLatencyMillis      = Long.getLong("targetAckLatencyMillis", 50);
+    private static final String hostRateBudget            = System.getProperty("hostRateBudget");
+    private static final String reservedQuotas            = System.getProperty("reservedQuotas");
+    private static final String symbolGroups              = System.getProperty("symbolGroups");
+    private static final double loadRate                  = Double.parseDouble(System.getProperty("loadRate", "0"));
+    private static final int loadSymbols                  = Integer.getInteger("loadSymbols", 10000);
+    private static final int loadThreads                  = Integer.getInteger("loadThreads", 1);
+    private static final double zipfExponent              = Double.parseDouble(System.getProperty("zipfExponent", "1"));
+    private static final ArrivalProcess arrivalProcess    = ArrivalProcess.valueOf(System.getProperty("arrivalProcess", ArrivalProcess.POISSON.name()));
+    private static final int burstSize                    = Integer.getInteger("burstSize", 100);
+    private static final Long maxQuietMillis              = Long.getLong("maxQuietMillis");
+    private static final double significanceAbsolute      = Double.parseDouble(System.getProperty("significanceAbsolute", "0"));
+    private static final double significanceRelative      = Double.parseDouble(System.getProperty("significanceRelative", "0"));
+    private static final double tickSize                  = Double.parseDouble(System.getProperty("tickSize", "0"));
+    private static final boolean deltaPublishing          = Boolean.getBoolean("deltaPublishing");
+    private static final String feedCapture               = System.getProperty("feedCapture");
+    private static final int feedCaptureSymbols           = Integer.getInteger("feedCaptureSymbols", symbolCapacity);
+    private static final String sinkAddress               = System.getProperty("sinkAddress");
+    private static final boolean sinkOverUdp              = Boolean.getBoolean("sinkOverUdp");
+    private static final Long idleSymbolTtlMillis         = Long.getLong("idleSymbolTtlMillis");
+    private static final boolean offHeapSymbolState       = Boolean.getBoolean("offHeapSymbolState");
+    private static final WaitStrategy ingressWaitStrategy = WaitStrategy.valueOf(System.getProperty("ingressWaitStrategy", WaitStrategy.PARK.name()));
     private static final ScheduledExecutorService publisherExecutor         = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("market-data-processor-thread-%d").build());
     private static final ScheduledExecutorService consumerExecutor         = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("throttled-publisher-thread-%d").build());
+    private static final ExecutorService          ingressExecutor          = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("ingress-thread-%d").build());
+    private static final ScheduledExecutorService metricsExecutor          = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("throttler-metrics-thread-%d").setDaemon(true).build());
+    private static ConflatingQueue                conflatingQueue;
 
     public static void main(String[] args) {
         MarketDataGenerator marketDataGenerator   = new MarketDataGenerator(noOfSymbols, noOfRecordsPerSymbol);
-        IMarketDataProcessor marketDataProcessor  = new MarketDataProcessor(marketDataGenerator, conflatingQueue);
-        IThrottledPublisher throttledPublisher    = new ThrottledPublisher(conflatingQueue, marketDataProcessor, slidingWindow);
+        if (noOfShards == 1) {
+            conflatingQueue = new ConflatingQueue(symbolCapacity);
+        }
+        IMarketDataProcessor marketDataProcessor  = createMarketDataProcessor(marketDataGenerator);
+        ThrottledPublisher throttledPublisher     = null;
+        IFeedHandler ingress                      = marketDataProcessor;
+        if (noOfShards > 1) {
+            ShardedThrottlingEngine shardedThrottlingEngine = new ShardedThrottlingEngine(noOfShards, symbolCapacity / noOfShards, maxRequestPerInterval, maxIntervalInSecs, marketDataProcessor);
+            openJournals(shardedThrottlingEngine.getThrottledPublishers());
+            useSchedulingPolicy(shardedThrottlingEngine.getThrottledPublishers());
+            filterInsignificantUpdates(shardedThrottlingEngine.getThrottledPublishers());
+            evictIdleSymbols(shardedThrottlingEngine.getThrottledPublishers());
+            enableBaskets(shardedThrottlingEngine.getThrottledPublishers());
+            shardedThrottlingEngine.start();
+            ingress = shardedThrottlingEngine;
+            startMetrics(shardedThrottlingEngine.getThrottledPublishers());
+        } else {
+            throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, createSlidingWindow());
+            openJournals(throttledPublisher);
+            openSnapshotStore(throttledPublisher);
+            assignSymbolGroups(throttledPublisher.getSlidingWindow());
+            if (adaptiveMinLimit != null) {
+                throttledPublisher.enableAdaptiveThrottle(adaptiveMinLimit, targetAckLatencyMillis);
+            }
+            useSchedulingPolicy(throttledPublisher);
+            filterInsignificantUpdates(throttledPublisher);
+            evictIdleSymbols(throttledPublisher);
+            enableBaskets(throttledPublisher);
+            startMetrics(throttledPublisher);
+            if (ingressRing != null) {
+                IngressStage ingressStage = new IngressStage(conflatingQueue, 1 << 16, 1024, loadRate > 0 && loadThreads > 1, OverflowPolicy.valueOf(ingressRing), ingressWaitStrategy);
+                ingressExecutor.execute(ingressStage);
+                ingress = ingressStage;
+            }
+        }
+        IFeedHandler feedHandler                  = captureFeed(ingress);
+
+        if (loadRate > 0 && noOfShards > 1) {
+            logger.warn("The load generator ticks by id into a single conflating queue, the shards are fed by the round robin mock instead");
+        } else if (loadRate > 0 && feedHandler instanceof FeedCapture) {
+            logger.warn("The feed capture records whole messages and the load generator only sends ticks by id, the capture is fed by the round robin mock instead");
+        }
+        if (loadRate > 0 && feedHandler instanceof ITickSink) {
+            new LoadGenerator((ITickSink) feedHandler, conflatingQueue.getSymbolRegistry(), loadSymbols, zipfExponent, arrivalProcess, loadRate, burstSize).start(loadThreads);
+        } else {
+            AtomicInteger count = new AtomicInteger(1);
+            publisherExecutor.scheduleAtFixedRate(() -> {
 
-        AtomicInteger count = new AtomicInteger(1);
-        publisherExecutor.scheduleAtFixedRate(() -> {
+                marketDataGenerator.generateMockMarketData().forEach(feedHandler::onMessage);
+                count.incrementAndGet();
+                if(count.get()%100==0){
+                    logger.info("Giving the consumer some breathing space for 5 secs. Have published "+ count + " ticks so far");
+                    try {
+                        Thread.sleep(5000);//There is no reason to add Thread.sleep here but just want to highlight in the logs that the sliding window shrinks in the throttled publisher when the producer is giving the throttled publisher breathing space
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }, 0, 1, TimeUnit.MILLISECONDS);
+        }
+        if (noOfShards > 1) {
+            return;
+        }
+        if (eventDrivenPublisher) {
+            consumerExecutor.execute(new EventDrivenPublisher(throttledPublisher, conflatingQueue));
+        } else {
+            consumerExecutor.scheduleAtFixedRate(throttledPublisher::publishData, 0, 100, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * With -DfeedCapture=<path> the feed is recorded for FeedReplayer, with room for -DfeedCaptureSymbols distinct symbols over the whole run.
+     */
+    private static IFeedHandler captureFeed(IFeedHandler ingress) {
+        if (feedCapture == null) {
+            return ingress;
+        }
+        Path path = Paths.get(feedCapture);
+        try {
+            FeedCapture capture = new FeedCapture(ingress, path, feedCaptureSymbols);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    capture.close();
+                } catch (IOException e) {
+                    logger.error("Could not close feed capture " + path, e);
+                }
+            }));
+            return capture;
+        } catch (IOException e) {
+            logger.error("Could not open feed capture " + path + ", running without it", e);
+            return ingress;
+        }
+    }
 
-            marketDataGenerator.generateMockMarketData().forEach(marketDataProcessor::onMessage);
-            count.incrementAndGet();
-            if(count.get()%100==0){
-                logger.info("Giving the consumer some breathing space for 5 secs. Have published "+ count + " ticks so far");
+    /**
+     * With -DsinkAddress=host:port publishes go out in the binary wire format over TCP, or UDP with -DsinkOverUdp=true. Not with shards.
+     */
+    private static MarketDataProcessor createMarketDataProcessor(MarketDataGenerator marketDataGenerator) {
+        if (sinkAddress == null || noOfShards > 1) {
+            return new MarketDataProcessor(marketDataGenerator, conflatingQueue);
+        }
+        String[] hostAndPort = sinkAddress.split(":");
+        InetSocketAddress address = new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1]));
+        try {
+            ChannelMarketDataProcessor channelMarketDataProcessor = new ChannelMarketDataProcessor(marketDataGenerator, conflatingQueue,
+                    () -> sinkOverUdp ? DatagramChannel.open().connect(address) : SocketChannel.open(address), maxBasketBytes);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 try {
-                    Thread.sleep(5000);//There is no reason to add Thread.sleep here but just want to highlight in the logs that the sliding window shrinks in the throttled publisher when the producer is giving the throttled publisher breathing space
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    channelMarketDataProcessor.close();
+                } catch (IOException e) {
+                    logger.error("Could not close sink " + sinkAddress, e);
                 }
+            }));
+            return channelMarketDataProcessor;
+        } catch (IOException e) {
+            logger.error("Could not connect to sink " + sinkAddress + ", running without it", e);
+            return new MarketDataProcessor(marketDataGenerator, conflatingQueue);
+        }
+    }
+
+    /**
+     * With -DhostRateBudget=<path> the budget is shared with every other throttler process on the host mapping the same file.
+     * With -DreservedQuotas=q0,q1,.. it is split into groups, -DsymbolGroups=A0=0,A1=0 puts symbols in groups, the others are in the last one.
+     */
+    private static SlidingWindow createSlidingWindow() {
+        if (hostRateBudget != null && noOfShards == 1) {
+            try {
+                return new SlidingWindow(new MappedRateBudget(Paths.get(hostRateBudget), maxRequestPerInterval, maxIntervalInSecs * 1000), maxIntervalInSecs);
+            } catch (IOException e) {
+                logger.error("Could not map host rate budget " + hostRateBudget + ", running with a budget of this process only", e);
+            }
+        }
+        if (reservedQuotas == null) {
+            return new SlidingWindow(maxRequestPerInterval, maxIntervalInSecs, rateLimiterType);
+        }
+        int[] quotas = Arrays.stream(reservedQuotas.split(",")).mapToInt(quota -> Integer.parseInt(quota.trim())).toArray();
+        return new SlidingWindow(new GroupRateBudget(maxRequestPerInterval, maxIntervalInSecs * 1000, quotas), maxIntervalInSecs);
+    }
+
+    /**
+     * After a warm restart so the restored symbols keep their ids.
+     */
+    private static void assignSymbolGroups(SlidingWindow slidingWindow) {
+        GroupRateBudget groupRateBudget = slidingWindow.getGroupRateBudget();
+        if (groupRateBudget == null || symbolGroups == null) {
+            return;
+        }
+        for (String symbolGroup : symbolGroups.split(",")) {
+            String[] symbolAndGroup = symbolGroup.split("=");
+            groupRateBudget.assignGroup(conflatingQueue.getSymbolRegistry().register(symbolAndGroup[0].trim()), Integer.parseInt(symbolAndGroup[1].trim()));
+        }
+    }
+
+    /**
+     * With -DpublishJournal=<path> every publisher appends its publishes to a binary journal, path.N per shard.
+     */
+    private static void openJournals(ThrottledPublisher... throttledPublishers) {
+        if (publishJournal == null) {
+            return;
+        }
+        for (int i = 0; i < throttledPublishers.length; i++) {
+            Path path = Paths.get(throttledPublishers.length == 1 ? publishJournal : publishJournal + "." + i);
+            try {
+                PublishJournal journal = new PublishJournal(path, throttledPublishers[i].getConflatingQueue().getSymbolRegistry());
+                throttledPublishers[i].setPublishJournal(journal);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        journal.close();
+                    } catch (IOException e) {
+                        logger.error("Could not close publish journal " + path, e);
+                    }
+                }));
+            } catch (IOException e) {
+                logger.error("Could not open publish journal " + path + ", publishing without it", e);
             }
-        }, 0, 1, TimeUnit.MILLISECONDS);
-        consumerExecutor.scheduleAtFixedRate(throttledPublisher::publishData, 0, 100, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * With -DsnapshotStore=<path> a restart with the same path picks up where the last run stopped.
+     */
+    private static void openSnapshotStore(ThrottledPublisher throttledPublisher) {
+        if (snapshotStore == null) {
+            return;
+        }
+        Path path = Paths.get(snapshotStore);
+        try {
+            MappedSnapshotStore store = new MappedSnapshotStore(path, conflatingQueue.getSymbolRegistry(), maxRequestPerInterval);
+            if (store.isWarm()) {
+                store.restore(conflatingQueue, throttledPublisher.getSlidingWindow());
+            }
+            conflatingQueue.setLatestValueStore(store);
+            throttledPublisher.setSnapshotStore(store);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    logger.error("Could not close snapshot store " + path, e);
+                }
+            }));
+        } catch (IOException e) {
+            logger.error("Could not open snapshot store " + path + ", running without it", e);
+        }
+    }
+
+    /**
+     * With -DmaxBasketSize=K every publishAggregatedMarketData call carries up to K symbols and at most -DmaxBasketBytes.
+     */
+    private static void enableBaskets(ThrottledPublisher... throttledPublishers) {
+        if (maxBasketSize > 1) {
+            for (ThrottledPublisher throttledPublisher : throttledPublishers) {
+                throttledPublisher.enableBaskets(maxBasketSize, maxBasketBytes);
+            }
+        }
+    }
+
+    /**
+     * With -DschedulingPolicy=STALENESS the stalest ready symbols get the budget first instead of the ones which became ready first.
+     */
+    private static void useSchedulingPolicy(ThrottledPublisher... throttledPublishers) {
+        for (ThrottledPublisher throttledPublisher : throttledPublishers) {
+            throttledPublisher.setSchedulingPolicy(schedulingPolicy);
+        }
+    }
+
+    /**
+     * With -DmaxQuietMillis updates which move no price by -DsignificanceAbsolute, -DsignificanceRelative or a -DtickSize do not spend the budget.
+     * -DdeltaPublishing=true then only sends the prices which changed.
+     */
+    private static void filterInsignificantUpdates(ThrottledPublisher... throttledPublishers) {
+        if (maxQuietMillis == null) {
+            return;
+        }
+        for (ThrottledPublisher throttledPublisher : throttledPublishers) {
+            throttledPublisher.enableSignificanceFilter(new SignificanceFilter(significanceAbsolute, significanceRelative, tickSize, maxQuietMillis));
+            if (deltaPublishing) {
+                throttledPublisher.enableDeltaPublishing();
+            }
+        }
+    }
+
+    /**
+     * With -DidleSymbolTtlMillis symbols idle for that long are evicted, -DoffHeapSymbolState=true keeps the window's per symbol state off the heap.
+     * Not with the load generator, the snapshot store, the publish journal or the adaptive throttle, which hold on to symbol ids.
+     */
+    private static void evictIdleSymbols(ThrottledPublisher... throttledPublishers) {
+        if (idleSymbolTtlMillis == null) {
+            return;
+        }
+        if (loadRate > 0 || snapshotStore != null || publishJournal != null || throttledPublishers[0].getAdaptiveThrottle() != null) {
+            logger.warn("Idle symbols are not evicted with the load generator, the snapshot store, the publish journal or the adaptive throttle, their symbol ids have to stay put");
+            return;
+        }
+        for (ThrottledPublisher throttledPublisher : throttledPublishers) {
+            throttledPublisher.enableIdleEviction(idleSymbolTtlMillis, offHeapSymbolState);
+        }
+    }
+
+    private static void startMetrics(ThrottledPublisher... throttledPublishers) {
+        for (int i = 0; i < throttledPublishers.length; i++) {
+            ThrottlerMetrics metrics = throttledPublishers[i].getMetrics();
+            metrics.register("publisher-" + i);
+            metricsExecutor.scheduleAtFixedRate(metrics::snapshot, metricsIntervalInSecs, metricsIntervalInSecs, TimeUnit.SECONDS);
+        }
     }
 }
 
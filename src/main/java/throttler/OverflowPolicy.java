@@ -0,0 +1,13 @@
+package throttler;
+
+/**
+ * What a feed thread does with a tick when the ingress ring is full, picked with -DingressRing.
+ */
+public enum OverflowPolicy {
+    /** Waits for the consumer to free a slot, a slow conflation stage stalls the feed */
+    BLOCK,
+    /** Writes the tick straight into the symbol's conflation slot, the older ticks still in the ring do not overwrite it when drained */
+    CONFLATE_IN_PLACE,
+    /** Overwrites the oldest tick in the ring, which can be the latest tick of a symbol */
+    DROP_OLDEST
+}
@@ -0,0 +1,128 @@
+package throttler;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.SymbolRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Audit trail of every publish as fixed size binary records appended to a memory mapped file, mapped a chunk at a time.
+ * Layout (little endian): a HEADER_SIZE byte header (magic, version, record size, number of records) followed by RECORD_SIZE byte records of
+ * publish time, update time, bid, ask, last, symbol id and window size. Symbol ids are resolved through a "<journal>.symbols" file written on close.
+ * Not thread safe, owned by the publisher thread.
+ */
+public class PublishJournal implements Closeable {
+    private static final Logger logger = LogManager.getLogger(PublishJournal.class.getSimpleName());
+    public static final long MAGIC                     = 0x31304C4E524A4854L; //"THJRNL01"
+    public static final int  VERSION                   = 1;
+    public static final int  HEADER_SIZE               = 64;
+    public static final int  RECORD_SIZE               = 48;
+    static final int         VERSION_OFFSET            = 8;
+    static final int         RECORD_SIZE_OFFSET        = 12;
+    static final int         NO_OF_RECORDS_OFFSET      = 16;
+    static final int         PUBLISH_TIME_OFFSET       = 0;
+    static final int         UPDATE_TIME_OFFSET        = 8;
+    static final int         BID_OFFSET                = 16;
+    static final int         ASK_OFFSET                = 24;
+    static final int         LAST_OFFSET               = 32;
+    static final int         SYMBOL_ID_OFFSET          = 40;
+    static final int         WINDOW_SIZE_OFFSET        = 44;
+    private static final int DEFAULT_RECORDS_PER_CHUNK = 1 << 20;
+
+    private final Path             path;
+    private final SymbolRegistry   symbolRegistry;
+    private final FileChannel      channel;
+    private final MappedByteBuffer header;
+    private final int              recordsPerChunk;
+    private MappedByteBuffer       chunk;
+    private int                    chunkPosition;
+    private long                   noOfRecords;
+
+    public PublishJournal(Path path, SymbolRegistry symbolRegistry) throws IOException {
+        this(path, symbolRegistry, DEFAULT_RECORDS_PER_CHUNK);
+    }
+
+    /**
+     * An existing file at path is overwritten.
+     */
+    public PublishJournal(Path path, SymbolRegistry symbolRegistry, int recordsPerChunk) throws IOException {
+        this.path            = path;
+        this.symbolRegistry  = symbolRegistry;
+        this.recordsPerChunk = recordsPerChunk;
+        this.channel         = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.header          = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(0, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+        header.putLong(NO_OF_RECORDS_OFFSET, 0);
+    }
+
+    public void append(int symbolId, double bid, double ask, double last, long updateTimeNanos, long publishTimeNanos, int windowSize) {
+        if (chunk == null || chunkPosition == chunk.capacity()) {
+            mapNextChunk();
+        }
+        chunk.putLong(chunkPosition + PUBLISH_TIME_OFFSET, publishTimeNanos);
+        chunk.putLong(chunkPosition + UPDATE_TIME_OFFSET, updateTimeNanos);
+        chunk.putDouble(chunkPosition + BID_OFFSET, bid);
+        chunk.putDouble(chunkPosition + ASK_OFFSET, ask);
+        chunk.putDouble(chunkPosition + LAST_OFFSET, last);
+        chunk.putInt(chunkPosition + SYMBOL_ID_OFFSET, symbolId);
+        chunk.putInt(chunkPosition + WINDOW_SIZE_OFFSET, windowSize);
+        chunkPosition += RECORD_SIZE;
+        header.putLong(NO_OF_RECORDS_OFFSET, ++noOfRecords);//only counted once the record is complete, so a reader never sees a half written one
+    }
+
+    private void mapNextChunk() {
+        try {
+            chunk = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + noOfRecords * RECORD_SIZE, (long) recordsPerChunk * RECORD_SIZE);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            chunkPosition = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not extend publish journal " + path, e);
+        }
+    }
+
+    public long getNoOfRecords() {
+        return noOfRecords;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    static Path symbolsPath(Path path) {
+        return Paths.get(path + ".symbols");
+    }
+
+    static void writeSymbols(Path symbolsPath, SymbolRegistry symbolRegistry) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(symbolsPath, StandardCharsets.UTF_8)) {
+            for (int symbolId = 0; symbolId < symbolRegistry.size(); symbolId++) {
+                writer.write(symbolId + "," + symbolRegistry.getSymbol(symbolId) + "\n");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (chunk != null) {
+            chunk.force();
+        }
+        header.force();
+        channel.close();
+        writeSymbols(symbolsPath(path), symbolRegistry);
+        logger.info("Closed publish journal " + path + " with " + noOfRecords + " records");
+    }
+}
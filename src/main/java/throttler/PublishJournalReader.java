@@ -0,0 +1,180 @@
+package throttler;
+
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+import pojo.MarketData;
+import pojo.PublishRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline decoder of a PublishJournal. As a command line tool it prints a summary of the journal, or every record with --dump,
+ *  java -cp SlidingWindowMarketDataThrottler-1.0-SNAPSHOT-jar-with-dependencies.jar throttler.PublishJournalReader <journal> [intervalInSecs] [--dump]
+ */
+public class PublishJournalReader implements Closeable {
+    private static final int RECORDS_PER_READ = 4096;
+
+    private final FileChannel          channel;
+    private final Map<Integer, String> symbols = new HashMap<>();
+    @Getter
+    private final long                 noOfRecords;
+    private final ByteBuffer           buffer = ByteBuffer.allocateDirect(RECORDS_PER_READ * PublishJournal.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long                       noOfRecordsRead;
+
+    public PublishJournalReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(PublishJournal.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        if (header.getLong(0) != PublishJournal.MAGIC || header.getInt(PublishJournal.VERSION_OFFSET) != PublishJournal.VERSION
+                || header.getInt(PublishJournal.RECORD_SIZE_OFFSET) != PublishJournal.RECORD_SIZE) {
+            channel.close();
+            throw new IOException(path + " is not a version " + PublishJournal.VERSION + " publish journal");
+        }
+        noOfRecords = header.getLong(PublishJournal.NO_OF_RECORDS_OFFSET);
+        channel.position(PublishJournal.HEADER_SIZE);
+        buffer.limit(0);
+        symbols.putAll(readSymbols(PublishJournal.symbolsPath(path)));
+    }
+
+    /**
+     * @return empty if there is no symbol table
+     */
+    static Map<Integer, String> readSymbols(Path symbolsPath) throws IOException {
+        Map<Integer, String> symbols = new HashMap<>();
+        if (Files.exists(symbolsPath)) {
+            for (String line : Files.readAllLines(symbolsPath, StandardCharsets.UTF_8)) {
+                int separator = line.indexOf(',');
+                symbols.put(Integer.parseInt(line.substring(0, separator)), line.substring(separator + 1));
+            }
+        }
+        return symbols;
+    }
+
+    /**
+     * @return false once all the records are read
+     */
+    public boolean next(PublishRecord record) throws IOException {
+        if (noOfRecordsRead == noOfRecords) {
+            return false;
+        }
+        if (!buffer.hasRemaining()) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), (noOfRecords - noOfRecordsRead) * PublishJournal.RECORD_SIZE));
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                //read until the batch is complete
+            }
+            buffer.flip();
+        }
+        int position = buffer.position();
+        record.setPublishTimeNanos(buffer.getLong(position + PublishJournal.PUBLISH_TIME_OFFSET));
+        record.setUpdateTimeNanos(buffer.getLong(position + PublishJournal.UPDATE_TIME_OFFSET));
+        record.setBid(buffer.getDouble(position + PublishJournal.BID_OFFSET));
+        record.setAsk(buffer.getDouble(position + PublishJournal.ASK_OFFSET));
+        record.setLast(buffer.getDouble(position + PublishJournal.LAST_OFFSET));
+        record.setSymbolId(buffer.getInt(position + PublishJournal.SYMBOL_ID_OFFSET));
+        record.setWindowSize(buffer.getInt(position + PublishJournal.WINDOW_SIZE_OFFSET));
+        buffer.position(position + PublishJournal.RECORD_SIZE);
+        noOfRecordsRead++;
+        return true;
+    }
+
+    /**
+     * @return #symbolId if the symbol table has none
+     */
+    public String getSymbol(int symbolId) {
+        return symbols.getOrDefault(symbolId, "#" + symbolId);
+    }
+
+    public Summary summarise(long intervalInSecs) throws IOException {
+        Summary          summary           = new Summary();
+        long             intervalNanos     = TimeUnit.SECONDS.toNanos(intervalInSecs);
+        ArrayDeque<Long> publishesInWindow = new ArrayDeque<>();
+        PublishRecord    record            = new PublishRecord();
+        while (next(record)) {
+            long    publishTime = record.getPublishTimeNanos();
+            boolean newCall     = summary.noOfPublishes == 0 || publishTime != summary.lastPublishTime;//the entries of a basket share the publish time
+            if (summary.noOfPublishes++ == 0) {
+                summary.firstPublishTime = publishTime;
+            }
+            summary.lastPublishTime = publishTime;
+            summary.publishCounts.merge(getSymbol(record.getSymbolId()), 1, Integer::sum);
+            summary.maxWindowSize = Math.max(summary.maxWindowSize, record.getWindowSize());
+            if (record.getUpdateTimeNanos() != MarketData.NO_UPDATE_TIME) {
+                summary.tickToPublishLatencies.recordValue(Math.max(0, Math.min(publishTime - record.getUpdateTimeNanos(), summary.tickToPublishLatencies.getHighestTrackableValue())));
+            }
+            if (!newCall) {
+                continue;
+            }
+            summary.noOfCalls++;
+            publishesInWindow.addLast(publishTime);
+            while (publishesInWindow.peekFirst() <= publishTime - intervalNanos) {
+                publishesInWindow.pollFirst();
+            }
+            summary.maxPublishesInWindow = Math.max(summary.maxPublishesInWindow, publishesInWindow.size());
+        }
+        return summary;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Getter
+    public static class Summary {
+        private long                       noOfPublishes;
+        private long                       noOfCalls; //publishAggregatedMarketData calls, less than the publishes in basket mode
+        private long                       firstPublishTime;
+        private long                       lastPublishTime;
+        private int                        maxPublishesInWindow;
+        private int                        maxWindowSize;
+        private final Map<String, Integer> publishCounts          = new LinkedHashMap<>();
+        private final Histogram            tickToPublishLatencies = new Histogram(TimeUnit.HOURS.toNanos(1), 3);
+
+        @Override
+        public String toString() {
+            return "publishes=" + noOfPublishes + " calls=" + noOfCalls + " from=" + (noOfPublishes == 0 ? "-" : MarketData.fromEpochNanos(firstPublishTime))
+                    + " to=" + (noOfPublishes == 0 ? "-" : MarketData.fromEpochNanos(lastPublishTime)) + " symbols=" + publishCounts.size()
+                    + " maxPublishesInWindow=" + maxPublishesInWindow + " maxWindowSize=" + maxWindowSize
+                    + " tickToPublishLatencyMicros(p50=" + TimeUnit.NANOSECONDS.toMicros(tickToPublishLatencies.getValueAtPercentile(50))
+                    + " p99=" + TimeUnit.NANOSECONDS.toMicros(tickToPublishLatencies.getValueAtPercentile(99))
+                    + " max=" + TimeUnit.NANOSECONDS.toMicros(tickToPublishLatencies.getMaxValue()) + ")"
+                    + " publishCounts=" + publishCounts;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: PublishJournalReader <journal> [intervalInSecs] [--dump]");
+            System.exit(1);
+        }
+        long    intervalInSecs = args.length > 1 && !args[1].equals("--dump") ? Long.parseLong(args[1]) : 1;
+        boolean dump           = args[args.length - 1].equals("--dump");
+        try (PublishJournalReader reader = new PublishJournalReader(Paths.get(args[0]))) {
+            if (dump) {
+                PublishRecord record = new PublishRecord();
+                while (reader.next(record)) {
+                    System.out.println(MarketData.fromEpochNanos(record.getPublishTimeNanos()) + " " + reader.getSymbol(record.getSymbolId()) + " bid=" + record.getBid()
+                            + " ask=" + record.getAsk() + " last=" + record.getLast() + " updateTime=" + MarketData.fromEpochNanos(record.getUpdateTimeNanos())
+                            + " windowSize=" + record.getWindowSize());
+                }
+            } else {
+                System.out.println(reader.summarise(intervalInSecs));
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package throttler;
+
+import interfaces.IRateLimiter;
+
+/**
+ * Strategies the sliding window can enforce the global publish budget with, picked through configuration.
+ */
+public enum RateLimiterType {
+    /** Exact sliding window, one long per slot of the limit */
+    SLIDING_LOG,
+    /** O(1) state token bucket which spaces out publishes evenly */
+    GCRA,
+    /** O(1) state approximation of the sliding window for very high limits */
+    SLIDING_COUNTER;
+
+    public IRateLimiter create(int maxRequestPerInterval, long interval) {
+        switch (this) {
+            case GCRA:            return new GcraRateLimiter(maxRequestPerInterval, interval);
+            case SLIDING_COUNTER: return new SlidingCounterRateLimiter(maxRequestPerInterval, interval);
+            default:              return new SlidingLogRateLimiter(maxRequestPerInterval, interval);
+        }
+    }
+}
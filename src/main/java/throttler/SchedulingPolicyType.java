@@ -0,0 +1,20 @@
+package throttler;
+
+import interfaces.ISchedulingPolicy;
+
+/**
+ * Policies deciding which ready symbols get the global budget first, picked through configuration.
+ */
+public enum SchedulingPolicyType {
+    /** In the order the symbols became ready */
+    FIFO,
+    /** Stalest symbol first, optionally weighted per symbol */
+    STALENESS;
+
+    public ISchedulingPolicy create(long intervalInMillis) {
+        switch (this) {
+            case STALENESS: return new StalenessSchedulingPolicy(intervalInMillis);
+            default:        return new FifoSchedulingPolicy();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package throttler;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import interfaces.IFeedHandler;
+import interfaces.IMarketDataProcessor;
+import lombok.Getter;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Spreads the conflate/throttle work over shards, each with its own conflating queue and publisher thread, sharing the budget through a SharedRateBudget.
+ * A symbol always lands on the same shard. The downstream publishAggregatedMarketData gets called from all the shard publisher threads, so it has to be thread safe.
+ */
+@Getter
+public class ShardedThrottlingEngine implements IFeedHandler {
+    private static final Logger logger = LogManager.getLogger(ShardedThrottlingEngine.class.getSimpleName());
+    private final IMarketDataProcessor   downstream;
+    private final SharedRateBudget       rateBudget;
+    private final ConflatingQueue[]      conflatingQueues;
+    private final ThrottledPublisher[]   throttledPublishers;
+    private final EventDrivenPublisher[] eventDrivenPublishers;
+    private final ExecutorService        publisherExecutor;
+
+    public ShardedThrottlingEngine(int noOfShards, int symbolsPerShard, int maxRequestPerInterval, long intervalInSecs, IMarketDataProcessor downstream) {
+        this.downstream            = downstream;
+        this.rateBudget            = new SharedRateBudget(maxRequestPerInterval, intervalInSecs * 1000, noOfShards);
+        this.conflatingQueues      = new ConflatingQueue[noOfShards];
+        this.throttledPublishers   = new ThrottledPublisher[noOfShards];
+        this.eventDrivenPublishers = new EventDrivenPublisher[noOfShards];
+        this.publisherExecutor     = Executors.newFixedThreadPool(noOfShards, new ThreadFactoryBuilder().setNameFormat("throttled-publisher-shard-%d").build());
+        for (int shard = 0; shard < noOfShards; shard++) {
+            conflatingQueues[shard]      = new ConflatingQueue(symbolsPerShard);
+            throttledPublishers[shard]   = new ThrottledPublisher(conflatingQueues[shard], downstream, new SlidingWindow(rateBudget.forShard(shard), intervalInSecs));
+            eventDrivenPublishers[shard] = new EventDrivenPublisher(throttledPublishers[shard], conflatingQueues[shard]);
+        }
+    }
+
+    public void start() {
+        for (EventDrivenPublisher eventDrivenPublisher : eventDrivenPublishers) {
+            publisherExecutor.execute(eventDrivenPublisher);
+        }
+        logger.info("Started " + eventDrivenPublishers.length + " publisher shards sharing " + rateBudget.getShareOf(0) + "+ slots each");
+    }
+
+    public void stop() {
+        for (EventDrivenPublisher eventDrivenPublisher : eventDrivenPublishers) {
+            eventDrivenPublisher.stop();
+        }
+        publisherExecutor.shutdown();
+    }
+
+    /**
+     * Safe to be called from several feed threads at once.
+     */
+    @Override
+    public void onMessage(MarketData data) {
+        conflatingQueues[shardOf(data.getSymbol())].offer(data);
+    }
+
+    public int shardOf(String symbol) {
+        return Math.floorMod(symbol.hashCode(), conflatingQueues.length);
+    }
+}
@@ -0,0 +1,152 @@
+package throttler;
+
+import interfaces.IRateLimiter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Global publish budget shared by the shards of the throttling engine, without locks. A publish claims one of the maxRequestPerInterval slots by
+ * CASing its timestamp from one out of the window to now, so a slot is used at most once per window however the shards interleave.
+ * Slot i belongs to shard i % noOfShards, a shard which has used up its share may borrow the free slots of shards idle for the last interval.
+ */
+public class SharedRateBudget {
+    private static final long NEVER_USED = Long.MIN_VALUE;
+
+    private final AtomicLongArray slotTimestamps;
+    private final AtomicLongArray lastDemandTimes; //per shard, when it last asked for budget
+    private final int             noOfShards;
+    private final long            interval;
+
+    public SharedRateBudget(int maxRequestPerInterval, long interval, int noOfShards) {
+        this.slotTimestamps  = new AtomicLongArray(maxRequestPerInterval);
+        this.lastDemandTimes = new AtomicLongArray(noOfShards);
+        this.noOfShards      = noOfShards;
+        this.interval        = interval;
+        for (int slot = 0; slot < maxRequestPerInterval; slot++) {
+            slotTimestamps.set(slot, NEVER_USED);
+        }
+        for (int shard = 0; shard < noOfShards; shard++) {
+            lastDemandTimes.set(shard, NEVER_USED);
+        }
+    }
+
+    /**
+     * @return to be used by that shard's publisher thread only
+     */
+    public IRateLimiter forShard(int shardIndex) {
+        return new ShardRateLimiter(shardIndex);
+    }
+
+    public int getSize(long now) {
+        int size = 0;
+        for (int slot = 0; slot < slotTimestamps.length(); slot++) {
+            if (!isFree(slotTimestamps.get(slot), now)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public int getShareOf(int shardIndex) {
+        return shardIndex >= slotTimestamps.length() ? 0 : (slotTimestamps.length() - shardIndex + noOfShards - 1) / noOfShards;
+    }
+
+    private boolean isFree(long timestamp, long now) {
+        return timestamp == NEVER_USED || timestamp <= now - interval;
+    }
+
+    private boolean isIdle(int shardIndex, long now) {
+        return isFree(lastDemandTimes.get(shardIndex), now);
+    }
+
+    private class ShardRateLimiter implements IRateLimiter {
+        private final int shardIndex;
+        private final int share;
+        private int       cursor; //own slots are used round robin, so the one at the cursor is normally the oldest
+        private long      lastSeen;
+
+        private ShardRateLimiter(int shardIndex) {
+            this.shardIndex = shardIndex;
+            this.share      = getShareOf(shardIndex);
+        }
+
+        @Override
+        public boolean canAcquire(long now) {
+            return findFreeSlot(now) >= 0;
+        }
+
+        /**
+         * The budget is shared so a slot seen free by canAcquire may be gone by now, use tryAcquire to check and claim in one go.
+         * @throws IllegalStateException if there was no slot left to claim, rather than publish over the limit
+         */
+        @Override
+        public void acquire(long now) {
+            if (!tryAcquire(now)) {
+                throw new IllegalStateException("Shard " + shardIndex + " found no free slot of the shared budget at " + now + ", it is claimed with tryAcquire");
+            }
+        }
+
+        @Override
+        public boolean tryAcquire(long now) {
+            lastSeen = now;
+            lastDemandTimes.lazySet(shardIndex, now);
+            for (int k = 0; k < share; k++) {
+                int  ownSlot   = (cursor + k) % share;
+                int  slot      = shardIndex + ownSlot * noOfShards;
+                long timestamp = slotTimestamps.get(slot);
+                if (isFree(timestamp, now) && slotTimestamps.compareAndSet(slot, timestamp, now)) {
+                    cursor = ownSlot + 1 == share ? 0 : ownSlot + 1;
+                    return true;
+                }
+            }
+            for (int slot = 0; slot < slotTimestamps.length(); slot++) {//own share used up, borrow from the idle shards
+                int owner = slot % noOfShards;
+                if (owner != shardIndex && isIdle(owner, now)) {
+                    long timestamp = slotTimestamps.get(slot);
+                    if (isFree(timestamp, now) && slotTimestamps.compareAndSet(slot, timestamp, now)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long nextAvailableTime(long now) {
+            lastSeen = now;
+            long next = Long.MAX_VALUE;
+            for (int slot = 0; slot < slotTimestamps.length(); slot++) {
+                int owner = slot % noOfShards;
+                if (owner == shardIndex || isIdle(owner, now)) {
+                    long timestamp = slotTimestamps.get(slot);
+                    if (isFree(timestamp, now)) {
+                        return now;
+                    }
+                    next = Math.min(next, timestamp + interval);
+                }
+            }
+            return next == Long.MAX_VALUE ? now + interval : next;//nothing this shard may use right now, check again once a window has passed
+        }
+
+        @Override
+        public int getSize() {
+            return SharedRateBudget.this.getSize(lastSeen);
+        }
+
+        @Override
+        public int getMaxRequestPerInterval() {
+            return slotTimestamps.length();
+        }
+
+        private int findFreeSlot(long now) {
+            lastSeen = now;
+            for (int slot = 0; slot < slotTimestamps.length(); slot++) {
+                int owner = slot % noOfShards;
+                if ((owner == shardIndex || isIdle(owner, now)) && isFree(slotTimestamps.get(slot), now)) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+    }
+}
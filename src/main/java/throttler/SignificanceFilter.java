@@ -0,0 +1,134 @@
+package throttler;
+
+import lombok.Getter;
+import pojo.Price;
+
+import java.util.Arrays;
+
+/**
+ * Decides whether a pending update of a symbol is worth a slot of the budget, by comparing it with what was last published for the symbol.
+ * A symbol with any change at all is still published once it has been quiet for maxQuietMillis. Only touched by the publisher thread.
+ */
+@Getter
+public class SignificanceFilter {
+    private final double absoluteThreshold;
+    private final double relativeThreshold;
+    private final double tickSize;
+    private final long   maxQuietMillis;
+    private boolean[]    published      = new boolean[0];
+    private double[]     publishedBids  = new double[0];
+    private double[]     publishedAsks  = new double[0];
+    private double[]     publishedLasts = new double[0];
+    private boolean[]    refreshesDue   = new boolean[0];
+    private boolean[]    scheduled      = new boolean[0];
+
+    /**
+     * @param tickSize 0 if prices are not on a grid
+     */
+    public SignificanceFilter(double absoluteThreshold, double relativeThreshold, double tickSize, long maxQuietMillis) {
+        if (absoluteThreshold < 0 || relativeThreshold < 0 || tickSize < 0 || maxQuietMillis <= 0) {
+            throw new IllegalArgumentException("Thresholds and tick size cannot be negative and the quiet time has to be positive");
+        }
+        this.absoluteThreshold = absoluteThreshold;
+        this.relativeThreshold = relativeThreshold;
+        this.tickSize          = tickSize;
+        this.maxQuietMillis    = maxQuietMillis;
+    }
+
+    public boolean isSignificant(int symbolId, double bid, double ask, double last, long lastPublishTime, long now) {
+        ensureCapacity(symbolId);
+        if (!published[symbolId]) {
+            return true;
+        }
+        if (now - lastPublishTime >= maxQuietMillis) {
+            return getChangedFields(symbolId, bid, ask, last) != 0;
+        }
+        return hasMoved(publishedBids[symbolId], bid) || hasMoved(publishedAsks[symbolId], ask) || hasMoved(publishedLasts[symbolId], last);
+    }
+
+    private boolean hasMoved(double published, double price) {
+        if (Double.isNaN(published) || Double.isNaN(price)) {
+            return Double.isNaN(published) != Double.isNaN(price);
+        }
+        double threshold = Math.max(absoluteThreshold, relativeThreshold * Math.abs(published));
+        if (tickSize > 0) {
+            long moveInTicks      = Math.abs(Math.round(price / tickSize) - Math.round(published / tickSize));
+            long thresholdInTicks = Math.max(1, (long) Math.ceil(threshold / tickSize - 1e-9));
+            return moveInTicks >= thresholdInTicks;
+        }
+        double move = Math.abs(price - published);
+        return move > 0 && move >= threshold;
+    }
+
+    /**
+     * @return the Price field bits of the fields which differ from what was last published for the symbol, all of them if it was never published
+     */
+    public int getChangedFields(int symbolId, double bid, double ask, double last) {
+        ensureCapacity(symbolId);
+        if (!published[symbolId]) {
+            return Price.ALL_FIELDS;
+        }
+        return (differs(publishedBids[symbolId], bid) ? Price.BID : 0) | (differs(publishedAsks[symbolId], ask) ? Price.ASK : 0)
+                | (differs(publishedLasts[symbolId], last) ? Price.LAST : 0);
+    }
+
+    private static boolean differs(double published, double price) {
+        return Double.doubleToLongBits(published) != Double.doubleToLongBits(price);
+    }
+
+    public void recordPublish(int symbolId, double bid, double ask, double last) {
+        ensureCapacity(symbolId);
+        published[symbolId]      = true;
+        publishedBids[symbolId]  = bid;
+        publishedAsks[symbolId]  = ask;
+        publishedLasts[symbolId] = last;
+        refreshesDue[symbolId]   = false;
+    }
+
+    /**
+     * @return false if the symbol is in the refresh wheel already
+     */
+    boolean markRefreshDue(int symbolId) {
+        ensureCapacity(symbolId);
+        refreshesDue[symbolId] = true;
+        if (scheduled[symbolId]) {
+            return false;
+        }
+        scheduled[symbolId] = true;
+        return true;
+    }
+
+    /**
+     * @return whether the symbol still has a suppressed update
+     */
+    boolean onRefreshExpired(int symbolId) {
+        scheduled[symbolId] = false;
+        return refreshesDue[symbolId];
+    }
+
+    boolean isRefreshScheduled(int symbolId) {
+        return symbolId < scheduled.length && scheduled[symbolId];
+    }
+
+    /**
+     * Not for a symbol in the refresh wheel.
+     */
+    public void forgetSymbol(int symbolId) {
+        if (symbolId < published.length) {
+            published[symbolId]    = false;
+            refreshesDue[symbolId] = false;
+        }
+    }
+
+    private void ensureCapacity(int symbolId) {
+        if (symbolId >= publishedBids.length) {
+            int newLength  = Math.max(symbolId + 1, Math.max(1024, publishedBids.length * 2));
+            published      = Arrays.copyOf(published, newLength);
+            publishedBids  = Arrays.copyOf(publishedBids, newLength);
+            publishedAsks  = Arrays.copyOf(publishedAsks, newLength);
+            publishedLasts = Arrays.copyOf(publishedLasts, newLength);
+            refreshesDue   = Arrays.copyOf(refreshesDue, newLength);
+            scheduled      = Arrays.copyOf(scheduled, newLength);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package throttler;
+
+import interfaces.IRateLimiter;
+
+/**
+ * Approximate sliding window from two fixed windows, the previous one weighted by how much of it still overlaps the sliding window.
+ * A burst at the end of the previous window can let a window go slightly over the limit.
+ */
+public class SlidingCounterRateLimiter implements IRateLimiter {
+    private final int  maxRequestPerInterval;
+    private final long interval;
+    private long       currentWindowStart = Long.MIN_VALUE;
+    private int        currentCount;
+    private int        previousCount;
+    private long       lastSeen;
+
+    public SlidingCounterRateLimiter(int maxRequestPerInterval, long interval) {
+        this.maxRequestPerInterval = maxRequestPerInterval;
+        this.interval              = interval;
+    }
+
+    @Override
+    public boolean canAcquire(long now) {
+        roll(now);
+        return estimatedCount(now) < maxRequestPerInterval;
+    }
+
+    @Override
+    public void acquire(long now) {
+        roll(now);
+        currentCount++;
+    }
+
+    @Override
+    public long nextAvailableTime(long now) {
+        if (canAcquire(now)) {
+            return now;
+        }
+        if (currentCount >= maxRequestPerInterval || previousCount == 0) {
+            return currentWindowStart + interval;//nothing leaks out of the current window before it rolls over
+        }
+        //the weight of the previous window decays linearly, solve previousCount * (1 - elapsed / interval) + currentCount < maxRequestPerInterval for elapsed
+        long elapsed = interval - (long) ((double) (maxRequestPerInterval - currentCount) * interval / previousCount);
+        return Math.min(currentWindowStart + interval, Math.max(now + 1, currentWindowStart + elapsed + 1));
+    }
+
+    @Override
+    public int getSize() {
+        return (int) Math.ceil(estimatedCount(lastSeen));
+    }
+
+    @Override
+    public int getMaxRequestPerInterval() {
+        return maxRequestPerInterval;
+    }
+
+    private double estimatedCount(long now) {
+        if (currentWindowStart == Long.MIN_VALUE) {
+            return 0;
+        }
+        double previousWeight = 1 - (double) (now - currentWindowStart) / interval;
+        return previousCount * Math.max(0, previousWeight) + currentCount;
+    }
+
+    private void roll(long now) {
+        lastSeen = now;
+        if (currentWindowStart == Long.MIN_VALUE) {
+            currentWindowStart = now;
+            return;
+        }
+        long elapsedWindows = (now - currentWindowStart) / interval;
+        if (elapsedWindows > 0) {
+            previousCount      = elapsedWindows == 1 ? currentCount : 0;
+            currentCount       = 0;
+            currentWindowStart += elapsedWindows * interval;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package throttler;
+
+import interfaces.IRateLimiter;
+
+/**
+ * Exact sliding window log in a primitive ring sized to maxRequestPerInterval, as there can never be more than that many in the window.
+ */
+public class SlidingLogRateLimiter implements IRateLimiter {
+    private final long[] timestamps;
+    private final long   interval;
+    private int          head;
+    private int          size;
+    private int          limit; //at most timestamps.length
+
+    public SlidingLogRateLimiter(int maxRequestPerInterval, long interval) {
+        this.timestamps = new long[maxRequestPerInterval];
+        this.interval   = interval;
+        this.limit      = maxRequestPerInterval;
+    }
+
+    /**
+     * Publishes already in the window stay, a lower limit just has to wait for enough of them to expire.
+     */
+    public void setLimit(int limit) {
+        this.limit = Math.max(1, Math.min(limit, timestamps.length));
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public boolean canAcquire(long now) {
+        expire(now);
+        return size < limit;
+    }
+
+    @Override
+    public void acquire(long now) {
+        int tail = head + size;
+        timestamps[tail >= timestamps.length ? tail - timestamps.length : tail] = now;
+        size++;
+    }
+
+    @Override
+    public long nextAvailableTime(long now) {
+        expire(now);
+        if (size < limit) {
+            return now;
+        }
+        int oldest = head + size - limit;//the timestamp which has to expire to bring the window below the limit
+        return timestamps[oldest >= timestamps.length ? oldest - timestamps.length : oldest] + interval;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getMaxRequestPerInterval() {
+        return timestamps.length;
+    }
+
+    /**
+     * Removes all the timestamps which are older than the time interval
+     */
+    private void expire(long now) {
+        while (size > 0 && timestamps[head] <= now - interval) {
+            head = head + 1 == timestamps.length ? 0 : head + 1;
+            size--;
+        }
+    }
+}
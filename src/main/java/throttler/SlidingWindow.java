@@ -1,57 +1,228 @@
 package throttler;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Queue;
+import interfaces.IClock;
+import interfaces.IRateLimiter;
+import pojo.SymbolStateStore;
 
 public class SlidingWindow {
-    private final Queue<Long> slidingWindow = new LinkedList<>();
-    private final int maxRequestPerInterval ;
+    private static final long NEVER_PUBLISHED = Long.MIN_VALUE;
+    private final IRateLimiter rateLimiter;
+    private final IRateLimiter[] rateLimitersByGroup;
+    private final GroupRateBudget groupRateBudget; //null if the budget is flat
+    private SlidingLogRateLimiter effectiveLimit; //optional soft limit below the hard cap
     private final long timeIntervalInMillisecs;
-    private final HashMap<String, Long> symbolLastPublishTimes = new HashMap<>();
+    private static final int LAST_PUBLISH_TIME = 0;
+    private SymbolStateStore symbolLastPublishTimes = new SymbolStateStore(1, 1024, false); //only ever touched by the publisher thread
+    private IClock clock = SystemClock.INSTANCE;
     public SlidingWindow(int maxRequestPerInterval, long intervalInSecs){
-        this.maxRequestPerInterval = maxRequestPerInterval;
+        this(maxRequestPerInterval, intervalInSecs, RateLimiterType.SLIDING_LOG);
+    }
+
+    public SlidingWindow(int maxRequestPerInterval, long intervalInSecs, RateLimiterType rateLimiterType){
+        this(rateLimiterType.create(maxRequestPerInterval, intervalInSecs*1000), intervalInSecs);
+    }
+
+    /**
+     * @param rateLimiter working in millis over the same interval
+     */
+    public SlidingWindow(IRateLimiter rateLimiter, long intervalInSecs){
+        this(new IRateLimiter[]{rateLimiter}, null, intervalInSecs);
+    }
+
+    public SlidingWindow(GroupRateBudget groupRateBudget, long intervalInSecs){
+        this(groupRateLimiters(groupRateBudget), groupRateBudget, intervalInSecs);
+    }
+
+    private SlidingWindow(IRateLimiter[] rateLimitersByGroup, GroupRateBudget groupRateBudget, long intervalInSecs){
         this.timeIntervalInMillisecs = intervalInSecs*1000;
+        this.rateLimitersByGroup     = rateLimitersByGroup;
+        this.groupRateBudget         = groupRateBudget;
+        this.rateLimiter             = rateLimitersByGroup[rateLimitersByGroup.length - 1];
+    }
+
+    private static IRateLimiter[] groupRateLimiters(GroupRateBudget groupRateBudget) {
+        IRateLimiter[] rateLimiters = new IRateLimiter[groupRateBudget.getNoOfGroups()];
+        for (int group = 0; group < rateLimiters.length; group++) {
+            rateLimiters[group] = groupRateBudget.forGroup(group);
+        }
+        return rateLimiters;
+    }
+
+    /**
+     * Call before the publisher is created.
+     */
+    public void setClock(IClock clock) {
+        this.clock = clock;
+    }
+
+    public IClock getClock() {
+        return clock;
     }
 
     public int getSize(){
-        return slidingWindow.size();
+        return rateLimiter.getSize();
+    }
+
+    public int getMaxRequestPerInterval() {
+        return rateLimiter.getMaxRequestPerInterval();
+    }
+
+    public GroupRateBudget getGroupRateBudget() {
+        return groupRateBudget;
     }
 
-    public boolean canPublish(String symbol){
-        return isAllowed() && shouldPublishSymbolWithinWindow(symbol);
+    public int getNoOfGroups() {
+        return rateLimitersByGroup.length;
+    }
+
+    public int getGroup(int symbolId) {
+        return groupRateBudget == null ? 0 : groupRateBudget.getGroup(symbolId);
+    }
+
+    /**
+     * The symbol's once per window rule is checked first and the global budget is only consumed if it passes, so a symbol which is blocked
+     * does not eat into the budget of the others. The budget is checked and claimed in one go as it may be shared with other publisher threads.
+     */
+    public boolean canPublish(int symbolId){
+        long now = clock.epochMillis();
+        if (isSymbolOutsideWindow(symbolId, now) && isBelowEffectiveLimit(now) && rateLimitersByGroup[getGroup(symbolId)].tryAcquire(now)) {
+            acquireEffectiveLimit(now);
+            symbolLastPublishTimes.put(symbolId, LAST_PUBLISH_TIME, now);
+            return true;
+        }
+        return false;
+    }
+
+    public void setEffectiveLimit(int limit) {
+        if (effectiveLimit == null) {
+            effectiveLimit = new SlidingLogRateLimiter(getMaxRequestPerInterval(), timeIntervalInMillisecs);
+        }
+        effectiveLimit.setLimit(limit);
+    }
+
+    public int getEffectiveLimit() {
+        return effectiveLimit == null ? getMaxRequestPerInterval() : effectiveLimit.getLimit();
+    }
+
+    private boolean isBelowEffectiveLimit(long now) {
+        return effectiveLimit == null || effectiveLimit.canAcquire(now);
+    }
+
+    private void acquireEffectiveLimit(long now) {
+        if (effectiveLimit != null) {
+            effectiveLimit.acquire(now);
+        }
     }
 
     /**
-     * It tries to remove all the timestamps which are older than the time interval and compares that size with the max rps for verifying eligibility
+     * Checks the global budget and consumes a slot of it only if it is allowed, rejected attempts are not recorded.
      * @return
      */
     public boolean isAllowed() {
-        long now = System.currentTimeMillis();
-        while (!slidingWindow.isEmpty() && slidingWindow.element() <= now-timeIntervalInMillisecs) {
-            slidingWindow.poll();
+        return isAllowed(rateLimiter, clock.epochMillis());
+    }
+
+    public boolean isAllowed(int group) {
+        return isAllowed(rateLimitersByGroup[group], clock.epochMillis());
+    }
+
+    private boolean isAllowed(IRateLimiter rateLimiter, long now) {
+        if (isBelowEffectiveLimit(now) && rateLimiter.tryAcquire(now)) {
+            acquireEffectiveLimit(now);
+            return true;
         }
-        slidingWindow.add(now);
-        return slidingWindow.size() <= maxRequestPerInterval;
+        return false;
     }
 
     /**
      * Runs the check to make sure in every sliding window, each symbol is published once.
-     * @param symbol
      * @return
      */
-    public boolean shouldPublishSymbolWithinWindow(String symbol) {
-        long curTime              = System.currentTimeMillis();
-        Long lastPublishedInstant = symbolLastPublishTimes.get(symbol);
-        if (lastPublishedInstant == null) {
-            symbolLastPublishTimes.put(symbol, curTime);
-            return true;
-        }
-        long timeElapsed = curTime - lastPublishedInstant;
-        if (timeElapsed >= timeIntervalInMillisecs) {
-            symbolLastPublishTimes.put(symbol, curTime);
+    public boolean shouldPublishSymbolWithinWindow(int symbolId) {
+        long curTime = clock.epochMillis();
+        if (isSymbolOutsideWindow(symbolId, curTime)) {
+            symbolLastPublishTimes.put(symbolId, LAST_PUBLISH_TIME, curTime);
             return true;
         }
         return false;
     }
+
+    /**
+     * @return the earliest time in millis at which a slot of the global budget is free
+     */
+    public long getNextAvailableTime() {
+        return nextAvailableTime(rateLimiter, clock.epochMillis());
+    }
+
+    public long getNextAvailableTime(int group) {
+        return nextAvailableTime(rateLimitersByGroup[group], clock.epochMillis());
+    }
+
+    private long nextAvailableTime(IRateLimiter rateLimiter, long now) {
+        long nextAvailableTime = rateLimiter.nextAvailableTime(now);
+        return effectiveLimit == null ? nextAvailableTime : Math.max(nextAvailableTime, effectiveLimit.nextAvailableTime(now));
+    }
+
+    /**
+     * @return the time in millis at which the symbol's own window since its last publish ends, Long.MIN_VALUE if it was never published
+     */
+    public long getSymbolNextPublishTime(int symbolId) {
+        long lastPublishedInstant = getSymbolLastPublishTime(symbolId);
+        return lastPublishedInstant == NEVER_PUBLISHED ? Long.MIN_VALUE : lastPublishedInstant + timeIntervalInMillisecs;
+    }
+
+    /**
+     * @return the time in millis of the symbol's last publish, Long.MIN_VALUE if it was never published
+     */
+    public long getSymbolLastPublishTime(int symbolId) {
+        return symbolLastPublishTimes.get(symbolId, LAST_PUBLISH_TIME, NEVER_PUBLISHED);
+    }
+
+    public void restoreLastPublishTime(int symbolId, long lastPublishTime) {
+        symbolLastPublishTimes.put(symbolId, LAST_PUBLISH_TIME, lastPublishTime);
+    }
+
+    public void forgetSymbol(int symbolId) {
+        symbolLastPublishTimes.remove(symbolId);
+    }
+
+    /**
+     * Publisher thread only.
+     */
+    public SymbolStateStore getSymbolLastPublishTimes() {
+        return symbolLastPublishTimes;
+    }
+
+    /**
+     * Call before the publisher starts.
+     */
+    public void moveSymbolStateOffHeap() {
+        if (!symbolLastPublishTimes.isOffHeap()) {
+            SymbolStateStore offHeap = new SymbolStateStore(1, Math.max(1024, symbolLastPublishTimes.size() * 2), true);
+            symbolLastPublishTimes.copyTo(offHeap);
+            symbolLastPublishTimes = offHeap;
+        }
+    }
+
+    /**
+     * Oldest first, with group budgets the publishes are charged to the default group.
+     */
+    public void restoreAcquired(long publishTime) {
+        if (publishTime > clock.epochMillis() - timeIntervalInMillisecs) {
+            rateLimiter.tryAcquire(publishTime);//the budget may be shared, a publish it has no room for any more is dropped
+        }
+    }
+
+    public boolean isSymbolOutsideWindow(int symbolId) {
+        return isSymbolOutsideWindow(symbolId, clock.epochMillis());
+    }
+
+    public long getTimeIntervalInMillisecs() {
+        return timeIntervalInMillisecs;
+    }
+
+    private boolean isSymbolOutsideWindow(int symbolId, long now) {
+        long lastPublishedInstant = getSymbolLastPublishTime(symbolId);
+        return lastPublishedInstant == NEVER_PUBLISHED || now - lastPublishedInstant >= timeIntervalInMillisecs;
+    }
 }
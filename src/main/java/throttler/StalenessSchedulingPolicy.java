@@ -0,0 +1,146 @@
+package throttler;
+
+import interfaces.ISchedulingPolicy;
+
+import java.util.Arrays;
+
+/**
+ * Stalest symbol first, in an indexed binary heap of symbol ids. A symbol of weight w is due once it has been stale for interval / w,
+ * the due time is fixed when the symbol is added so ties keep the order the symbols were added in.
+ */
+public class StalenessSchedulingPolicy implements ISchedulingPolicy {
+    private static final int NOT_IN_HEAP = -1;
+
+    private final long intervalInMillis;
+    private int[]      heap                   = new int[1024];
+    private int[]      heapIndexesBySymbolId  = new int[1024];
+    private long[]     dueTimesBySymbolId     = new long[1024];
+    private long[]     addOrdersBySymbolId    = new long[1024]; //tie breaker
+    private double[]   weightsBySymbolId      = new double[1024];
+    private int        size;
+    private long       noOfAdds;
+
+    public StalenessSchedulingPolicy(long intervalInMillis) {
+        this.intervalInMillis = intervalInMillis;
+        Arrays.fill(heapIndexesBySymbolId, NOT_IN_HEAP);
+        Arrays.fill(weightsBySymbolId, 1.0);
+    }
+
+    /**
+     * @param weight defaults to 1
+     */
+    public void setWeight(int symbolId, double weight) {
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("Weight must be positive but was " + weight);
+        }
+        ensureCapacity(symbolId);
+        weightsBySymbolId[symbolId] = weight;
+    }
+
+    @Override
+    public boolean isConfigured(int symbolId) {
+        return symbolId < weightsBySymbolId.length && weightsBySymbolId[symbolId] != 1.0;
+    }
+
+    /**
+     * A symbol which is in the heap already only moves up if it is due earlier now.
+     */
+    @Override
+    public void add(int symbolId, long staleSince) {
+        ensureCapacity(symbolId);
+        long dueTime = staleSince + (long) (intervalInMillis / weightsBySymbolId[symbolId]);
+        int  index   = heapIndexesBySymbolId[symbolId];
+        if (index == NOT_IN_HEAP) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            index = size++;
+            heap[index]                     = symbolId;
+            heapIndexesBySymbolId[symbolId] = index;
+            addOrdersBySymbolId[symbolId]   = noOfAdds++;
+        } else if (dueTime >= dueTimesBySymbolId[symbolId]) {
+            return;
+        }
+        dueTimesBySymbolId[symbolId] = dueTime;
+        siftUp(index);
+    }
+
+    @Override
+    public int peek() {
+        return size == 0 ? EMPTY : heap[0];
+    }
+
+    @Override
+    public int poll() {
+        if (size == 0) {
+            return EMPTY;
+        }
+        int symbolId = heap[0];
+        heapIndexesBySymbolId[symbolId] = NOT_IN_HEAP;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            heapIndexesBySymbolId[heap[0]] = 0;
+            siftDown(0);
+        }
+        return symbolId;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void siftUp(int index) {
+        int symbolId = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isDueBefore(symbolId, heap[parent])) {
+                break;
+            }
+            move(heap[parent], index);
+            index = parent;
+        }
+        move(symbolId, index);
+    }
+
+    private void siftDown(int index) {
+        int symbolId = heap[index];
+        int half     = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && isDueBefore(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!isDueBefore(heap[child], symbolId)) {
+                break;
+            }
+            move(heap[child], index);
+            index = child;
+        }
+        move(symbolId, index);
+    }
+
+    private void move(int symbolId, int index) {
+        heap[index]                     = symbolId;
+        heapIndexesBySymbolId[symbolId] = index;
+    }
+
+    private boolean isDueBefore(int symbolId, int otherSymbolId) {
+        long dueTime      = dueTimesBySymbolId[symbolId];
+        long otherDueTime = dueTimesBySymbolId[otherSymbolId];
+        return dueTime < otherDueTime || (dueTime == otherDueTime && addOrdersBySymbolId[symbolId] < addOrdersBySymbolId[otherSymbolId]);
+    }
+
+    private void ensureCapacity(int symbolId) {
+        if (symbolId >= heapIndexesBySymbolId.length) {
+            int oldLength         = heapIndexesBySymbolId.length;
+            int newLength         = Math.max(symbolId + 1, oldLength * 2);
+            heapIndexesBySymbolId = Arrays.copyOf(heapIndexesBySymbolId, newLength);
+            dueTimesBySymbolId    = Arrays.copyOf(dueTimesBySymbolId, newLength);
+            addOrdersBySymbolId   = Arrays.copyOf(addOrdersBySymbolId, newLength);
+            weightsBySymbolId     = Arrays.copyOf(weightsBySymbolId, newLength);
+            Arrays.fill(heapIndexesBySymbolId, oldLength, newLength, NOT_IN_HEAP);
+            Arrays.fill(weightsBySymbolId, oldLength, newLength, 1.0);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package throttler;
+
+import interfaces.IClock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The wall clock. Nanos are taken off the monotonic clock from when the class was loaded, System.currentTimeMillis is too coarse for the latencies
+ * and Instant.now allocates. Millis are System.currentTimeMillis itself, which is what other processes sharing a budget or reading a snapshot go by.
+ */
+public final class SystemClock implements IClock {
+    public static final SystemClock INSTANCE = new SystemClock();
+
+    private final long epochNanosAtStart = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    private final long nanoTimeAtStart   = System.nanoTime();
+
+    private SystemClock() {
+    }
+
+    @Override
+    public long epochNanos() {
+        return epochNanosAtStart + (System.nanoTime() - nanoTimeAtStart);
+    }
+
+    @Override
+    public long epochMillis() {
+        return System.currentTimeMillis();
+    }
+}
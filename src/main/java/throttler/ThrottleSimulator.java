@@ -0,0 +1,222 @@
+package throttler;
+
+import interfaces.IFeedSource;
+import lombok.Getter;
+import lombok.Setter;
+import org.HdrHistogram.Histogram;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.MarketDataBasket;
+import pojo.SymbolRegistry;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Discrete event simulation of the throttler for sizing its settings: the real conflating queue, sliding window and throttled publisher run on a
+ * VirtualClock against a generated or recorded feed, the publisher like an EventDrivenPublisher. As a command line tool it runs a feed against every candidate setting,
+ *  java -cp SlidingWindowMarketDataThrottler-1.0-SNAPSHOT-jar-with-dependencies.jar throttler.ThrottleSimulator <maxRequestPerInterval/intervalInSecs,..> [capture]
+ * with the feed generated as per -DloadRate, -DloadSymbols, -DzipfExponent, -DarrivalProcess, -DburstSize and -DsessionSeconds if no capture is given.
+ */
+@Getter @Setter
+public class ThrottleSimulator {
+    private static final Logger logger = LogManager.getLogger(ThrottleSimulator.class.getSimpleName());
+    private static final long   HIGHEST_TRACKABLE_STALENESS_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private final IFeedSource            feedSource;
+    private final int                    capacity;
+    private RateLimiterType              rateLimiterType = RateLimiterType.SLIDING_LOG;
+    private Consumer<ThrottledPublisher> publisherSetup  = throttledPublisher -> { };
+
+    public ThrottleSimulator(IFeedSource feedSource, int capacity) {
+        this.feedSource = feedSource;
+        this.capacity   = capacity;
+    }
+
+    public Result run(int maxRequestPerInterval, long intervalInSecs) {
+        long               startCpuNanos   = System.nanoTime();
+        long               startEpochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        VirtualClock       clock           = new VirtualClock(startEpochNanos);
+        ConflatingQueue    conflatingQueue = new ConflatingQueue(capacity);
+        SlidingWindow      slidingWindow   = new SlidingWindow(maxRequestPerInterval, intervalInSecs, rateLimiterType);
+        slidingWindow.setClock(clock);
+        SimulatedDownstream downstream     = new SimulatedDownstream(conflatingQueue, clock);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, downstream, slidingWindow);
+        publisherSetup.accept(throttledPublisher);
+        feedSource.open(conflatingQueue.getSymbolRegistry(), startEpochNanos);
+
+        long publisherDue = Long.MAX_VALUE;
+        while (true) {
+            long tickTime = feedSource.peekTime();
+            if (tickTime != Long.MAX_VALUE && tickTime <= publisherDue) {//ticks at the same instant as a pass go in first
+                clock.advanceTo(Math.max(clock.epochNanos(), tickTime));
+                feedSource.next(downstream);
+                if (!conflatingQueue.isEmpty()) {//a symbol turned pending, which wakes the publisher up
+                    publisherDue = clock.epochNanos();
+                }
+            } else if (publisherDue != Long.MAX_VALUE) {
+                clock.advanceTo(Math.max(clock.epochNanos(), publisherDue));
+                throttledPublisher.publishData();
+                long nextPublishTime = throttledPublisher.getNextPublishTime();
+                publisherDue = nextPublishTime == Long.MAX_VALUE ? Long.MAX_VALUE//the window works in millis, nothing changes before the next one without a tick
+                        : Math.max(TimeUnit.MILLISECONDS.toNanos(nextPublishTime), TimeUnit.MILLISECONDS.toNanos(clock.epochMillis() + 1));
+            } else {
+                break;
+            }
+        }
+        Result result = new Result(maxRequestPerInterval, intervalInSecs, downstream, clock.epochNanos() - startEpochNanos, System.nanoTime() - startCpuNanos);
+        logger.info(result);
+        return result;
+    }
+
+    private static class SimulatedDownstream extends MarketDataProcessor {
+        private static final long NOTHING_PENDING = Long.MIN_VALUE;
+
+        private final VirtualClock   clock;
+        private final SymbolRegistry symbolRegistry;
+        private final Histogram      stalenesses = new Histogram(HIGHEST_TRACKABLE_STALENESS_NANOS, 3);
+        private long[]               pendingSinces = new long[0];
+        private long[]               maxStalenesses = new long[0]; //NOTHING_PENDING until the symbol is published
+        private long                 noOfTicks;
+        private long                 noOfPublishes;
+        private long                 noOfPublishCalls;
+
+        private SimulatedDownstream(ConflatingQueue conflatingQueue, VirtualClock clock) {
+            super(null, conflatingQueue);
+            this.clock          = clock;
+            this.symbolRegistry = conflatingQueue.getSymbolRegistry();
+        }
+
+        @Override
+        public void onTick(int symbolId, double bid, double ask, double last, long updateTimeNanos) {
+            ensureCapacity(symbolId);
+            if (pendingSinces[symbolId] == NOTHING_PENDING) {
+                pendingSinces[symbolId] = clock.epochNanos();
+            }
+            noOfTicks++;
+            super.onTick(symbolId, bid, ask, last, updateTimeNanos);
+        }
+
+        @Override
+        public void publishAggregatedMarketData(MarketData data) {
+            noOfPublishCalls++;
+            recordPublish(symbolRegistry.getSymbolId(data.getSymbol()));
+        }
+
+        @Override
+        public void publishAggregatedMarketData(MarketDataBasket basket) {
+            noOfPublishCalls++;
+            for (int i = 0; i < basket.getSize(); i++) {
+                recordPublish(basket.getSymbolId(i));
+            }
+        }
+
+        private void recordPublish(int symbolId) {
+            ensureCapacity(symbolId);
+            long staleness = pendingSinces[symbolId] == NOTHING_PENDING ? 0 : clock.epochNanos() - pendingSinces[symbolId];
+            stalenesses.recordValue(Math.min(staleness, HIGHEST_TRACKABLE_STALENESS_NANOS));
+            maxStalenesses[symbolId] = Math.max(maxStalenesses[symbolId], staleness);
+            pendingSinces[symbolId]  = NOTHING_PENDING;
+            noOfPublishes++;
+        }
+
+        private void ensureCapacity(int symbolId) {
+            if (symbolId >= pendingSinces.length) {
+                int oldLength  = pendingSinces.length;
+                pendingSinces  = Arrays.copyOf(pendingSinces, Math.max(symbolId + 1, Math.max(1024, oldLength * 2)));
+                maxStalenesses = Arrays.copyOf(maxStalenesses, pendingSinces.length);
+                Arrays.fill(pendingSinces, oldLength, pendingSinces.length, NOTHING_PENDING);
+                Arrays.fill(maxStalenesses, oldLength, maxStalenesses.length, NOTHING_PENDING);
+            }
+        }
+    }
+
+    /**
+     * Stalenesses are in nanos of virtual time.
+     */
+    @Getter
+    public static class Result {
+        private final int       maxRequestPerInterval;
+        private final long      intervalInSecs;
+        private final long      noOfTicks;
+        private final long      noOfPublishes;    //symbols published, more than the publish calls in basket mode
+        private final long      noOfPublishCalls; //what the budget was spent on
+        private final long      simulatedNanos;
+        private final long      elapsedNanos;     //wall clock
+        private final Histogram stalenesses;
+        private final Histogram symbolMaxStalenesses = new Histogram(HIGHEST_TRACKABLE_STALENESS_NANOS, 3);
+
+        private Result(int maxRequestPerInterval, long intervalInSecs, SimulatedDownstream downstream, long simulatedNanos, long elapsedNanos) {
+            this.maxRequestPerInterval = maxRequestPerInterval;
+            this.intervalInSecs        = intervalInSecs;
+            this.noOfTicks             = downstream.noOfTicks;
+            this.noOfPublishes         = downstream.noOfPublishes;
+            this.noOfPublishCalls      = downstream.noOfPublishCalls;
+            this.simulatedNanos        = simulatedNanos;
+            this.elapsedNanos          = elapsedNanos;
+            this.stalenesses           = downstream.stalenesses;
+            for (long maxStaleness : downstream.maxStalenesses) {
+                if (maxStaleness != SimulatedDownstream.NOTHING_PENDING) {
+                    symbolMaxStalenesses.recordValue(Math.min(maxStaleness, HIGHEST_TRACKABLE_STALENESS_NANOS));
+                }
+            }
+        }
+
+        /**
+         * @return per second of virtual time
+         */
+        public double getPublishRate() {
+            return simulatedNanos == 0 ? 0 : noOfPublishCalls * 1e9 / simulatedNanos;
+        }
+
+        public double getConflationRatio() {
+            return noOfPublishes == 0 ? 0 : (double) noOfTicks / noOfPublishes;
+        }
+
+        public long getStalenessMillisAtPercentile(double percentile) {
+            return TimeUnit.NANOSECONDS.toMillis(stalenesses.getValueAtPercentile(percentile));
+        }
+
+        @Override
+        public String toString() {
+            return "ThrottleSimulator: limit=" + maxRequestPerInterval + "/" + intervalInSecs + "s ticks=" + noOfTicks + " publishes=" + noOfPublishes
+                    + " publishCalls=" + noOfPublishCalls + " publishRate=" + String.format("%.2f", getPublishRate()) + "/s conflationRatio=" + String.format("%.2f", getConflationRatio())
+                    + " stalenessMillis(p50=" + getStalenessMillisAtPercentile(50) + " p99=" + getStalenessMillisAtPercentile(99) + " max=" + TimeUnit.NANOSECONDS.toMillis(stalenesses.getMaxValue()) + ")"
+                    + " symbolMaxStalenessMillis(p50=" + TimeUnit.NANOSECONDS.toMillis(symbolMaxStalenesses.getValueAtPercentile(50))
+                    + " p99=" + TimeUnit.NANOSECONDS.toMillis(symbolMaxStalenesses.getValueAtPercentile(99)) + " max=" + TimeUnit.NANOSECONDS.toMillis(symbolMaxStalenesses.getMaxValue()) + ")"
+                    + " simulatedSecs=" + TimeUnit.NANOSECONDS.toSeconds(simulatedNanos) + " elapsedMillis=" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ThrottleSimulator <maxRequestPerInterval/intervalInSecs,..> [capture]");
+            System.exit(1);
+        }
+        LogManager.getLogger(ThrottledPublisher.class.getSimpleName()).setLevel(Level.INFO);//a debug line per publish pass would take longer than the simulation
+        int         capacity   = Integer.getInteger("capacity", 1000000);
+        FeedReplayer replayer  = args.length > 1 ? new FeedReplayer(Paths.get(args[1])) : null;
+        IFeedSource feedSource = replayer != null ? replayer.asFeedSource()
+                : new GeneratedFeed(Integer.getInteger("loadSymbols", 10000), Double.parseDouble(System.getProperty("zipfExponent", "1")),
+                        ArrivalProcess.valueOf(System.getProperty("arrivalProcess", ArrivalProcess.POISSON.name())), Double.parseDouble(System.getProperty("loadRate", "1000")),
+                        Integer.getInteger("burstSize", 100), Long.getLong("sessionSeconds", TimeUnit.HOURS.toSeconds(6) + TimeUnit.MINUTES.toSeconds(30)), TimeUnit.SECONDS,
+                        Long.getLong("seed", 1));
+        ThrottleSimulator simulator = new ThrottleSimulator(feedSource, capacity);
+        simulator.setRateLimiterType(RateLimiterType.valueOf(System.getProperty("rateLimiterType", RateLimiterType.SLIDING_LOG.name())));
+        SchedulingPolicyType schedulingPolicy = SchedulingPolicyType.valueOf(System.getProperty("schedulingPolicy", SchedulingPolicyType.FIFO.name()));
+        simulator.setPublisherSetup(throttledPublisher -> throttledPublisher.setSchedulingPolicy(schedulingPolicy));
+        for (String candidate : args[0].split(",")) {
+            String[] limitAndInterval = candidate.trim().split("/");
+            System.out.println(simulator.run(Integer.parseInt(limitAndInterval[0]), limitAndInterval.length > 1 ? Long.parseLong(limitAndInterval[1]) : 1));
+        }
+        if (replayer != null) {
+            replayer.close();
+        }
+    }
+}
@@ -1,72 +1,515 @@
 package throttler;
 
+import interfaces.IAsyncMarketDataProcessor;
+import interfaces.IBasketMarketDataProcessor;
+import interfaces.IClock;
 import interfaces.IMarketDataProcessor;
+import interfaces.IOrderBookMarketDataProcessor;
+import interfaces.ISchedulingPolicy;
 import interfaces.IThrottledPublisher;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import pojo.ConflatingQueue;
+import pojo.DepthBooks;
+import pojo.IntQueue;
 import pojo.MarketData;
+import pojo.MarketDataBasket;
+import pojo.MarketDataSnapshot;
+import pojo.OrderBookSnapshot;
+import pojo.Price;
+import pojo.SymbolRegistry;
+import pojo.SymbolRing;
+import pojo.SymbolStateStore;
 
+import java.util.Arrays;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 
 @Getter @Setter @ToString
 public class ThrottledPublisher implements IThrottledPublisher {
     private static final Logger logger = LogManager.getLogger(ThrottledPublisher.class.getSimpleName());
+    static final int                    SWEEP_SLOTS_PER_PASS = 64; //so a pass never scans a big universe in one go
     private final ConflatingQueue conflatingQueue;
     private final IMarketDataProcessor marketDataProcessor;
     private final SlidingWindow         slidingWindow;
-    private final Map<String, Integer>  publishCounts = new TreeMap<>((a,b)->{
-        if (StringUtils.isNumeric(a.substring(1)) && StringUtils.isNumeric(b.substring(1))) {//This is just to have convenience in seeing the publish counts in order
-            int aInt = Integer.parseInt(a.substring(1));
-            int bInt = Integer.parseInt(b.substring(1));
-            return Integer.compare(aInt, bInt);
-        }else{
-            return StringUtils.compare(a,b);
-        }
-    });
+    private final IClock                clock;
+    private final CooldownTimingWheel   cooldownWheel;
+    private final ISchedulingPolicy[]   schedulingPolicies; //per group of the budget
+    private final IntQueue              expiredSymbols   = new IntQueue(1024);
+    private long[]                      staleSincesBySymbolId = new long[1024];
+    private final ThrottlerMetrics      metrics;
+    private volatile long               nextPublishTime = Long.MAX_VALUE;
+    private PublishJournal              publishJournal;
+    private MappedSnapshotStore         snapshotStore;
+    private MarketDataBasket            basket;
+    private AdaptiveThrottle            adaptiveThrottle;
+    private SignificanceFilter          significanceFilter;
+    private CooldownTimingWheel         refreshWheel;
+    private boolean                     deltaPublishing;
+    private long                        idleTtlMillis; //0 if symbols are never evicted
+    private int                         sweepSlot;
+    private OrderBookSnapshot           book;
+    private DepthBooks                  publishedBooks; //the books as downstream got them
+    private final MarketDataSnapshot    snapshot = new MarketDataSnapshot();
 
     public ThrottledPublisher(ConflatingQueue conflatingQueue, IMarketDataProcessor marketDataProcessor, SlidingWindow slidingWindow) {
         this.conflatingQueue     = conflatingQueue;
         this.marketDataProcessor = marketDataProcessor;
         this.slidingWindow       = slidingWindow;
+        this.clock               = slidingWindow.getClock();
+        this.cooldownWheel       = new CooldownTimingWheel(slidingWindow.getTimeIntervalInMillisecs());
+        this.metrics             = new ThrottlerMetrics(conflatingQueue, clock);
+        this.schedulingPolicies  = new ISchedulingPolicy[slidingWindow.getNoOfGroups()];
+        setSchedulingPolicy(SchedulingPolicyType.FIFO);
+    }
+
+    public ThrottledPublisher(ConflatingQueue conflatingQueue, IMarketDataProcessor marketDataProcessor, int maxRequestPerInterval, long intervalInSecs, RateLimiterType rateLimiterType) {
+        this(conflatingQueue, marketDataProcessor, new SlidingWindow(maxRequestPerInterval, intervalInSecs, rateLimiterType));
     }
 
     /**
      * This function can get called periodically or whenever there is data to be published, whatever it can publish out of the pending symbols to published it will do, rest it will leave for next iteration.
+     * Pending symbols still within their window wait in the cooldown wheel, so a pass never visits a symbol which cannot go out.
      */
     @Override
     public void publishData() {
-        if (conflatingQueue.isEmpty()) return;
-        Set<String> pendingSymbolsForPublishing = conflatingQueue.getPendingSymbolsForPublishing();
-        int origNoOfPendingSymbols = pendingSymbolsForPublishing.size();
-        int counter = 0, successfulCounter=0;
-        while (!pendingSymbolsForPublishing.isEmpty()) {
-            MarketData marketData = conflatingQueue.peek();
-            counter++;
-            if (marketData != null) {
-                String symbol = marketData.getSymbol();
-                if (slidingWindow.canPublish(symbol)) {
-                    publishCounts.put(symbol, publishCounts.getOrDefault(symbol, 0) + 1);
-                    marketDataProcessor.publishAggregatedMarketData(marketData); //Ideally if the return type is boolean, then only after we successfully publish the aggregated data, we must remove from pendingSymbols and conflation queue.
-                    logger.info("publishAggregatedMarketData: " + marketData +" publishCounts="+ publishCounts + " currentSlidingWindowSize="+ slidingWindow.getSize());
-                    pendingSymbolsForPublishing.remove(symbol);
-                    successfulCounter++;
-                    conflatingQueue.take();
+        long now = clock.epochMillis();
+        if (adaptiveThrottle != null) {
+            adaptiveThrottle.onPass(now);
+        }
+        cooldownWheel.advance(now, expiredSymbols);
+        int symbolId;
+        while ((symbolId = expiredSymbols.poll()) != IntQueue.EMPTY) {//Ahead of the newly pending ones
+            schedulingPolicies[slidingWindow.getGroup(symbolId)].add(symbolId, staleSincesBySymbolId[symbolId]);
+        }
+        if (significanceFilter != null) {
+            refreshWheel.advance(now, expiredSymbols);
+            while ((symbolId = expiredSymbols.poll()) != IntQueue.EMPTY) {
+                if (significanceFilter.onRefreshExpired(symbolId)) {
+                    refreshOrReschedule(symbolId, now);
                 }
             }
-            if (counter == origNoOfPendingSymbols) {//Tried all the pending symbols in this iteration and published whatever it could, will leave the rest for next iteration
-                break;
+        }
+        while ((symbolId = conflatingQueue.pollPendingSymbolId()) != SymbolRing.EMPTY) {
+            if (significanceFilter != null && !isSignificant(symbolId, now)) {
+                continue;
             }
+            markStale(symbolId, now);
+            scheduleOrReady(symbolId, now);
+        }
+        int successfulCounter = 0;
+        for (int group = 0; group < schedulingPolicies.length; group++) {//group 0 first, each group has its reserved quota to itself and they share what is left
+            successfulCounter += basket == null ? publishOneByOne(group) : publishBaskets(group);
         }
+        if (idleTtlMillis > 0) {
+            evictIdleSymbols(now);
+        }
+        nextPublishTime = computeNextPublishTime();
+        metrics.recordPass(getNoOfPendingSymbols(), slidingWindow.getSize(), slidingWindow.getMaxRequestPerInterval());
         if(successfulCounter>0) {
             logger.debug("No of symbols successfully published in this iteration=" + successfulCounter);
         }
     }
+
+    /**
+     * A basket of up to maxBasketSize ready symbols takes a single slot of the global budget. Call before the publisher starts.
+     */
+    public void enableBaskets(int maxBasketSize, int maxBasketBytes) {
+        if (!(marketDataProcessor instanceof IBasketMarketDataProcessor)) {
+            throw new IllegalStateException(marketDataProcessor.getClass().getSimpleName() + " does not take baskets");
+        }
+        if (book != null) {
+            throw new IllegalStateException("Order books go out on their own, they cannot be combined with baskets");
+        }
+        if (adaptiveThrottle != null) {
+            throw new IllegalStateException("Baskets are not acknowledged one by one, they cannot be combined with the adaptive throttle");
+        }
+        basket = new MarketDataBasket(maxBasketSize, maxBasketBytes);
+    }
+
+    /**
+     * Call before the publisher starts.
+     */
+    public void enableAdaptiveThrottle(int minLimit, long targetAckLatencyMillis) {
+        if (!(marketDataProcessor instanceof IAsyncMarketDataProcessor)) {
+            throw new IllegalStateException(marketDataProcessor.getClass().getSimpleName() + " does not acknowledge publishes");
+        }
+        if (basket != null) {
+            throw new IllegalStateException("Baskets are not acknowledged one by one, they cannot be combined with the adaptive throttle");
+        }
+        if (book != null) {
+            throw new IllegalStateException("Order books are not acknowledged, they cannot be combined with the adaptive throttle");
+        }
+        if (deltaPublishing) {
+            throw new IllegalStateException("A delta after a failed publish would be against prices downstream never got, it cannot be combined with delta publishing");
+        }
+        if (idleTtlMillis > 0) {
+            throw new IllegalStateException("A failed ack retries its symbol by id after the fact, it cannot be combined with idle eviction");
+        }
+        adaptiveThrottle = new AdaptiveThrottle(slidingWindow, conflatingQueue, (IAsyncMarketDataProcessor) marketDataProcessor, minLimit, targetAckLatencyMillis);
+    }
+
+    /**
+     * Call before the publisher starts.
+     */
+    public void enableSignificanceFilter(SignificanceFilter significanceFilter) {
+        if (book != null) {
+            throw new IllegalStateException("The filter looks at the top of book only, it cannot be combined with order books");
+        }
+        this.significanceFilter = significanceFilter;
+        this.refreshWheel       = new CooldownTimingWheel(significanceFilter.getMaxQuietMillis());
+    }
+
+    /**
+     * A publish carries only the prices which changed since the symbol was last published, the others are NaN. Call before the publisher starts.
+     */
+    public void enableDeltaPublishing() {
+        if (significanceFilter == null) {
+            throw new IllegalStateException("Delta publishing compares against the last published prices of the significance filter, enable it first");
+        }
+        if (adaptiveThrottle != null) {
+            throw new IllegalStateException("A delta after a failed publish would be against prices downstream never got, it cannot be combined with the adaptive throttle");
+        }
+        deltaPublishing = true;
+    }
+
+    /**
+     * A symbol not pending since its last publish idleTtlMillis ago is forgotten and its id goes back to the registry. Feeds have to register
+     * symbols by name on every tick, a feed which holds on to ids would tick into ids given to other symbols. Call before the publisher starts.
+     * @param idleTtlMillis at least the window, so an evicted symbol cannot go out twice within one
+     */
+    public void enableIdleEviction(long idleTtlMillis, boolean offHeap) {
+        if (idleTtlMillis < slidingWindow.getTimeIntervalInMillisecs()) {
+            throw new IllegalArgumentException("Symbols idle for less than the window of " + slidingWindow.getTimeIntervalInMillisecs() + " millis cannot be evicted");
+        }
+        if (snapshotStore != null) {
+            throw new IllegalStateException("The snapshot store keeps its records by symbol id, they cannot be reused");
+        }
+        if (book != null) {
+            throw new IllegalStateException("A book is built up level by level in its slot, the slot cannot go to another symbol");
+        }
+        if (publishJournal != null) {
+            throw new IllegalStateException("The publish journal names its symbol ids once it is closed, an id cannot stand for two symbols");
+        }
+        if (adaptiveThrottle != null) {
+            throw new IllegalStateException("A failed ack retries its symbol by id after the fact, the id cannot go to another symbol meanwhile");
+        }
+        if (offHeap) {
+            slidingWindow.moveSymbolStateOffHeap();
+        }
+        conflatingQueue.getSymbolRegistry().setClock(clock);
+        this.idleTtlMillis = idleTtlMillis;
+    }
+
+    public void setPublishJournal(PublishJournal publishJournal) {
+        if (idleTtlMillis > 0) {
+            throw new IllegalStateException("The publish journal names its symbol ids once it is closed, it cannot be combined with idle eviction");
+        }
+        this.publishJournal = publishJournal;
+    }
+
+    public void setSnapshotStore(MappedSnapshotStore snapshotStore) {
+        if (idleTtlMillis > 0) {
+            throw new IllegalStateException("The snapshot store keeps its records by symbol id, it cannot be combined with idle eviction");
+        }
+        this.snapshotStore = snapshotStore;
+    }
+
+    /**
+     * Depth mode, a publish hands the symbol's consolidated book to publishOrderBook instead of its top of book. Call before the publisher starts.
+     */
+    public void enableOrderBooks() {
+        if (!(marketDataProcessor instanceof IOrderBookMarketDataProcessor)) {
+            throw new IllegalStateException(marketDataProcessor.getClass().getSimpleName() + " does not take order books");
+        }
+        DepthBooks depthBooks = conflatingQueue.getDepthBooks();
+        if (depthBooks == null) {
+            throw new IllegalStateException("The conflating queue is not in depth mode");
+        }
+        if (basket != null || adaptiveThrottle != null || significanceFilter != null || snapshotStore != null || idleTtlMillis > 0) {
+            throw new IllegalStateException("Order books go out on their own, they cannot be combined with baskets, the adaptive throttle, "
+                    + "the significance filter, the snapshot store or idle eviction");
+        }
+        book           = new OrderBookSnapshot(depthBooks.getDepth());
+        publishedBooks = new DepthBooks(conflatingQueue.getSymbolRegistry().capacity(), depthBooks.getDepth());
+    }
+
+    private void evictIdleSymbols(long now) {
+        SymbolStateStore lastPublishTimes = slidingWindow.getSymbolLastPublishTimes();
+        for (int i = 0; i < SWEEP_SLOTS_PER_PASS && lastPublishTimes.size() > 0; i++) {
+            if (sweepSlot >= lastPublishTimes.capacity()) {//the table may have shrunk since
+                sweepSlot = 0;
+            }
+            int symbolId = lastPublishTimes.getSymbolIdAt(sweepSlot);
+            if (symbolId != SymbolStateStore.NO_SYMBOL && lastPublishTimes.getAt(sweepSlot, 0) <= now - idleTtlMillis && !conflatingQueue.isPending(symbolId)
+                    && (significanceFilter == null || !significanceFilter.isRefreshScheduled(symbolId)) && !isPinned(symbolId)) {
+                slidingWindow.forgetSymbol(symbolId);//another record may move back into the slot, it is looked at next
+                metrics.recordEvicted(symbolId);
+                if (significanceFilter != null) {
+                    significanceFilter.forgetSymbol(symbolId);
+                }
+                conflatingQueue.getSymbolRegistry().release(symbolId);
+            } else {
+                sweepSlot++;
+            }
+        }
+    }
+
+    private boolean isPinned(int symbolId) {
+        GroupRateBudget groupRateBudget = slidingWindow.getGroupRateBudget();
+        int             group           = slidingWindow.getGroup(symbolId);
+        return (groupRateBudget != null && group != groupRateBudget.getDefaultGroup()) || schedulingPolicies[group].isConfigured(symbolId);
+    }
+
+    /**
+     * Takes an insignificant update off the queue, a tick which slipped in before the take is checked again so a significant move is never lost.
+     */
+    private boolean isSignificant(int symbolId, long now) {
+        long lastPublishTime = slidingWindow.getSymbolLastPublishTime(symbolId);
+        if (!conflatingQueue.readSnapshot(symbolId, snapshot)
+                || significanceFilter.isSignificant(symbolId, snapshot.getBid(), snapshot.getAsk(), snapshot.getLast(), lastPublishTime, now)) {
+            return true;
+        }
+        if (conflatingQueue.take(symbolId, snapshot)
+                && significanceFilter.isSignificant(symbolId, snapshot.getBid(), snapshot.getAsk(), snapshot.getLast(), lastPublishTime, now)) {
+            conflatingQueue.retry(symbolId);
+            return false;//back on the ring, it gets polled again before this pass is over
+        }
+        metrics.recordSuppressed();
+        if (significanceFilter.getChangedFields(symbolId, snapshot.getBid(), snapshot.getAsk(), snapshot.getLast()) != 0
+                && significanceFilter.markRefreshDue(symbolId)) {//downstream has these prices already otherwise
+            refreshWheel.schedule(symbolId, lastPublishTime + significanceFilter.getMaxQuietMillis());
+        }
+        return false;
+    }
+
+    /**
+     * A symbol suppressed again after a publish is still in the wheel with the deadline of its earlier suppression, it goes back in until its quiet time is up.
+     */
+    private void refreshOrReschedule(int symbolId, long now) {
+        long deadline = slidingWindow.getSymbolLastPublishTime(symbolId) + significanceFilter.getMaxQuietMillis();
+        if (deadline <= now) {
+            conflatingQueue.retry(symbolId);//its suppressed update is pending again and gets through the filter below
+        } else if (significanceFilter.markRefreshDue(symbolId)) {
+            refreshWheel.schedule(symbolId, deadline);
+        }
+    }
+
+    /**
+     * @return Price field bits of the prices to publish
+     */
+    private int recordSignificantPublish(int symbolId, double bid, double ask, double last) {
+        if (significanceFilter == null) {
+            return Price.ALL_FIELDS;
+        }
+        int fields = deltaPublishing ? significanceFilter.getChangedFields(symbolId, bid, ask, last) : Price.ALL_FIELDS;
+        significanceFilter.recordPublish(symbolId, bid, ask, last);
+        return fields;
+    }
+
+    /**
+     * Call before the publisher starts.
+     */
+    public void setSchedulingPolicy(SchedulingPolicyType schedulingPolicyType) {
+        for (int group = 0; group < schedulingPolicies.length; group++) {
+            schedulingPolicies[group] = schedulingPolicyType.create(slidingWindow.getTimeIntervalInMillisecs());
+        }
+    }
+
+    public ISchedulingPolicy getSchedulingPolicy(int group) {
+        return schedulingPolicies[group];
+    }
+
+    private int publishOneByOne(int group) {
+        ISchedulingPolicy schedulingPolicy = schedulingPolicies[group];
+        int symbolId;
+        int successfulCounter=0;
+        while (!schedulingPolicy.isEmpty()) {
+            symbolId = schedulingPolicy.peek();
+            if (conflatingQueue.dropIfTaken(symbolId)) {//nothing to publish, the window and the budget are only claimed for an update which goes out
+                schedulingPolicy.poll();
+                continue;
+            }
+            if (!slidingWindow.canPublish(symbolId)) {
+                if (slidingWindow.isSymbolOutsideWindow(symbolId)) {
+                    metrics.recordDeniedByGlobalLimit(schedulingPolicy.size());
+                    break;//Global limit (or what the group may use of it) reached, leave the rest for next iteration
+                }
+                scheduleOrReady(schedulingPolicy.poll(), clock.epochMillis());
+                continue;
+            }
+            schedulingPolicy.poll();
+            if (book != null) {
+                successfulCounter += publishOrderBook(symbolId) ? 1 : 0;
+                continue;
+            }
+            MarketData marketData = conflatingQueue.take(symbolId);//Feed threads may have overwritten the slot since it turned pending, take hands back the latest
+            if (marketData == null) {//nothing newer than the last take, skipped like an entry of a basket
+                continue;
+            }
+            Price price = marketData.getPrice();
+            int fields = recordSignificantPublish(symbolId, price.getBid(), price.getAsk(), price.getLast());
+            if (fields != Price.ALL_FIELDS) {
+                price.setBid((fields & Price.BID) == 0 ? Double.NaN : price.getBid());
+                price.setAsk((fields & Price.ASK) == 0 ? Double.NaN : price.getAsk());
+                price.setLast((fields & Price.LAST) == 0 ? Double.NaN : price.getLast());
+            }
+            if (snapshotStore != null) {
+                long publishTime = slidingWindow.getSymbolLastPublishTime(symbolId);
+                snapshotStore.recordAcquire(publishTime);
+                snapshotStore.recordPublish(symbolId, conflatingQueue.getTakenVersion(symbolId), publishTime);
+            }
+            long updateTimeNanos  = MarketData.toEpochNanos(marketData.getUpdateTime());
+            long publishTimeNanos = metrics.currentEpochNanos();
+            metrics.recordPublish(symbolId, updateTimeNanos, publishTimeNanos);
+            if (adaptiveThrottle != null) {
+                adaptiveThrottle.publish(marketData, symbolId, publishTimeNanos);
+            } else {
+                marketDataProcessor.publishAggregatedMarketData(marketData);
+            }
+            metrics.recordStaleness(slidingWindow.getSymbolLastPublishTime(symbolId) - staleSincesBySymbolId[symbolId]);
+            if (publishJournal != null) {
+                publishJournal.append(symbolId, price.getBid(), price.getAsk(), price.getLast(), updateTimeNanos, publishTimeNanos, slidingWindow.getSize());
+            }
+            successfulCounter++;
+        }
+        return successfulCounter;
+    }
+
+    private boolean publishOrderBook(int symbolId) {
+        if (!conflatingQueue.takeBook(symbolId, book)) {
+            return false;
+        }
+        book.setSymbol(conflatingQueue.getSymbolRegistry().getSymbol(symbolId));
+        publishedBooks.recordChanges(book);
+        long publishTimeNanos = metrics.currentEpochNanos();
+        metrics.recordPublish(symbolId, book.getUpdateTimeNanos(), publishTimeNanos);
+        ((IOrderBookMarketDataProcessor) marketDataProcessor).publishOrderBook(book);
+        metrics.recordStaleness(slidingWindow.getSymbolLastPublishTime(symbolId) - staleSincesBySymbolId[symbolId]);
+        if (publishJournal != null) {//the journal keeps the top of book
+            publishJournal.append(symbolId, book.getBestBid(), book.getBestAsk(), Double.NaN, book.getUpdateTimeNanos(), publishTimeNanos, slidingWindow.getSize());
+        }
+        return true;
+    }
+
+    /**
+     * The slot is only claimed once the symbol at the head is known to go out, so a basket is never empty.
+     */
+    private int publishBaskets(int group) {
+        ISchedulingPolicy schedulingPolicy = schedulingPolicies[group];
+        SymbolRegistry symbolRegistry = conflatingQueue.getSymbolRegistry();
+        int successfulCounter = 0;
+        while (!schedulingPolicy.isEmpty()) {
+            int head = schedulingPolicy.peek();
+            if (conflatingQueue.dropIfTaken(head)) {
+                schedulingPolicy.poll();
+                continue;
+            }
+            if (!slidingWindow.isSymbolOutsideWindow(head)) {
+                scheduleOrReady(schedulingPolicy.poll(), clock.epochMillis());
+                continue;
+            }
+            if (!slidingWindow.isAllowed(group)) {
+                metrics.recordDeniedByGlobalLimit(schedulingPolicy.size());
+                break;//Global limit (or what the group may use of it) reached, leave the rest for next iteration
+            }
+            if (snapshotStore != null) {
+                snapshotStore.recordAcquire(clock.epochMillis());
+            }
+            basket.clear();
+            while (!schedulingPolicy.isEmpty() && basket.fits(symbolRegistry.getSymbol(schedulingPolicy.peek()))) {
+                int symbolId = schedulingPolicy.poll();
+                if (conflatingQueue.dropIfTaken(symbolId)) {
+                    continue;
+                }
+                if (!slidingWindow.shouldPublishSymbolWithinWindow(symbolId)) {
+                    scheduleOrReady(symbolId, clock.epochMillis());
+                    continue;
+                }
+                if (conflatingQueue.take(symbolId, snapshot)) {//Feed threads may have overwritten the slot since it turned pending, take hands back the latest
+                    metrics.recordStaleness(slidingWindow.getSymbolLastPublishTime(symbolId) - staleSincesBySymbolId[symbolId]);
+                    basket.add(symbolRegistry.getSymbol(symbolId), snapshot, recordSignificantPublish(symbolId, snapshot.getBid(), snapshot.getAsk(), snapshot.getLast()));
+                    if (snapshotStore != null) {
+                        snapshotStore.recordPublish(symbolId, snapshot.getSequence(), slidingWindow.getSymbolLastPublishTime(symbolId));
+                    }
+                }
+            }
+            if (basket.isEmpty()) {
+                continue;
+            }
+            long publishTimeNanos = metrics.currentEpochNanos();
+            for (int i = 0; i < basket.getSize(); i++) {
+                metrics.recordPublish(basket.getSymbolId(i), basket.getUpdateTimeNanos(i), publishTimeNanos);
+            }
+            ((IBasketMarketDataProcessor) marketDataProcessor).publishAggregatedMarketData(basket);
+            if (publishJournal != null) {
+                for (int i = 0; i < basket.getSize(); i++) {
+                    publishJournal.append(basket.getSymbolId(i), basket.getBid(i), basket.getAsk(i), basket.getLast(i), basket.getUpdateTimeNanos(i), publishTimeNanos, slidingWindow.getSize());
+                }
+            }
+            successfulCounter += basket.getSize();
+        }
+        return successfulCounter;
+    }
+
+    private void scheduleOrReady(int symbolId, long now) {
+        long symbolNextPublishTime = slidingWindow.getSymbolNextPublishTime(symbolId);
+        if (symbolNextPublishTime <= now) {
+            schedulingPolicies[slidingWindow.getGroup(symbolId)].add(symbolId, staleSincesBySymbolId[symbolId]);
+        } else {
+            metrics.recordDeniedBySymbolLimit();
+            cooldownWheel.schedule(symbolId, symbolNextPublishTime);
+        }
+    }
+
+    /**
+     * The cooldown wheel matters even with symbols ready as the groups do not share all of the budget.
+     */
+    private long computeNextPublishTime() {
+        if (!conflatingQueue.isEmpty()) {
+            return clock.epochMillis();
+        }
+        long readyTime         = Long.MAX_VALUE;
+        long nextAvailableTime = Long.MAX_VALUE;
+        for (int group = 0; group < schedulingPolicies.length; group++) {
+            long groupNextAvailableTime = slidingWindow.getNextAvailableTime(group);
+            nextAvailableTime = Math.min(nextAvailableTime, groupNextAvailableTime);
+            if (!schedulingPolicies[group].isEmpty()) {
+                readyTime = Math.min(readyTime, groupNextAvailableTime);
+            }
+        }
+        long earliestDeadline = cooldownWheel.getEarliestDeadline();
+        long nextPublishTime  = earliestDeadline == Long.MAX_VALUE ? readyTime : Math.min(readyTime, Math.max(earliestDeadline, nextAvailableTime));
+        return refreshWheel == null ? nextPublishTime : Math.min(nextPublishTime, refreshWheel.getEarliestDeadline());
+    }
+
+    public int getNoOfPendingSymbols() {
+        int noOfReadySymbols = 0;
+        for (ISchedulingPolicy schedulingPolicy : schedulingPolicies) {
+            noOfReadySymbols += schedulingPolicy.size();
+        }
+        return conflatingQueue.getNoOfSymbols() + cooldownWheel.size() + noOfReadySymbols;
+    }
+
+    /**
+     * The tick in the slot when the symbol is polled stands in for its first tick since the last publish.
+     */
+    private void markStale(int symbolId, long now) {
+        if (symbolId >= staleSincesBySymbolId.length) {
+            staleSincesBySymbolId = Arrays.copyOf(staleSincesBySymbolId, Math.max(symbolId + 1, staleSincesBySymbolId.length * 2));
+        }
+        long firstTickTime = now;
+        if (conflatingQueue.readSnapshot(symbolId, snapshot) && snapshot.getUpdateTimeNanos() != MarketData.NO_UPDATE_TIME) {
+            firstTickTime = Math.min(now, TimeUnit.NANOSECONDS.toMillis(snapshot.getUpdateTimeNanos()));
+        }
+        staleSincesBySymbolId[symbolId] = Math.max(slidingWindow.getSymbolLastPublishTime(symbolId), firstTickTime);
+    }
+
+    public Map<String, Integer> getPublishCounts() {
+        return metrics.getPublishCounts();
+    }
 }
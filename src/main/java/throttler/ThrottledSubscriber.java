@@ -0,0 +1,130 @@
+package throttler;
+
+import interfaces.IMarketDataProcessor;
+import lombok.Getter;
+import lombok.ToString;
+import pojo.ConflatingQueue;
+import pojo.IntQueue;
+import pojo.MarketData;
+import pojo.MarketDataSnapshot;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * One downstream consumer of a FanOutPublisher with a budget of its own, reading the latest values from the shared conflating queue.
+ * Only touched by the fan-out publisher thread.
+ */
+@Getter @ToString
+public class ThrottledSubscriber {
+    private final String               name;
+    private final IMarketDataProcessor marketDataProcessor;
+    private final SlidingWindow        slidingWindow;
+    @ToString.Exclude
+    private final CooldownTimingWheel  cooldownWheel;
+    @ToString.Exclude
+    private final IntQueue             readySymbols   = new IntQueue(1024);
+    @ToString.Exclude
+    private final IntQueue             expiredSymbols = new IntQueue(1024);
+    @ToString.Exclude
+    private final ThrottlerMetrics     metrics;
+    @ToString.Exclude
+    private long[]                     publishedVersionsBySymbolId = new long[1024]; //0 if never published to this subscriber
+    @ToString.Exclude
+    private boolean[]                  queuedBySymbolId            = new boolean[1024]; //in readySymbols or the cooldown wheel
+
+    ThrottledSubscriber(String name, IMarketDataProcessor marketDataProcessor, SlidingWindow slidingWindow, ConflatingQueue conflatingQueue) {
+        this.name                = name;
+        this.marketDataProcessor = marketDataProcessor;
+        this.slidingWindow       = slidingWindow;
+        this.cooldownWheel       = new CooldownTimingWheel(slidingWindow.getTimeIntervalInMillisecs());
+        this.metrics             = new ThrottlerMetrics(conflatingQueue, slidingWindow.getClock());
+    }
+
+    /**
+     * A late joiner queues every symbol which has a value, so it first catches up on the full snapshot at its own rate.
+     */
+    void catchUp(ConflatingQueue conflatingQueue, long now) {
+        for (int symbolId = 0; symbolId < conflatingQueue.getSymbolRegistry().size(); symbolId++) {
+            if (conflatingQueue.getVersion(symbolId) != 0) {
+                onUpdate(symbolId, now);
+            }
+        }
+    }
+
+    void onUpdate(int symbolId, long now) {
+        ensureCapacity(symbolId);
+        if (queuedBySymbolId[symbolId]) {
+            return;
+        }
+        queuedBySymbolId[symbolId] = true;
+        long symbolNextPublishTime = slidingWindow.getSymbolNextPublishTime(symbolId);
+        if (symbolNextPublishTime <= now) {
+            readySymbols.add(symbolId);
+        } else {
+            metrics.recordDeniedBySymbolLimit();
+            cooldownWheel.schedule(symbolId, symbolNextPublishTime);
+        }
+    }
+
+    /**
+     * A symbol whose version has not moved since it was last published does not use up any budget.
+     */
+    int publish(ConflatingQueue conflatingQueue, MarketDataSnapshot snapshot, long now) {
+        cooldownWheel.advance(now, expiredSymbols);
+        int symbolId;
+        while ((symbolId = expiredSymbols.poll()) != IntQueue.EMPTY) {
+            readySymbols.add(symbolId);
+        }
+        int successfulCounter = 0;
+        while (!readySymbols.isEmpty()) {
+            symbolId = readySymbols.peek();
+            if (conflatingQueue.getVersion(symbolId) == publishedVersionsBySymbolId[symbolId]) {
+                queuedBySymbolId[readySymbols.poll()] = false;//already published the latest, e.g. it caught up on the symbol before the update reached it
+                continue;
+            }
+            if (!slidingWindow.canPublish(symbolId)) {
+                metrics.recordDeniedByGlobalLimit(readySymbols.size());
+                break;//Budget used up, leave the rest for next iteration
+            }
+            queuedBySymbolId[readySymbols.poll()] = false;
+            if (conflatingQueue.readSnapshot(symbolId, snapshot)) {
+                publishedVersionsBySymbolId[symbolId] = snapshot.getSequence();
+                long publishTimeNanos = metrics.currentEpochNanos();
+                metrics.recordPublish(symbolId, snapshot.getUpdateTimeNanos(), publishTimeNanos);
+                marketDataProcessor.publishAggregatedMarketData(snapshot.toMarketData(conflatingQueue.getSymbolRegistry().getSymbol(symbolId)));
+                successfulCounter++;
+            }
+        }
+        metrics.recordPass(getNoOfPendingSymbols(), slidingWindow.getSize(), slidingWindow.getMaxRequestPerInterval());
+        return successfulCounter;
+    }
+
+    long getNextPublishTime() {
+        if (!readySymbols.isEmpty()) {
+            return slidingWindow.getNextAvailableTime();
+        }
+        long earliestDeadline = cooldownWheel.getEarliestDeadline();
+        return earliestDeadline == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(earliestDeadline, slidingWindow.getNextAvailableTime());
+    }
+
+    public int getNoOfPendingSymbols() {
+        return readySymbols.size() + cooldownWheel.size();
+    }
+
+    public long getPublishedVersion(int symbolId) {
+        return symbolId < publishedVersionsBySymbolId.length ? publishedVersionsBySymbolId[symbolId] : 0;
+    }
+
+    public Map<String, Integer> getPublishCounts() {
+        return metrics.getPublishCounts();
+    }
+
+    private void ensureCapacity(int symbolId) {
+        if (symbolId >= publishedVersionsBySymbolId.length) {
+            int newLength               = Math.max(symbolId + 1, publishedVersionsBySymbolId.length * 2);
+            publishedVersionsBySymbolId = Arrays.copyOf(publishedVersionsBySymbolId, newLength);
+            queuedBySymbolId            = Arrays.copyOf(queuedBySymbolId, newLength);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package throttler;
+
+import interfaces.IClock;
+import interfaces.IThrottlerMetricsMXBean;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.SymbolRegistry;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instrumentation of a throttled publisher, recorded by the publisher thread into HdrHistogram recorders the snapshot thread swaps out every interval.
+ * Updates received are not counted on the feed path at all, the seqlock of every conflation slot already counts the writes to it.
+ */
+public class ThrottlerMetrics implements IThrottlerMetricsMXBean {
+    private static final Logger logger = LogManager.getLogger(ThrottlerMetrics.class.getSimpleName());
+    private static final long   HIGHEST_TRACKABLE_LATENCY_NANOS    = TimeUnit.HOURS.toNanos(1);
+    private static final long   HIGHEST_TRACKABLE_STALENESS_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final ConflatingQueue      conflatingQueue;
+    private final SingleWriterRecorder tickToPublishLatencies = new SingleWriterRecorder(HIGHEST_TRACKABLE_LATENCY_NANOS, 3);
+    private final SingleWriterRecorder publishStalenesses     = new SingleWriterRecorder(HIGHEST_TRACKABLE_STALENESS_MILLIS, 3);
+    private final IClock               clock;
+    private int[]                      publishCountsBySymbolId = new int[1024];
+    private long[]                     evictedUpdatesBySymbolId = new long[1024]; //the next symbol under the id counts from there
+    private volatile long              noOfPublishes; //the counters and gauges are only ever written by the publisher thread
+    private volatile long              noOfDeniedByGlobalLimit;
+    private volatile long              noOfDeniedBySymbolLimit;
+    private volatile long              noOfSuppressed;
+    private volatile long              noOfEvicted;
+    private volatile int               pendingSymbols;
+    private volatile double            windowUtilisation;
+    private Histogram                  intervalLatencies; //snapshot thread only, recycled every interval
+    private volatile long              latencyP50Micros;
+    private volatile long              latencyP99Micros;
+    private volatile long              latencyP999Micros;
+    private volatile long              latencyMaxMicros;
+    private Histogram                  intervalStalenesses; //snapshot thread only, recycled every interval
+    private volatile long              stalenessP50Millis;
+    private volatile long              stalenessP99Millis;
+    private volatile long              stalenessMaxMillis;
+
+    public ThrottlerMetrics(ConflatingQueue conflatingQueue) {
+        this(conflatingQueue, SystemClock.INSTANCE);
+    }
+
+    public ThrottlerMetrics(ConflatingQueue conflatingQueue, IClock clock) {
+        this.conflatingQueue = conflatingQueue;
+        this.clock           = clock;
+    }
+
+    /**
+     * @param updateTimeNanos MarketData.NO_UPDATE_TIME if unknown
+     */
+    public void recordPublish(int symbolId, long updateTimeNanos, long publishTimeNanos) {
+        if (symbolId >= publishCountsBySymbolId.length) {
+            publishCountsBySymbolId = Arrays.copyOf(publishCountsBySymbolId, Math.max(symbolId + 1, publishCountsBySymbolId.length * 2));
+        }
+        publishCountsBySymbolId[symbolId]++;
+        noOfPublishes++;
+        if (updateTimeNanos != MarketData.NO_UPDATE_TIME) {
+            long latency = publishTimeNanos - updateTimeNanos;
+            tickToPublishLatencies.recordValue(Math.min(Math.max(0, latency), HIGHEST_TRACKABLE_LATENCY_NANOS));
+        }
+    }
+
+    public void recordStaleness(long stalenessMillis) {
+        publishStalenesses.recordValue(Math.min(Math.max(0, stalenessMillis), HIGHEST_TRACKABLE_STALENESS_MILLIS));
+    }
+
+    public void recordDeniedByGlobalLimit(int noOfSymbols) {
+        noOfDeniedByGlobalLimit += noOfSymbols;
+    }
+
+    public void recordDeniedBySymbolLimit() {
+        noOfDeniedBySymbolLimit++;
+    }
+
+    public void recordSuppressed() {
+        noOfSuppressed++;
+    }
+
+    public void recordEvicted(int symbolId) {
+        if (symbolId < publishCountsBySymbolId.length) {
+            publishCountsBySymbolId[symbolId] = 0;
+        }
+        if (symbolId >= evictedUpdatesBySymbolId.length) {
+            evictedUpdatesBySymbolId = Arrays.copyOf(evictedUpdatesBySymbolId, Math.max(symbolId + 1, evictedUpdatesBySymbolId.length * 2));
+        }
+        evictedUpdatesBySymbolId[symbolId] = conflatingQueue.getNoOfUpdates(symbolId);
+        noOfEvicted++;
+    }
+
+    public void recordPass(int pendingSymbols, int windowSize, int maxRequestPerInterval) {
+        this.pendingSymbols    = pendingSymbols;
+        this.windowUtilisation = (double) windowSize / maxRequestPerInterval;
+    }
+
+    public long currentEpochNanos() {
+        return clock.epochNanos();
+    }
+
+    /**
+     * Meant to be called periodically from a single thread.
+     */
+    public void snapshot() {
+        intervalLatencies = tickToPublishLatencies.getIntervalHistogram(intervalLatencies);
+        latencyP50Micros  = TimeUnit.NANOSECONDS.toMicros(intervalLatencies.getValueAtPercentile(50));
+        latencyP99Micros  = TimeUnit.NANOSECONDS.toMicros(intervalLatencies.getValueAtPercentile(99));
+        latencyP999Micros = TimeUnit.NANOSECONDS.toMicros(intervalLatencies.getValueAtPercentile(99.9));
+        latencyMaxMicros  = TimeUnit.NANOSECONDS.toMicros(intervalLatencies.getMaxValue());
+        intervalStalenesses = publishStalenesses.getIntervalHistogram(intervalStalenesses);
+        stalenessP50Millis  = intervalStalenesses.getValueAtPercentile(50);
+        stalenessP99Millis  = intervalStalenesses.getValueAtPercentile(99);
+        stalenessMaxMillis  = intervalStalenesses.getMaxValue();
+        logger.info("ThrottlerMetrics: updatesReceived=" + getNoOfUpdatesReceived() + " publishes=" + noOfPublishes + " conflationRatio=" + getConflationRatio()
+                + " deniedByGlobalLimit=" + noOfDeniedByGlobalLimit + " deniedBySymbolLimit=" + noOfDeniedBySymbolLimit + " suppressed=" + noOfSuppressed + " evicted=" + noOfEvicted + " pendingSymbols=" + pendingSymbols
+                + " windowUtilisation=" + windowUtilisation + " tickToPublishLatencyMicros(p50=" + latencyP50Micros + " p99=" + latencyP99Micros
+                + " p999=" + latencyP999Micros + " max=" + latencyMaxMicros + " count=" + intervalLatencies.getTotalCount() + ")"
+                + " stalenessMillis(p50=" + stalenessP50Millis + " p99=" + stalenessP99Millis + " max=" + stalenessMaxMillis + ")");
+    }
+
+    public void register(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("throttler:type=ThrottlerMetrics,name=" + name));
+        } catch (JMException e) {
+            logger.warn("Could not register ThrottlerMetrics " + name + " with JMX", e);
+        }
+    }
+
+    @Override
+    public long getNoOfUpdatesReceived() {
+        long noOfUpdates = 0;
+        for (int symbolId = 0; symbolId < conflatingQueue.getSymbolRegistry().size(); symbolId++) {
+            noOfUpdates += conflatingQueue.getNoOfUpdates(symbolId);
+        }
+        return noOfUpdates;
+    }
+
+    @Override
+    public long getNoOfPublishes() {
+        return noOfPublishes;
+    }
+
+    @Override
+    public double getConflationRatio() {
+        long noOfPublishes = this.noOfPublishes;
+        return noOfPublishes == 0 ? 0 : (double) getNoOfUpdatesReceived() / noOfPublishes;
+    }
+
+    @Override
+    public double getConflationRatio(String symbol) {
+        int   symbolId      = conflatingQueue.getSymbolRegistry().getSymbolId(symbol);
+        int[] publishCounts = publishCountsBySymbolId;
+        if (symbolId == SymbolRegistry.UNKNOWN_SYMBOL || symbolId >= publishCounts.length || publishCounts[symbolId] == 0) {
+            return 0;
+        }
+        long[] evictedUpdates = evictedUpdatesBySymbolId;
+        long   noOfUpdates    = conflatingQueue.getNoOfUpdates(symbolId) - (symbolId < evictedUpdates.length ? evictedUpdates[symbolId] : 0);
+        return (double) noOfUpdates / publishCounts[symbolId];
+    }
+
+    @Override
+    public long getNoOfDeniedByGlobalLimit() {
+        return noOfDeniedByGlobalLimit;
+    }
+
+    @Override
+    public long getNoOfDeniedBySymbolLimit() {
+        return noOfDeniedBySymbolLimit;
+    }
+
+    @Override
+    public long getNoOfSuppressedUpdates() {
+        return noOfSuppressed;
+    }
+
+    @Override
+    public long getNoOfEvictedSymbols() {
+        return noOfEvicted;
+    }
+
+    @Override
+    public int getPendingSymbols() {
+        return pendingSymbols;
+    }
+
+    @Override
+    public double getWindowUtilisation() {
+        return windowUtilisation;
+    }
+
+    @Override
+    public long getTickToPublishLatencyP50Micros() {
+        return latencyP50Micros;
+    }
+
+    @Override
+    public long getTickToPublishLatencyP99Micros() {
+        return latencyP99Micros;
+    }
+
+    @Override
+    public long getTickToPublishLatencyP999Micros() {
+        return latencyP999Micros;
+    }
+
+    @Override
+    public long getTickToPublishLatencyMaxMicros() {
+        return latencyMaxMicros;
+    }
+
+    @Override
+    public long getStalenessP50Millis() {
+        return stalenessP50Millis;
+    }
+
+    @Override
+    public long getStalenessP99Millis() {
+        return stalenessP99Millis;
+    }
+
+    @Override
+    public long getStalenessMaxMillis() {
+        return stalenessMaxMillis;
+    }
+
+    /**
+     * In symbol id order, only the symbols published at least once are present.
+     */
+    public Map<String, Integer> getPublishCounts() {
+        SymbolRegistry symbolRegistry      = conflatingQueue.getSymbolRegistry();
+        int[] publishCounts                = publishCountsBySymbolId;
+        Map<String, Integer> publishCountsBySymbol = new LinkedHashMap<>();
+        for (int symbolId = 0; symbolId < publishCounts.length; symbolId++) {
+            if (publishCounts[symbolId] > 0) {
+                publishCountsBySymbol.put(symbolRegistry.getSymbol(symbolId), publishCounts[symbolId]);
+            }
+        }
+        return publishCountsBySymbol;
+    }
+}
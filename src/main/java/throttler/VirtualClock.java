@@ -0,0 +1,43 @@
+package throttler;
+
+import interfaces.IClock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock which only moves when told to, for running the throttler faster than real time (see ThrottleSimulator) and for tests which would otherwise sleep.
+ * Advanced by one thread at a time, usually the one running the publisher, and readable from any thread.
+ */
+public class VirtualClock implements IClock {
+    private volatile long epochNanos;
+
+    public VirtualClock(long startEpochNanos) {
+        this.epochNanos = startEpochNanos;
+    }
+
+    /**
+     * Starts at the current wall clock time so ticks stamped with Instant.now line up with it.
+     */
+    public static VirtualClock startingNow() {
+        return new VirtualClock(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()));
+    }
+
+    @Override
+    public long epochNanos() {
+        return epochNanos;
+    }
+
+    /**
+     * @throws IllegalArgumentException if epochNanos is before the current time, virtual time never goes back
+     */
+    public void advanceTo(long epochNanos) {
+        if (epochNanos < this.epochNanos) {
+            throw new IllegalArgumentException("Virtual time cannot go back from " + this.epochNanos + " to " + epochNanos);
+        }
+        this.epochNanos = epochNanos;
+    }
+
+    public void advanceBy(long duration, TimeUnit unit) {
+        advanceTo(epochNanos + unit.toNanos(duration));
+    }
+}
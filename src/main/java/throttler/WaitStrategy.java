@@ -0,0 +1,28 @@
+package throttler;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a thread of the ingress stage does while it has nothing to do, picked through configuration.
+ */
+public enum WaitStrategy {
+    /** Lowest latency, burns a core */
+    BUSY_SPIN,
+    /** Spins a little, then gives the core to other threads */
+    YIELD,
+    /** Spins, yields and then sleeps in short parks, next to no CPU when idle */
+    PARK;
+
+    private static final int  SPIN_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    public void idle(int attempt) {
+        if (this == BUSY_SPIN || attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (this == YIELD || attempt < 2 * SPIN_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
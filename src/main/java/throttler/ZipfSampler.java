@@ -0,0 +1,69 @@
+package throttler;
+
+import lombok.Getter;
+
+import java.util.Random;
+
+/**
+ * Draws ranks 1..n with P(k) proportional to 1/k^exponent, in constant time and without a table so it scales to universes of millions of symbols.
+ * Uses rejection inversion (Hörmann and Derflinger, "Rejection-inversion to generate variates from monotone discrete distributions").
+ * An exponent of 0 is uniform, real feeds look like something around 1. Immutable, can be shared between threads.
+ */
+@Getter
+public class ZipfSampler {
+    private final int    noOfElements;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralNoOfElements;
+    private final double s;
+
+    public ZipfSampler(int noOfElements, double exponent) {
+        if (noOfElements < 1 || exponent < 0) {
+            throw new IllegalArgumentException("Needs at least 1 element and an exponent >= 0, got " + noOfElements + " and " + exponent);
+        }
+        this.noOfElements          = noOfElements;
+        this.exponent              = exponent;
+        this.hIntegralX1           = hIntegral(1.5) - 1;
+        this.hIntegralNoOfElements = hIntegral(noOfElements + 0.5);
+        this.s                     = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    public int sample(Random random) {
+        if (exponent == 0) {
+            return 1 + random.nextInt(noOfElements);
+        }
+        while (true) {
+            double u = hIntegralNoOfElements + random.nextDouble() * (hIntegralX1 - hIntegralNoOfElements);
+            double x = hIntegralInverse(u);
+            int    k = (int) Math.max(1, Math.min(noOfElements, x + 0.5));
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * (x^(1 - exponent) - 1) / (1 - exponent), log(x) for an exponent of 1.
+     */
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return expm1OverX((1 - exponent) * logX) * logX;
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = Math.max(-1, x * (1 - exponent));
+        return Math.exp(log1pOverX(t) * x);
+    }
+
+    private static double log1pOverX(double x) {
+        return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    private static double expm1OverX(double x) {
+        return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
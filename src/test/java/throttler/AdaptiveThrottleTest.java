@@ -0,0 +1,127 @@
+package throttler;
+
+import interfaces.IPublishAckListener;
+import org.junit.jupiter.api.Test;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.Price;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveThrottleTest {
+
+    /**
+     * Downstream rejects A0, the limit is cut and A0 goes out again with its latest value once its window is over.
+     */
+    @Test
+    public void testFailedPublishIsRetriedAndCutsTheLimit() {
+        List<String> published = new ArrayList<>();
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue) {
+            @Override
+            public void publishAggregatedMarketData(MarketData data, int symbolId, long publishTimeNanos, IPublishAckListener listener) {
+                published.add(data.getSymbol() + "@" + data.getPrice().getLast());
+                listener.onAck(symbolId, publishTimeNanos, !(published.size() == 1));
+            }
+        };
+        VirtualClock clock = VirtualClock.startingNow();
+        SlidingWindow slidingWindow = new SlidingWindow(10, 1);
+        slidingWindow.setClock(clock);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, slidingWindow);
+        throttledPublisher.enableAdaptiveThrottle(2, 50);
+        AdaptiveThrottle adaptiveThrottle = throttledPublisher.getAdaptiveThrottle();
+
+        ThrottledPublisherTest.tick(marketDataProcessor, 5, 1);
+        throttledPublisher.publishData();
+        assertEquals(5, published.size());
+        assertEquals(1, adaptiveThrottle.getNoOfFailures().get());
+        assertEquals(10, adaptiveThrottle.getEffectiveLimit());
+
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "A0", new Price(2, 2, 2)));
+        clock.advanceBy(300, TimeUnit.MILLISECONDS);
+        throttledPublisher.publishData();
+        assertEquals(7, adaptiveThrottle.getEffectiveLimit(), "Cut by the decrease factor after the failure");
+        assertEquals(5, published.size(), "A0 waits for its window");
+        assertEquals(1, throttledPublisher.getNoOfPendingSymbols());
+
+        clock.advanceBy(699, TimeUnit.MILLISECONDS);
+        throttledPublisher.publishData();
+        assertEquals(5, published.size(), "A0 still within its window");
+        clock.advanceBy(1, TimeUnit.MILLISECONDS);
+        throttledPublisher.publishData();
+        assertEquals("[A0@1.0, A1@1.0, A2@1.0, A3@1.0, A4@1.0, A0@2.0]", published.toString());
+        assertEquals(0, throttledPublisher.getNoOfPendingSymbols());
+    }
+
+    /**
+     * Slow acks cut the limit, fast acks with a full window raise it again a step at a time and it never goes over the hard limit.
+     */
+    @Test
+    public void testLimitFollowsAckLatency() {
+        List<Runnable> pendingAcks = new ArrayList<>();
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue) {
+            @Override
+            public void publishAggregatedMarketData(MarketData data, int symbolId, long publishTimeNanos, IPublishAckListener listener) {
+                pendingAcks.add(() -> listener.onAck(symbolId, publishTimeNanos, true));
+            }
+        };
+        VirtualClock clock = VirtualClock.startingNow();
+        SlidingWindow slidingWindow = new SlidingWindow(20, 1);
+        slidingWindow.setClock(clock);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, slidingWindow);
+        throttledPublisher.enableAdaptiveThrottle(2, 50);
+        AdaptiveThrottle adaptiveThrottle = throttledPublisher.getAdaptiveThrottle();
+
+        ThrottledPublisherTest.tick(marketDataProcessor, 30, 1);
+        throttledPublisher.publishData();
+        assertEquals(20, pendingAcks.size());
+        clock.advanceBy(100, TimeUnit.MILLISECONDS);
+        pendingAcks.forEach(Runnable::run);//acked 100ms later, over the 50ms target
+        adaptiveThrottle.adjust();
+        assertEquals(14, adaptiveThrottle.getEffectiveLimit());
+        assertTrue(adaptiveThrottle.getAckLatencyP99Micros() >= 100_000);
+
+        slidingWindow.setEffectiveLimit(5);
+        pendingAcks.clear();
+        clock.advanceBy(1000, TimeUnit.MILLISECONDS);
+        throttledPublisher.publishData();
+        assertEquals(5, pendingAcks.size(), "The effective limit holds publishes back below the hard limit");
+        pendingAcks.forEach(Runnable::run);
+        adaptiveThrottle.adjust();
+        assertEquals(6, adaptiveThrottle.getEffectiveLimit(), "Fast acks and a full window, one step up");
+
+        slidingWindow.setEffectiveLimit(100);
+        assertEquals(20, adaptiveThrottle.getEffectiveLimit(), "Never above the hard limit");
+    }
+
+    @Test
+    public void testNeedsAnAcknowledgingProcessorAndNoBaskets() {
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue), new SlidingWindow(10, 1));
+        throttledPublisher.enableBaskets(4, 1024);
+        assertThrows(IllegalStateException.class, () -> throttledPublisher.enableAdaptiveThrottle(2, 50));
+    }
+
+    /**
+     * A failed ack retries its symbol by id, so the id must not go to another symbol meanwhile, whichever is set up first.
+     */
+    @Test
+    public void testNotCombinedWithIdleEviction() {
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        ThrottledPublisher adaptive = new ThrottledPublisher(conflatingQueue, marketDataProcessor, new SlidingWindow(10, 1));
+        adaptive.enableAdaptiveThrottle(2, 50);
+        assertThrows(IllegalStateException.class, () -> adaptive.enableIdleEviction(2000, false));
+
+        ThrottledPublisher evicting = new ThrottledPublisher(conflatingQueue, marketDataProcessor, new SlidingWindow(10, 1));
+        evicting.enableIdleEviction(2000, false);
+        assertThrows(IllegalStateException.class, () -> evicting.enableAdaptiveThrottle(2, 50));
+        assertNull(evicting.getAdaptiveThrottle());
+    }
+}
@@ -0,0 +1,195 @@
+package throttler;
+
+import org.junit.jupiter.api.Test;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.MarketDataDecoder;
+import pojo.MarketDataEncoder;
+import pojo.Price;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelMarketDataProcessorTest {
+
+    @Test
+    public void testEncodedFrameDecodesInPlace() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        MarketDataEncoder encoder = new MarketDataEncoder().wrap(buffer, MarketDataEncoder.FRAME_HEADER_SIZE)
+                .encode(new MarketData(Instant.ofEpochSecond(1, 5), "A", new Price(1, 2, 3)))
+                .encode(new MarketData(null, "BCD", new Price(4, 5, 6)));
+        assertEquals(2 * 36 + 4, encoder.getEncodedLength(), "Entries are MarketDataBasket.entryBytes long");
+        MarketDataEncoder.encodeHeader(buffer, 0, 7, encoder.getNoOfEntries(), encoder.getEncodedLength());
+
+        MarketDataDecoder decoder = new MarketDataDecoder().wrap(buffer, 0);
+        assertEquals(7, decoder.getSequence());
+        assertEquals(2, decoder.getNoOfEntries());
+        assertEquals(MarketDataEncoder.FRAME_HEADER_SIZE + 76, decoder.getFrameLength());
+        assertTrue(decoder.next());
+        assertEquals(new MarketData(Instant.ofEpochSecond(1, 5), "A", new Price(1, 2, 3)), decoder.toMarketData());
+        assertEquals(1_000_000_005L, decoder.getUpdateTimeNanos());
+        assertTrue(decoder.next());
+        assertEquals("BCD", decoder.getSymbol());
+        assertEquals(MarketData.NO_UPDATE_TIME, decoder.getUpdateTimeNanos());
+        assertEquals(6, decoder.getLast());
+        assertFalse(decoder.next());
+    }
+
+    /**
+     * 6 symbols in baskets of 4 go out as 2 frames over a loopback socket.
+     */
+    @Test
+    public void testBasketsAreWrittenAsFramesOverTcp() throws IOException {
+        try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+             SocketChannel client = SocketChannel.open(server.getLocalAddress());
+             SocketChannel receiver = server.accept()) {
+            ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+            ChannelMarketDataProcessor marketDataProcessor = new ChannelMarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue, client, 1024);
+            ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, new SlidingWindow(10, 1));
+            throttledPublisher.enableBaskets(4, 1024);
+            ThrottledPublisherTest.tick(marketDataProcessor, 6, 1);
+            throttledPublisher.publishData();
+            assertEquals(2, marketDataProcessor.getSequence());
+            assertEquals(2 * MarketDataEncoder.FRAME_HEADER_SIZE + 6 * 38, marketDataProcessor.getBytesWritten());
+
+            MarketDataDecoder decoder = new MarketDataDecoder();
+            StringBuilder received = new StringBuilder();
+            for (int sequence = 1; sequence <= 2; sequence++) {
+                decoder.wrap(readFrame(receiver), 0);
+                assertEquals(sequence, decoder.getSequence());
+                while (decoder.next()) {
+                    received.append(decoder.getSymbol()).append('@').append(decoder.getLast()).append(' ');
+                }
+            }
+            assertEquals("A0@1.0 A1@1.0 A2@1.0 A3@1.0 A4@1.0 A5@1.0 ", received.toString());
+        }
+    }
+
+    @Test
+    public void testSinglePublishIsOneDatagram() throws IOException {
+        try (DatagramChannel receiver = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+             DatagramChannel sender = DatagramChannel.open().connect(receiver.getLocalAddress())) {
+            ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+            ChannelMarketDataProcessor marketDataProcessor = new ChannelMarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue, sender, 8);
+            marketDataProcessor.publishAggregatedMarketData(new MarketData(Instant.ofEpochSecond(2), "LONGSYMBOL", new Price(1, 2, 3)));
+
+            ByteBuffer datagram = ByteBuffer.allocate(1024);
+            receiver.receive(datagram);
+            assertEquals(MarketDataEncoder.FRAME_HEADER_SIZE + 46, datagram.position(), "The entries buffer grows for an entry over its size");
+            MarketDataDecoder decoder = new MarketDataDecoder().wrap(datagram, 0);
+            assertEquals(1, decoder.getNoOfEntries());
+            assertTrue(decoder.next());
+            assertEquals(new MarketData(Instant.ofEpochSecond(2), "LONGSYMBOL", new Price(1, 2, 3)), decoder.toMarketData());
+            assertEquals(0, marketDataProcessor.getNoOfFailures());
+        }
+    }
+
+    /**
+     * A frame which only got partly out is followed by a reconnect, the next frame starts a new stream instead of being read as its rest.
+     * Without a way to reconnect nothing more is written.
+     */
+    @Test
+    public void testPartlyWrittenFrameClosesTheChannel() throws IOException {
+        List<CappedChannel> opened = new ArrayList<>();
+        ChannelMarketDataProcessor marketDataProcessor = new ChannelMarketDataProcessor(new MarketDataGenerator(1, 1), new ConflatingQueue(100), () -> {
+            CappedChannel channel = new CappedChannel(opened.isEmpty() ? 10 : Integer.MAX_VALUE);
+            opened.add(channel);
+            return channel;
+        }, 1024);
+        marketDataProcessor.publishAggregatedMarketData(new MarketData(Instant.ofEpochSecond(1), "A", new Price(1, 2, 3)));
+        assertEquals(1, marketDataProcessor.getNoOfFailures());
+        assertFalse(opened.get(0).isOpen(), "Out of step after 10 bytes");
+
+        marketDataProcessor.publishAggregatedMarketData(new MarketData(Instant.ofEpochSecond(2), "B", new Price(4, 5, 6)));
+        assertEquals(1, marketDataProcessor.getNoOfReconnects());
+        MarketDataDecoder decoder = new MarketDataDecoder().wrap(ByteBuffer.wrap(opened.get(1).out.toByteArray()), 0);
+        assertEquals(2, decoder.getSequence());
+        assertEquals(decoder.getFrameLength(), opened.get(1).out.size(), "A whole frame from the first byte");
+        assertTrue(decoder.next());
+        assertEquals("B", decoder.getSymbol());
+
+        CappedChannel channel = new CappedChannel(10);
+        ChannelMarketDataProcessor noReconnect = new ChannelMarketDataProcessor(new MarketDataGenerator(1, 1), new ConflatingQueue(100), channel, 1024);
+        noReconnect.publishAggregatedMarketData(new MarketData(Instant.ofEpochSecond(1), "A", new Price(1, 2, 3)));
+        noReconnect.publishAggregatedMarketData(new MarketData(Instant.ofEpochSecond(2), "B", new Price(4, 5, 6)));
+        assertEquals(2, noReconnect.getNoOfFailures());
+        assertEquals(10, channel.out.size());
+    }
+
+    /**
+     * Takes capacity bytes, the write after that fails like a connection which went away half way through a frame.
+     */
+    private static class CappedChannel implements GatheringByteChannel {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final int                   capacity;
+        private boolean                     open = true;
+
+        private CappedChannel(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            long written = 0;
+            for (int i = offset; i < offset + length; i++) {
+                written += write(srcs[i]);
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int length = Math.min(src.remaining(), capacity - out.size());
+            if (length == 0 && src.hasRemaining()) {
+                throw new IOException("Connection reset");
+            }
+            for (int i = 0; i < length; i++) {
+                out.write(src.get());
+            }
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+
+    private static ByteBuffer readFrame(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, ByteBuffer.allocate(MarketDataEncoder.FRAME_HEADER_SIZE));
+        int frameLength = new MarketDataDecoder().wrap(header, 0).getFrameLength();
+        ByteBuffer frame = ByteBuffer.allocate(frameLength).put(header.flip());
+        return readFully(channel, frame);
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Closed mid frame");
+            }
+        }
+        return buffer;
+    }
+}
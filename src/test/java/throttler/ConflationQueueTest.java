@@ -3,12 +3,20 @@ package throttler;
 import org.junit.jupiter.api.Test;
 import pojo.ConflatingQueue;
 import pojo.MarketData;
+import pojo.MarketDataSnapshot;
 import pojo.Price;
+import pojo.SymbolRegistry;
 
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ConflationQueueTest {
     ConflatingQueue conflatingQueue = new ConflatingQueue(10000);
@@ -18,7 +26,7 @@ public class ConflationQueueTest {
         IntStream.range(0, 1000).forEach(i -> conflatingQueue.offer(MarketData.builder().price(new Price(1,1,1)).symbol("A").updateTime(Instant.now()).build()));
         conflatingQueue.take();
         assertEquals(0, conflatingQueue.getSymbols().size(),"Single symbol take ensures that the data is already conflated");
-        assertEquals(0, conflatingQueue.getMarketDataSymbolMap().size(), "Single symbol take ensures that data is already conflated");
+        assertNull(conflatingQueue.getMarketData("A"), "Single symbol take ensures that data is already conflated");
     }
 
     @Test
@@ -43,5 +51,73 @@ public class ConflationQueueTest {
 
     }
 
+    @Test
+    public void testSymbolsInternedToDenseIdsInOrderOfFirstSeen(){
+        conflatingQueue.offer(MarketData.builder().price(new Price(1,1,1)).symbol("B").updateTime(Instant.now()).build());
+        conflatingQueue.offer(MarketData.builder().price(new Price(1,1,1)).symbol("A").updateTime(Instant.now()).build());
+        conflatingQueue.offer(MarketData.builder().price(new Price(2,2,2)).symbol("B").updateTime(Instant.now()).build());
+        SymbolRegistry symbolRegistry = conflatingQueue.getSymbolRegistry();
+        assertEquals(2, symbolRegistry.size());
+        assertEquals(0, symbolRegistry.getSymbolId("B"));
+        assertEquals(1, symbolRegistry.getSymbolId("A"));
+        assertEquals(SymbolRegistry.UNKNOWN_SYMBOL, symbolRegistry.getSymbolId("C"));
+        assertEquals("A", symbolRegistry.getSymbol(1));
+        assertEquals(0, conflatingQueue.peekSymbolId());
+    }
 
+    @Test
+    public void testConcurrentProducersKeepLatestAndEachSymbolQueuedOnce() throws InterruptedException {
+        int noOfProducers = 4, noOfSymbolsPerProducer = 25, noOfSymbols = noOfProducers * noOfSymbolsPerProducer, noOfUpdates = 10000;
+        Thread[] producers = new Thread[noOfProducers];
+        for (int p = 0; p < noOfProducers; p++) {
+            int firstSymbol = p * noOfSymbolsPerProducer;
+            producers[p] = new Thread(() -> IntStream.range(0, noOfUpdates).forEach(i -> conflatingQueue.offer(MarketData.builder().price(new Price(i,i,i)).symbol("A" + (firstSymbol + i % noOfSymbolsPerProducer)).updateTime(Instant.now()).build())));
+            producers[p].start();
+        }
+        Set<String> taken = new HashSet<>();
+        while (Arrays.stream(producers).anyMatch(Thread::isAlive)) {
+            MarketData marketData = conflatingQueue.take();
+            if (marketData != null) {
+                taken.add(marketData.getSymbol());
+            }
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(conflatingQueue.getNoOfSymbols() <= noOfSymbols, "A symbol enters the dirty ring at most once");
+        MarketData marketData;
+        while ((marketData = conflatingQueue.take()) != null) {
+            taken.add(marketData.getSymbol());
+            assertEquals(noOfUpdates - noOfSymbolsPerProducer + Integer.parseInt(marketData.getSymbol().substring(1)) % noOfSymbolsPerProducer, (int) marketData.getPrice().getLast(), "Whatever is left over is the last update written for the symbol");
+        }
+        assertEquals(noOfSymbols, taken.size());
+        assertTrue(conflatingQueue.isEmpty());
+        assertTrue(IntStream.range(0, noOfSymbols).noneMatch(conflatingQueue::isPending));
+    }
+
+    @Test
+    public void testPrimitiveOfferSnapshotsAreNeverTornUnderConcurrentWriters() throws InterruptedException {
+        int symbolId = conflatingQueue.getSymbolRegistry().register("A"), noOfWriters = 3, noOfUpdates = 100000;
+        Thread[] writers = new Thread[noOfWriters];
+        for (int w = 0; w < noOfWriters; w++) {
+            writers[w] = new Thread(() -> IntStream.range(1, noOfUpdates).forEach(i -> conflatingQueue.offer(symbolId, i, i, i, i)));
+            writers[w].start();
+        }
+        MarketDataSnapshot snapshot = new MarketDataSnapshot();
+        int noOfTakes = 0;
+        while (Arrays.stream(writers).anyMatch(Thread::isAlive)) {
+            if (conflatingQueue.take(symbolId, snapshot)) {
+                noOfTakes++;
+                assertTrue(snapshot.getBid() == snapshot.getAsk() && snapshot.getAsk() == snapshot.getLast() && snapshot.getLast() == snapshot.getUpdateTimeNanos(), "Fields of a snapshot come from the same write " + snapshot);
+            }
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        conflatingQueue.take(symbolId, snapshot);
+        assertTrue(conflatingQueue.readSnapshot(symbolId, snapshot));
+        assertEquals(noOfUpdates - 1, (int) snapshot.getLast(), "Every writer ends on the same update so that is what is left in the slot");
+        assertFalse(conflatingQueue.take(symbolId, snapshot), "Nothing newer than the last take");
+        assertTrue(noOfTakes > 0);
+    }
 }
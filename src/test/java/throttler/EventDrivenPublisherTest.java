@@ -0,0 +1,68 @@
+package throttler;
+
+import org.junit.jupiter.api.Test;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.Price;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventDrivenPublisherTest {
+
+    /**
+     * 1. An idle publisher gets woken up by the offer and publishes straight away instead of waiting for the next poll.
+     * 2. A symbol blocked by the 2 requests per second limit is published as soon as the oldest timestamp leaves the sliding window.
+     */
+    @Test
+    public void testPublishesAsSoonAsEligible() throws InterruptedException {
+        VirtualClock clock = VirtualClock.startingNow();
+        BlockingQueue<String> published = new LinkedBlockingQueue<>();
+        Map<String, Long> publishTimes = new ConcurrentHashMap<>();
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue) {
+            @Override
+            public void publishAggregatedMarketData(MarketData data) {
+                publishTimes.put(data.getSymbol(), clock.epochMillis());
+                published.add(data.getSymbol());
+            }
+        };
+        SlidingWindow slidingWindow = new SlidingWindow(2, 1);
+        slidingWindow.setClock(clock);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, slidingWindow);
+        EventDrivenPublisher eventDrivenPublisher = new EventDrivenPublisher(throttledPublisher, conflatingQueue);
+        Thread publisherThread = new Thread(eventDrivenPublisher, "event-driven-publisher");
+        publisherThread.start();
+        while (!eventDrivenPublisher.isSleeping()) {//let it go to sleep with nothing pending
+            Thread.onSpinWait();
+        }
+
+        long start = clock.epochMillis();
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "A", new Price(1, 1, 1)));
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "B", new Price(1, 1, 1)));
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "C", new Price(1, 1, 1)));
+        assertEquals("A", published.poll(1, TimeUnit.SECONDS), "Woken up by the offer, an idle publisher never polls");
+        assertEquals("B", published.poll(1, TimeUnit.SECONDS));
+        assertEquals(start, publishTimes.get("A"));
+        assertNull(published.poll(50, TimeUnit.MILLISECONDS), "C waits for the window");
+        assertEquals(start + 1000, throttledPublisher.getNextPublishTime());
+
+        clock.advanceBy(999, TimeUnit.MILLISECONDS);
+        eventDrivenPublisher.onWakeUp();
+        assertNull(published.poll(50, TimeUnit.MILLISECONDS), "A's timestamp is still in the window");
+        clock.advanceBy(1, TimeUnit.MILLISECONDS);
+        eventDrivenPublisher.onWakeUp();
+        assertEquals("C", published.poll(1, TimeUnit.SECONDS));
+        assertEquals(start + 1000, publishTimes.get("C"), "C goes out as soon as A's timestamp leaves the window");
+
+        eventDrivenPublisher.stop();
+        publisherThread.join(1000);
+        assertFalse(publisherThread.isAlive());
+    }
+}
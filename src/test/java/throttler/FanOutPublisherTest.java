@@ -0,0 +1,107 @@
+package throttler;
+
+import interfaces.ISymbolPendingListener;
+import org.junit.jupiter.api.Test;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.Price;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FanOutPublisherTest {
+
+    /**
+     * Two subscribers with their own limits share the one conflating queue, a third one joins late, catches up on the latest values and one detaches.
+     */
+    @Test
+    public void testSubscribersWithTheirOwnBudgets() {
+        VirtualClock clock = VirtualClock.startingNow();
+        clock.advanceBy(10, TimeUnit.MINUTES);//the ticks are stamped on the wall clock, ten minutes behind
+        ConflatingQueue conflatingQueue = new ConflatingQueue(1000);
+        MarketDataProcessor feed = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        FanOutPublisher fanOutPublisher = new FanOutPublisher(conflatingQueue, clock);
+        assertThrows(IllegalArgumentException.class, () -> fanOutPublisher.attach("wall", recording(conflatingQueue, new ArrayList<>()), new SlidingWindow(3, 1)), "Window on the wall clock");
+        List<String> fast = new ArrayList<>();
+        List<String> slow = new ArrayList<>();
+        ThrottledSubscriber fastSubscriber = fanOutPublisher.attach("fast", recording(conflatingQueue, fast), window(3, clock));
+        ThrottledSubscriber slowSubscriber = fanOutPublisher.attach("slow", recording(conflatingQueue, slow), window(1, clock));
+
+        ThrottledPublisherTest.tick(feed, 5, 3);
+        fanOutPublisher.publishData();
+        assertEquals("[A0@3.0, A1@3.0, A2@3.0]", fast.toString());
+        assertEquals("[A0@3.0]", slow.toString());
+        assertEquals(2, fastSubscriber.getNoOfPendingSymbols());
+        assertEquals(4, slowSubscriber.getNoOfPendingSymbols());
+        assertEquals(6, fastSubscriber.getPublishedVersion(0), "Third write of the slot");
+        assertEquals(0, slowSubscriber.getPublishedVersion(1));
+
+        List<String> late = new ArrayList<>();
+        ThrottledSubscriber lateSubscriber = fanOutPublisher.attach("late", recording(conflatingQueue, late), window(10, clock));
+        fanOutPublisher.detach(slowSubscriber);
+        feed.onMessage(new MarketData(Instant.now(), "A4", new Price(9, 9, 9)));
+        fanOutPublisher.publishData();
+        assertEquals("[A0@3.0, A1@3.0, A2@3.0]", fast.toString(), "Budget used up within the window");
+        assertEquals("[A0@3.0, A1@3.0, A2@3.0, A3@3.0, A4@9.0]", late.toString(), "Full snapshot of the latest values");
+        assertEquals("[A0@3.0]", slow.toString(), "Detached subscribers get nothing more");
+        assertEquals(2, fanOutPublisher.getSubscribers().size());
+        assertEquals(0, lateSubscriber.getNoOfPendingSymbols());
+        assertEquals(2, fastSubscriber.getNoOfPendingSymbols(), "A4 was queued for it already");
+
+        fanOutPublisher.publishData();
+        assertEquals(5, late.size(), "Nothing newer, nothing published");
+        assertTrue(fanOutPublisher.getNextPublishTime() > clock.epochMillis() + 500, "Wakes up when the fast subscriber's window slides");
+
+        clock.advanceBy(1000, TimeUnit.MILLISECONDS);
+        fanOutPublisher.publishData();
+        assertEquals("[A0@3.0, A1@3.0, A2@3.0, A3@3.0, A4@9.0]", fast.toString());
+        assertEquals(Long.MAX_VALUE, fanOutPublisher.getNextPublishTime());
+        fastSubscriber.getMetrics().snapshot();
+        assertTrue(fastSubscriber.getMetrics().getTickToPublishLatencyP50Micros() >= TimeUnit.MINUTES.toMicros(10), "Latencies on the window's clock");
+    }
+
+    /**
+     * Attaching or detaching a subscriber wakes an event driven publisher up through its own path rather than as a pending symbol.
+     */
+    @Test
+    public void testAttachWakesThePublisherUp() {
+        ConflatingQueue conflatingQueue = new ConflatingQueue(10);
+        List<String> calls = new ArrayList<>();
+        conflatingQueue.setSymbolPendingListener(new ISymbolPendingListener() {
+            @Override
+            public void onSymbolPending(int symbolId) {
+                calls.add("pending " + symbolId);
+            }
+
+            @Override
+            public void onWakeUp() {
+                calls.add("wake up");
+            }
+        });
+        FanOutPublisher fanOutPublisher = new FanOutPublisher(conflatingQueue);
+        ThrottledSubscriber subscriber = fanOutPublisher.attach("a", recording(conflatingQueue, new ArrayList<>()), new SlidingWindow(1, 1));
+        fanOutPublisher.detach(subscriber);
+        assertEquals("[wake up, wake up]", calls.toString());
+    }
+
+    private static SlidingWindow window(int maxRequestsPerSecond, VirtualClock clock) {
+        SlidingWindow slidingWindow = new SlidingWindow(maxRequestsPerSecond, 1);
+        slidingWindow.setClock(clock);
+        return slidingWindow;
+    }
+
+    private static MarketDataProcessor recording(ConflatingQueue conflatingQueue, List<String> published) {
+        return new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue) {
+            @Override
+            public void publishAggregatedMarketData(MarketData data) {
+                published.add(data.getSymbol() + "@" + data.getPrice().getLast());
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package throttler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.Price;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedReplayerTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * 2 bursts 200ms apart, replayed as fast as possible and at 2x which has to take at least half the captured time.
+     */
+    @Test
+    public void testReplayKeepsTheTicksAndTheirTiming() throws IOException, InterruptedException {
+        Path path = tempDir.resolve("feed.capture");
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        try (FeedCapture capture = new FeedCapture(marketDataProcessor, path, 100, 4)) {
+            capture.onMessage(new MarketData(Instant.now(), "A", new Price(1, 2, 3)));
+            capture.onMessage(new MarketData(null, "B", new Price(4, 5, 6)));
+            Thread.sleep(200);
+            for (int i = 0; i < 5; i++) {
+                capture.onMessage(new MarketData(Instant.now().minusMillis(10), "A", new Price(i, i, i)));
+            }
+            assertEquals(7, capture.getNoOfRecords());
+        }
+        assertEquals(6, conflatingQueue.getNoOfUpdates(0), "The capture hands the feed on");
+
+        List<MarketData> replayed = new ArrayList<>();
+        MarketDataProcessor recorder = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue) {
+            @Override
+            public void onMessage(MarketData data) {
+                replayed.add(data);
+            }
+        };
+        try (FeedReplayer replayer = new FeedReplayer(path)) {
+            assertEquals(7, replayer.getNoOfRecords());
+            FeedReplayer.Summary summary = replayer.replay(recorder, FeedReplayer.MAX_SPEED);
+            assertEquals(7, summary.getNoOfTicks());
+            assertTrue(summary.getCapturedNanos() >= TimeUnit.MILLISECONDS.toNanos(200));
+            assertTrue(summary.getElapsedNanos() < summary.getCapturedNanos(), "No pauses at max speed");
+            assertEquals("A", replayed.get(0).getSymbol());
+            assertEquals(new Price(4, 5, 6), replayed.get(1).getPrice());
+            assertNull(replayed.get(1).getUpdateTime());
+            assertEquals(new Price(4, 4, 4), replayed.get(6).getPrice());
+            long lagMillis = replayed.get(6).getUpdateTime().until(Instant.now(), ChronoUnit.MILLIS);
+            assertTrue(lagMillis >= 10 && lagMillis < 200, "Update times are moved to the replay, keeping their lag: " + lagMillis);
+
+            replayed.clear();
+            summary = replayer.replay(recorder, 2);
+            assertEquals(7, replayed.size());
+            assertTrue(summary.getElapsedNanos() >= summary.getCapturedNanos() / 2, summary.toString());
+        }
+    }
+
+    /**
+     * A replayed burst goes through the throttler, conflated down to the latest tick of each symbol.
+     */
+    @Test
+    public void testReplayThroughTheThrottler() throws IOException {
+        Path path = tempDir.resolve("burst.capture");
+        ConflatingQueue captureQueue = new ConflatingQueue(100);
+        try (FeedCapture capture = new FeedCapture(new MarketDataProcessor(new MarketDataGenerator(1, 1), captureQueue), path, 100)) {
+            ThrottledPublisherTest.tick(new MarketDataProcessor(new MarketDataGenerator(1, 1), captureQueue) {
+                @Override
+                public void onMessage(MarketData data) {
+                    capture.onMessage(data);
+                }
+            }, 4, 3);
+        }
+        List<String> published = new ArrayList<>();
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue) {
+            @Override
+            public void publishAggregatedMarketData(MarketData data) {
+                published.add(data.getSymbol() + "@" + data.getPrice().getLast());
+            }
+        };
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, new SlidingWindow(10, 1));
+        try (FeedReplayer replayer = new FeedReplayer(path)) {
+            assertEquals(12, replayer.replay(marketDataProcessor, FeedReplayer.MAX_SPEED).getNoOfTicks());
+        }
+        throttledPublisher.publishData();
+        assertEquals("[A0@3.0, A1@3.0, A2@3.0, A3@3.0]", published.toString());
+        assertEquals(3.0, throttledPublisher.getMetrics().getConflationRatio());
+    }
+
+    /**
+     * A capture out of symbol ids stops recording, the feed goes on to the processor without the feed thread failing.
+     */
+    @Test
+    public void testCaptureStopsWhenOutOfSymbolIds() throws IOException {
+        Path path = tempDir.resolve("full.capture");
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        try (FeedCapture capture = new FeedCapture(new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue), path, 2)) {
+            capture.onMessage(new MarketData(Instant.now(), "A", new Price(1, 1, 1)));
+            capture.onMessage(new MarketData(Instant.now(), "B", new Price(1, 1, 1)));
+            capture.onMessage(new MarketData(Instant.now(), "C", new Price(1, 1, 1)));
+            capture.onMessage(new MarketData(Instant.now(), "A", new Price(2, 2, 2)));
+            assertTrue(capture.isFull());
+            assertEquals(2, capture.getNoOfRecords());
+        }
+        assertEquals(3, conflatingQueue.getSymbolRegistry().size(), "C went on to the processor all the same");
+        assertEquals(2.0, conflatingQueue.getMarketData("A").getPrice().getLast());
+        try (FeedReplayer replayer = new FeedReplayer(path)) {
+            assertEquals(2, replayer.getNoOfRecords());
+        }
+    }
+}
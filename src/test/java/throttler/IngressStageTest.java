@@ -0,0 +1,103 @@
+package throttler;
+
+import org.junit.jupiter.api.Test;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.Price;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class IngressStageTest {
+    ConflatingQueue conflatingQueue = new ConflatingQueue(1000);
+
+    private void offer(IngressStage ingressStage, String symbol, double price) {
+        ingressStage.onMessage(MarketData.builder().symbol(symbol).price(new Price(price, price, price)).updateTime(Instant.now()).build());
+    }
+
+    private double latest(String symbol) {
+        return conflatingQueue.getMarketData(symbol).getPrice().getLast();
+    }
+
+    /**
+     * A batch is conflated before it reaches the queue, so 3 ticks of A and 1 of B end up as one write each.
+     */
+    @Test
+    public void testBatchConflatedInOnePass() {
+        IngressStage ingressStage = new IngressStage(conflatingQueue, 16, 16, false, OverflowPolicy.BLOCK, WaitStrategy.BUSY_SPIN);
+        offer(ingressStage, "A", 1);
+        offer(ingressStage, "B", 1);
+        offer(ingressStage, "A", 2);
+        offer(ingressStage, "A", 3);
+        assertNull(conflatingQueue.getMarketData("A"), "Nothing reaches the queue before the ingress thread drains the ring");
+
+        assertEquals(4, ingressStage.drain());
+        assertEquals(3, latest("A"));
+        assertEquals(1, latest("B"));
+        assertEquals(1, conflatingQueue.getNoOfUpdates(0), "Only the last tick of A in the batch was written");
+        assertEquals("A", conflatingQueue.take().getSymbol(), "Symbols turn pending in the order they first appear in the batch");
+        assertEquals(0, ingressStage.drain());
+    }
+
+    /**
+     * With the ring full, A's latest tick is written straight into the queue and the older tick of A still in the ring must not overwrite it.
+     */
+    @Test
+    public void testConflateInPlaceWhenFull() {
+        IngressStage ingressStage = new IngressStage(conflatingQueue, 4, 16, false, OverflowPolicy.CONFLATE_IN_PLACE, WaitStrategy.BUSY_SPIN);
+        IntStream.range(0, 4).forEach(i -> offer(ingressStage, "A" + i, 1));
+        offer(ingressStage, "A0", 2);
+        assertEquals(1, ingressStage.getNoOfConflatedInPlace().sum());
+        assertEquals(2, latest("A0"));
+
+        assertEquals(4, ingressStage.drain());
+        assertEquals(2, latest("A0"), "The older tick from the ring is ignored");
+        offer(ingressStage, "A0", 3);
+        ingressStage.drain();
+        assertEquals(3, latest("A0"), "A tick which went through the ring after the one conflated in place wins");
+        assertEquals(0, ingressStage.getNoOfDropped());
+    }
+
+    @Test
+    public void testDropOldestWhenFull() {
+        IngressStage ingressStage = new IngressStage(conflatingQueue, 4, 16, false, OverflowPolicy.DROP_OLDEST, WaitStrategy.BUSY_SPIN);
+        IntStream.range(0, 10).forEach(i -> offer(ingressStage, "A" + i, i));
+        assertEquals(4, ingressStage.drain());
+        assertEquals(6, ingressStage.getNoOfDropped());
+        assertNull(conflatingQueue.getMarketData("A5"));
+        assertEquals(6, latest("A6"));
+        assertEquals(9, latest("A9"));
+    }
+
+    /**
+     * Several feed threads on a tiny ring which blocks them until the ingress thread catches up, every symbol ends up with its last tick.
+     */
+    @Test
+    public void testBlockingMultiProducer() throws InterruptedException {
+        IngressStage ingressStage = new IngressStage(conflatingQueue, 8, 4, true, OverflowPolicy.BLOCK, WaitStrategy.YIELD);
+        Thread ingressThread = new Thread(ingressStage);
+        ingressThread.start();
+        int noOfProducers = 3, noOfSymbolsPerProducer = 10, noOfUpdates = 10000;
+        Thread[] producers = new Thread[noOfProducers];
+        for (int p = 0; p < noOfProducers; p++) {
+            int firstSymbol = p * noOfSymbolsPerProducer;
+            producers[p] = new Thread(() -> IntStream.range(0, noOfUpdates).forEach(i -> offer(ingressStage, "A" + (firstSymbol + i % noOfSymbolsPerProducer), i)));
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        while (ingressStage.getRing().size() > 0) {
+            Thread.sleep(1);
+        }
+        ingressStage.stop();
+        ingressThread.join();
+        assertEquals(0, ingressStage.getNoOfDropped());
+        assertEquals(Arrays.toString(IntStream.range(0, noOfProducers * noOfSymbolsPerProducer).map(s -> noOfUpdates - noOfSymbolsPerProducer + s % noOfSymbolsPerProducer).toArray()),
+                Arrays.toString(IntStream.range(0, noOfProducers * noOfSymbolsPerProducer).map(s -> (int) latest("A" + s)).toArray()));
+    }
+}
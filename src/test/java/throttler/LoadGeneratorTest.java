@@ -0,0 +1,89 @@
+package throttler;
+
+import org.junit.jupiter.api.Test;
+import pojo.ConflatingQueue;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void testZipfSamplerFollowsThePowerLaw() {
+        ZipfSampler zipfSampler = new ZipfSampler(1000, 1);
+        Random random = new Random(42);
+        int[] counts = new int[1001];
+        int noOfSamples = 200_000;
+        for (int i = 0; i < noOfSamples; i++) {
+            counts[zipfSampler.sample(random)]++;
+        }
+        double harmonic = 0;
+        for (int k = 1; k <= 1000; k++) {
+            harmonic += 1.0 / k;
+        }
+        assertEquals(1 / harmonic, (double) counts[1] / noOfSamples, 0.005, "The hottest symbol gets 1/H(n) of the updates");
+        assertEquals(2, (double) counts[1] / counts[2], 0.1);
+        assertEquals(10, (double) counts[1] / counts[10], 1);
+        assertEquals(0, counts[0]);
+
+        ZipfSampler uniform = new ZipfSampler(4, 0);
+        counts = new int[5];
+        for (int i = 0; i < 40_000; i++) {
+            counts[uniform.sample(random)]++;
+        }
+        for (int k = 1; k <= 4; k++) {
+            assertEquals(10_000, counts[k], 500);
+        }
+    }
+
+    @Test
+    public void testArrivalProcessesKeepTheMeanRate() {
+        Random random = new Random(7);
+        for (ArrivalProcess arrivalProcess : ArrivalProcess.values()) {
+            double totalGapNanos = 0;
+            for (int tickNo = 0; tickNo < 100_000; tickNo++) {
+                totalGapNanos += arrivalProcess.nextGapNanos(1000, 50, tickNo, random);
+            }
+            assertEquals(1000, totalGapNanos / 100_000, 30, arrivalProcess.name());
+        }
+        assertEquals(0, ArrivalProcess.BURSTY.nextGapNanos(1000, 50, 0, random), "Back to back within a burst");
+    }
+
+    /**
+     * 100k skewed ticks over 10k symbols conflate down to far fewer pending symbols, with the hot ones updated the most.
+     */
+    @Test
+    public void testSkewedTicksGoThroughTheConflatingQueue() {
+        ConflatingQueue conflatingQueue = new ConflatingQueue(10_000);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        LoadGenerator loadGenerator = new LoadGenerator(marketDataProcessor, conflatingQueue.getSymbolRegistry(), 10_000, 1.2, ArrivalProcess.POISSON, 1000, 1);
+        loadGenerator.generate(100_000, new Random(1));
+        assertEquals(100_000, loadGenerator.getNoOfTicks());
+        long hottest = conflatingQueue.getNoOfUpdates(conflatingQueue.getSymbolRegistry().getSymbolId("A0"));
+        long second  = conflatingQueue.getNoOfUpdates(conflatingQueue.getSymbolRegistry().getSymbolId("A1"));
+        long tail    = conflatingQueue.getNoOfUpdates(conflatingQueue.getSymbolRegistry().getSymbolId("A9999"));
+        assertTrue(hottest > second && second > tail, hottest + " " + second + " " + tail);
+        assertTrue(conflatingQueue.getSymbols().size() < 10_000, "Not every symbol of the tail got an update");
+    }
+
+    @Test
+    public void testProducersKeepToTheTargetRate() throws InterruptedException {
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        LoadGenerator loadGenerator = new LoadGenerator(marketDataProcessor, conflatingQueue.getSymbolRegistry(), 100, 1, ArrivalProcess.CONSTANT, 4000, 1);
+        loadGenerator.start(2);
+        Thread.sleep(500);
+        loadGenerator.stop();
+        assertEquals(2000, loadGenerator.getNoOfTicks(), 400);
+    }
+
+    @Test
+    public void testMockMarketDataDoesNotPileUp() {
+        MarketDataGenerator marketDataGenerator = new MarketDataGenerator(2, 2);
+        assertEquals(4, marketDataGenerator.generateMockMarketData().size());
+        assertEquals("Price(bid=5.0, ask=6.0, last=4.0)", marketDataGenerator.generateMockMarketData().peek().getPrice().toString(), "Only the new ticks, with the next prices");
+        assertEquals(4, marketDataGenerator.getMockMarketData().size());
+        assertEquals("Price(bid=2.0, ask=3.0, last=1.0)", new MarketDataGenerator(1, 1, 1).generateMockMarketData().peek().getPrice().toString(), "Starts at the step given");
+    }
+}
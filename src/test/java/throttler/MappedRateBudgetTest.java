@@ -0,0 +1,125 @@
+package throttler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedRateBudgetTest {
+
+    @Test
+    public void testMappingsOfTheSameFileShareTheBudget(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("budget");
+        try (MappedRateBudget first = new MappedRateBudget(path, 100, 10000); MappedRateBudget second = new MappedRateBudget(path, 100, 10000)) {
+            AtomicInteger  acquired = new AtomicInteger();
+            CountDownLatch start    = new CountDownLatch(1);
+            List<Thread>   threads  = new ArrayList<>();
+            for (MappedRateBudget budget : new MappedRateBudget[]{first, second, first, second}) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 1000; i++) {
+                        if (budget.tryAcquire(System.currentTimeMillis())) {
+                            acquired.incrementAndGet();
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long now = System.currentTimeMillis();
+            assertEquals(100, acquired.get());
+            assertEquals(100, second.getSize(now));
+            assertFalse(first.canAcquire(now));
+            assertTrue(first.nextAvailableTime(now) > now);
+            assertThrows(IllegalStateException.class, () -> second.acquire(now), "The other mapping took the last slot, the claim is not let through");
+            assertEquals(100, first.getSize(now));
+            assertThrows(IllegalStateException.class, () -> new MappedRateBudget(path, 50, 10000), "Processes have to agree on the limit");
+        }
+    }
+
+    @Test
+    public void testLayoutLeftHalfWayByADeadProcessIsTakenOver(@TempDir Path dir) throws Exception {
+        Process process = new ProcessBuilder(javaExecutable(), "-version").redirectErrorStream(true).start();
+        process.getInputStream().readAllBytes();
+        process.waitFor();
+        Path path = dir.resolve("budget");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(MappedRateBudget.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MappedRateBudget.INIT_OWNER_OFFSET, process.pid());//took the lock and died before the magic went in
+            channel.write(header);
+        }
+        try (MappedRateBudget budget = new MappedRateBudget(path, 2, 10000)) {
+            long now = System.currentTimeMillis();
+            assertTrue(budget.tryAcquire(now));
+            assertTrue(budget.tryAcquire(now));
+            assertFalse(budget.tryAcquire(now));
+        }
+    }
+
+    /**
+     * Several JVMs racing for the budget of one file only ever get the limit between them.
+     */
+    @Test
+    public void testProcessesStayWithinTheLimitTogether(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("budget");
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            processes.add(new ProcessBuilder(javaExecutable(), "-cp", System.getProperty("java.class.path"), Claimer.class.getName(), path.toString(), "50", "60000", "2000")
+                    .redirectError(ProcessBuilder.Redirect.INHERIT).start());
+        }
+        int acquired = 0;
+        for (Process process : processes) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                acquired += Integer.parseInt(reader.readLine().trim());
+            }
+            assertEquals(0, process.waitFor());
+        }
+        assertEquals(50, acquired);
+        try (MappedRateBudget budget = new MappedRateBudget(path, 50, 60000)) {
+            assertEquals(50, budget.getSize(System.currentTimeMillis()));
+        }
+    }
+
+    private static String javaExecutable() {
+        return System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    }
+
+    /**
+     * Child process of the test: tries the given number of claims and prints how many succeeded.
+     */
+    public static class Claimer {
+        public static void main(String[] args) throws IOException {
+            try (MappedRateBudget budget = new MappedRateBudget(Path.of(args[0]), Integer.parseInt(args[1]), Long.parseLong(args[2]))) {
+                int acquired = 0;
+                for (int i = 0; i < Integer.parseInt(args[3]); i++) {
+                    if (budget.tryAcquire(System.currentTimeMillis())) {
+                        acquired++;
+                    }
+                }
+                System.out.println(acquired);
+            }
+        }
+    }
+}
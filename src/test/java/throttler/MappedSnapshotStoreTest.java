@@ -0,0 +1,121 @@
+package throttler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.MarketDataSnapshot;
+import pojo.Price;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedSnapshotStoreTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * 5 symbols ticked, 3 published within the 3 per second budget when the process stops. The restarted process has the latest values back
+     * under the same ids, the 2 unpublished symbols pending and the budget still used up, so it neither bursts nor waits for the feed.
+     */
+    @Test
+    public void testWarmRestart() throws IOException {
+        Path path = tempDir.resolve("throttler.snapshot");
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, new SlidingWindow(3, 1));
+        try (MappedSnapshotStore store = new MappedSnapshotStore(path, conflatingQueue.getSymbolRegistry(), 3)) {
+            assertFalse(store.isWarm());
+            conflatingQueue.setLatestValueStore(store);
+            throttledPublisher.setSnapshotStore(store);
+            ThrottledPublisherTest.tick(marketDataProcessor, 5, 4);
+            throttledPublisher.publishData();
+            assertEquals("{A0=1, A1=1, A2=1}", throttledPublisher.getPublishCounts().toString());
+        }
+
+        ConflatingQueue restartedQueue = new ConflatingQueue(100);
+        SlidingWindow restartedWindow = new SlidingWindow(3, 1);
+        try (MappedSnapshotStore store = new MappedSnapshotStore(path, restartedQueue.getSymbolRegistry(), 3)) {
+            assertTrue(store.isWarm());
+            assertEquals(5, store.restore(restartedQueue, restartedWindow));
+            assertEquals(3, restartedWindow.getSize(), "The publishes of the last run are still in the window");
+            assertFalse(restartedWindow.isSymbolOutsideWindow(0));
+            assertTrue(restartedWindow.isSymbolOutsideWindow(3));
+            assertEquals(2, restartedQueue.getNoOfSymbols(), "A3 and A4 had not been published");
+            assertEquals("A3", restartedQueue.take().getSymbol());
+            assertEquals(4.0, restartedQueue.getMarketData("A4").getPrice().getLast());
+            assertNull(restartedQueue.getMarketData("A0"), "Already published");
+
+            long versionBeforeRestart = restartedQueue.getVersion(0);
+            restartedQueue.setLatestValueStore(store);
+            restartedQueue.offer(new MarketData(Instant.now(), "A0", new Price(7, 7, 7)));
+            assertEquals(versionBeforeRestart + 2, restartedQueue.getVersion(0), "Versions carry on from before the restart");
+        }
+    }
+
+    @Test
+    public void testSidecarReadsTheLatestValues() throws IOException {
+        Path path = tempDir.resolve("sidecar.snapshot");
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        try (MappedSnapshotStore store = new MappedSnapshotStore(path, conflatingQueue.getSymbolRegistry(), 100);
+             MappedSnapshotReader reader = new MappedSnapshotReader(path)) {
+            conflatingQueue.setLatestValueStore(store);
+            MarketDataSnapshot snapshot = new MarketDataSnapshot();
+            assertEquals(0, reader.getNoOfSymbols());
+            assertFalse(reader.read(0, snapshot));
+
+            ThrottledPublisherTest.tick(marketDataProcessor, 2, 3);
+            marketDataProcessor.onMessage(new MarketData(Instant.now(), "A_VERY_LONG_SYMBOL_NAME_OF_MORE_THAN_32_BYTES", new Price(1, 2, 3)));
+            assertEquals(3, reader.getNoOfSymbols());
+            assertEquals("A1", reader.getSymbol(1));
+            assertTrue(reader.read(1, snapshot));
+            assertEquals(3.0, snapshot.getAsk());
+            assertEquals(6, snapshot.getSequence());
+            assertTrue(reader.isPending(1));
+            assertNull(reader.getSymbol(2), "Too long to be kept whole");
+            assertTrue(reader.read(2, snapshot));
+            assertEquals(2.0, snapshot.getAsk());
+            assertEquals(0, reader.getLastPublishTime(1));
+        }
+    }
+
+    /**
+     * An id registered without a tick and a symbol too long to be kept whole leave records which cannot be restored, the symbols after them
+     * still come back under their old ids. A warm store which is not restored from names its records after the symbols which have the ids now.
+     */
+    @Test
+    public void testRestoreSkipsRecordsItCannotRestore() throws IOException {
+        Path path = tempDir.resolve("skipping.snapshot");
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        try (MappedSnapshotStore store = new MappedSnapshotStore(path, conflatingQueue.getSymbolRegistry(), 3)) {
+            conflatingQueue.setLatestValueStore(store);
+            conflatingQueue.getSymbolRegistry().register("IDX");//e.g. given a group, it never ticked
+            marketDataProcessor.onMessage(new MarketData(Instant.now(), "A_VERY_LONG_SYMBOL_NAME_OF_MORE_THAN_32_BYTES", new Price(1, 2, 3)));
+            ThrottledPublisherTest.tick(marketDataProcessor, 1, 1);
+        }
+
+        ConflatingQueue restartedQueue = new ConflatingQueue(100);
+        try (MappedSnapshotStore store = new MappedSnapshotStore(path, restartedQueue.getSymbolRegistry(), 3)) {
+            assertEquals(1, store.restore(restartedQueue, new SlidingWindow(3, 1)));
+            assertEquals(2, restartedQueue.getSymbolRegistry().getSymbolId("A0"));
+            assertEquals(1.0, restartedQueue.getMarketData("A0").getPrice().getLast());
+            assertEquals(3, restartedQueue.getSymbolRegistry().register("B"), "The skipped ids are not handed out again");
+        }
+
+        ConflatingQueue notRestoredQueue = new ConflatingQueue(100);
+        try (MappedSnapshotStore store = new MappedSnapshotStore(path, notRestoredQueue.getSymbolRegistry(), 3);
+             MappedSnapshotReader reader = new MappedSnapshotReader(path)) {
+            assertTrue(store.isWarm());
+            assertEquals("A0", reader.getSymbol(2));
+            notRestoredQueue.setLatestValueStore(store);
+            ThrottledPublisherTest.tick(new MarketDataProcessor(new MarketDataGenerator(1, 1), notRestoredQueue), 3, 1);
+            assertEquals("A2", reader.getSymbol(2), "Not the name of the earlier run");
+            assertEquals("A0", reader.getSymbol(0));
+        }
+    }
+}
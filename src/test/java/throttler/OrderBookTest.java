@@ -0,0 +1,163 @@
+package throttler;
+
+import interfaces.IMarketDataProcessor;
+import org.junit.jupiter.api.Test;
+import pojo.ConflatingQueue;
+import pojo.LevelAction;
+import pojo.MarketData;
+import pojo.MarketDataSnapshot;
+import pojo.OrderBookSnapshot;
+import pojo.Price;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderBookTest {
+
+    /**
+     * Level updates are merged into a book of depth 3 in price order, the top of book follows and the symbol is pending once however many come in.
+     */
+    @Test
+    public void testLevelsMergeInPlace() {
+        ConflatingQueue conflatingQueue = new ConflatingQueue(10);
+        conflatingQueue.enableDepth(3);
+        int symbolId = conflatingQueue.getSymbolRegistry().register("A");
+        conflatingQueue.offerLevel(symbolId, Price.BID, LevelAction.ADD, 100, 5, 1);
+        conflatingQueue.offerLevel(symbolId, Price.BID, LevelAction.ADD, 102, 1, 2);
+        conflatingQueue.offerLevel(symbolId, Price.BID, LevelAction.ADD, 101, 2, 3);
+        conflatingQueue.offerLevel(symbolId, Price.BID, LevelAction.ADD, 103, 1, 4);//100 falls off
+        conflatingQueue.offerLevel(symbolId, Price.BID, LevelAction.ADD, 99, 1, 5);//out of view
+        conflatingQueue.offerLevel(symbolId, Price.BID, LevelAction.MODIFY, 102, 7, 6);
+        conflatingQueue.offerLevel(symbolId, Price.BID, LevelAction.DELETE, 103, 0, 7);
+        conflatingQueue.offerLevel(symbolId, Price.BID, LevelAction.MODIFY, 101, 0, 8);//no size left
+        conflatingQueue.offerLevel(symbolId, Price.ASK, LevelAction.ADD, 105, 4, 9);
+        conflatingQueue.offerLevel(symbolId, Price.ASK, LevelAction.MODIFY, 104, 3, 10);//new level
+
+        OrderBookSnapshot book = new OrderBookSnapshot(3);
+        assertTrue(conflatingQueue.readBook(symbolId, book));
+        assertEquals(1, book.getNoOfBidLevels());
+        assertEquals(102, book.getBidPrice(0));
+        assertEquals(7, book.getBidSize(0));
+        assertEquals(2, book.getNoOfAskLevels());
+        assertEquals(104, book.getAskPrice(0));
+        assertEquals(3, book.getAskSize(0));
+        assertEquals(105, book.getAskPrice(1));
+        assertEquals(10, book.getUpdateTimeNanos());
+
+        MarketDataSnapshot snapshot = new MarketDataSnapshot();
+        assertTrue(conflatingQueue.readSnapshot(symbolId, snapshot));
+        assertEquals(102, snapshot.getBid(), "Top of book");
+        assertEquals(104, snapshot.getAsk());
+        assertEquals(1, conflatingQueue.getNoOfSymbols());
+        assertEquals(10, conflatingQueue.getNoOfUpdates(symbolId));
+
+        assertTrue(conflatingQueue.takeBook(symbolId, book));
+        assertFalse(conflatingQueue.isPending(symbolId));
+        assertFalse(conflatingQueue.takeBook(symbolId, book), "Nothing new");
+
+        ConflatingQueue topOfBookQueue = new ConflatingQueue(10);
+        int topOfBookId = topOfBookQueue.getSymbolRegistry().register("A");
+        assertThrows(IllegalStateException.class, () -> topOfBookQueue.offerLevel(topOfBookId, Price.BID, LevelAction.ADD, 100, 5, 1), "Not in depth mode");
+        assertEquals(0, topOfBookQueue.getVersion(topOfBookId), "The slot was never owned, readers do not wait on it");
+    }
+
+    /**
+     * Level updates within the symbol's window go out as one book once it is over, with only the levels which changed since the previous publish marked.
+     */
+    @Test
+    public void testPublisherSendsConsolidatedBooks() {
+        SlidingWindow slidingWindow = new SlidingWindow(100, 1);
+        VirtualClock clock = VirtualClock.startingNow();
+        slidingWindow.setClock(clock);
+        ConflatingQueue conflatingQueue = new ConflatingQueue(10);
+        conflatingQueue.enableDepth(5);
+        List<String> books = new ArrayList<>();
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue) {
+            @Override
+            public void publishOrderBook(OrderBookSnapshot book) {
+                books.add(book.getSymbol() + " bids=" + levels(book.getNoOfBidLevels(), book.getBidPrices(), book.getBidSizes()) + " asks="
+                        + levels(book.getNoOfAskLevels(), book.getAskPrices(), book.getAskSizes())
+                        + " changed=" + Long.toBinaryString(book.getChangedBidLevels()) + "/" + Long.toBinaryString(book.getChangedAskLevels()));
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> new ThrottledPublisher(new ConflatingQueue(10), marketDataProcessor, slidingWindow).enableOrderBooks(), "Not in depth mode");
+        IMarketDataProcessor topOfBookOnly = new IMarketDataProcessor() {
+            @Override
+            public void publishAggregatedMarketData(MarketData data) {
+            }
+
+            @Override
+            public void onMessage(MarketData data) {
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> new ThrottledPublisher(conflatingQueue, topOfBookOnly, slidingWindow).enableOrderBooks(), "Does not take books");
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, slidingWindow);
+        throttledPublisher.enableOrderBooks();
+        assertThrows(IllegalStateException.class, () -> throttledPublisher.enableBaskets(10, 1024));
+
+        int symbolId = conflatingQueue.getSymbolRegistry().register("A");
+        marketDataProcessor.onLevel(symbolId, Price.BID, LevelAction.ADD, 100, 1, 1);
+        marketDataProcessor.onLevel(symbolId, Price.BID, LevelAction.ADD, 99, 1, 2);
+        marketDataProcessor.onLevel(symbolId, Price.ASK, LevelAction.ADD, 101, 1, 3);
+        throttledPublisher.publishData();
+        assertEquals(List.of("A bids=[100.0x1.0, 99.0x1.0] asks=[101.0x1.0] changed=11/1"), books);
+
+        for (int size = 1; size <= 50; size++) {
+            marketDataProcessor.onLevel(symbolId, Price.BID, LevelAction.MODIFY, 100, size, 3 + size);
+        }
+        marketDataProcessor.onLevel(symbolId, Price.ASK, LevelAction.ADD, 100.5, 2, 54);
+        throttledPublisher.publishData();
+        assertEquals(1, books.size(), "Within the window");
+        assertEquals(clock.epochMillis() + 1000, throttledPublisher.getNextPublishTime());
+
+        clock.advanceBy(1000, TimeUnit.MILLISECONDS);
+        throttledPublisher.publishData();
+        assertEquals("A bids=[100.0x50.0, 99.0x1.0] asks=[100.5x2.0, 101.0x1.0] changed=1/11", books.get(1));
+        assertEquals("{A=2}", throttledPublisher.getPublishCounts().toString());
+        assertEquals(27, throttledPublisher.getMetrics().getConflationRatio(), "54 level updates in 2 publishes");
+    }
+
+    /**
+     * A symbol waiting out its window whose book has been taken meanwhile spends neither its window nor the budget and does not count as published.
+     */
+    @Test
+    public void testBookTakenAlreadyDoesNotSpendTheBudget() {
+        SlidingWindow slidingWindow = new SlidingWindow(100, 1);
+        VirtualClock clock = VirtualClock.startingNow();
+        slidingWindow.setClock(clock);
+        ConflatingQueue conflatingQueue = new ConflatingQueue(10);
+        conflatingQueue.enableDepth(5);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, slidingWindow);
+        throttledPublisher.enableOrderBooks();
+        int symbolId = conflatingQueue.getSymbolRegistry().register("A");
+        marketDataProcessor.onLevel(symbolId, Price.BID, LevelAction.ADD, 100, 1, 1);
+        throttledPublisher.publishData();
+        marketDataProcessor.onLevel(symbolId, Price.BID, LevelAction.ADD, 99, 1, 2);
+        throttledPublisher.publishData();//A waits for its window
+        long lastPublishTime = slidingWindow.getSymbolLastPublishTime(symbolId);
+
+        assertTrue(conflatingQueue.takeBook(symbolId, new OrderBookSnapshot(5)));
+        clock.advanceBy(1000, TimeUnit.MILLISECONDS);
+        throttledPublisher.publishData();
+        assertEquals("{A=1}", throttledPublisher.getPublishCounts().toString());
+        assertEquals(lastPublishTime, slidingWindow.getSymbolLastPublishTime(symbolId), "The symbol's window was not claimed");
+        assertEquals(0, slidingWindow.getSize(), "Nor the budget");
+        assertEquals(0, throttledPublisher.getNoOfPendingSymbols());
+
+        marketDataProcessor.onLevel(symbolId, Price.BID, LevelAction.ADD, 98, 1, 3);
+        throttledPublisher.publishData();
+        assertEquals("{A=2}", throttledPublisher.getPublishCounts().toString(), "A's next update still goes out");
+    }
+
+    private static String levels(int noOfLevels, double[] prices, double[] sizes) {
+        List<String> levels = new ArrayList<>();
+        for (int level = 0; level < noOfLevels; level++) {
+            levels.add(prices[level] + "x" + sizes[level]);
+        }
+        return levels.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package throttler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.PublishRecord;
+import pojo.SymbolRegistry;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PublishJournalTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * 10 records with room for 4 per chunk, so the journal has to map 3 chunks and the reader reads across them.
+     */
+    @Test
+    public void testRecordsReadBackAcrossChunks() throws IOException {
+        SymbolRegistry symbolRegistry = new SymbolRegistry(10);
+        symbolRegistry.register("A");
+        symbolRegistry.register("B");
+        Path path = tempDir.resolve("publish.journal");
+        try (PublishJournal journal = new PublishJournal(path, symbolRegistry, 4)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(i % 2, i, i + 1, i + 2, i * 1000L, i * 1000L + 500, i + 1);
+            }
+            journal.append(0, 1, 1, 1, MarketData.NO_UPDATE_TIME, TimeUnit.SECONDS.toNanos(5), 1);
+            assertEquals(11, journal.getNoOfRecords());
+        }
+        try (PublishJournalReader reader = new PublishJournalReader(path)) {
+            assertEquals(11, reader.getNoOfRecords());
+            PublishRecord record = new PublishRecord();
+            for (int i = 0; i < 10; i++) {
+                assertTrue(reader.next(record));
+                assertEquals(i % 2, record.getSymbolId());
+                assertEquals(i + 2, record.getLast());
+                assertEquals(i * 1000L + 500, record.getPublishTimeNanos());
+                assertEquals(i + 1, record.getWindowSize());
+            }
+            assertEquals("B", reader.getSymbol(1));
+            assertTrue(reader.next(record));
+            assertEquals(MarketData.NO_UPDATE_TIME, record.getUpdateTimeNanos());
+            assertFalse(reader.next(record));
+        }
+        try (PublishJournalReader reader = new PublishJournalReader(path)) {
+            PublishJournalReader.Summary summary = reader.summarise(1);
+            assertEquals(11, summary.getNoOfPublishes());
+            assertEquals("{A=6, B=5}", summary.getPublishCounts().toString());
+            assertEquals(10, summary.getMaxPublishesInWindow(), "The first 10 are published within a microsecond, the last one 5 secs later");
+            assertEquals(10, summary.getMaxWindowSize());
+            assertEquals(10, summary.getTickToPublishLatencies().getTotalCount(), "Publishes without an update time carry no latency");
+        }
+    }
+
+    @Test
+    public void testThrottledPublisherJournalsEveryPublish() throws IOException {
+        ConflatingQueue conflatingQueue = new ConflatingQueue(1000);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, new SlidingWindow(3, 1));
+        Path path = tempDir.resolve("publisher.journal");
+        try (PublishJournal journal = new PublishJournal(path, conflatingQueue.getSymbolRegistry())) {
+            throttledPublisher.setPublishJournal(journal);
+            ThrottledPublisherTest.tick(marketDataProcessor, 5, 10);
+            throttledPublisher.publishData();
+        }
+        try (PublishJournalReader reader = new PublishJournalReader(path)) {
+            PublishJournalReader.Summary summary = reader.summarise(1);
+            assertEquals(throttledPublisher.getPublishCounts().toString(), summary.getPublishCounts().toString());
+            assertEquals(3, summary.getMaxPublishesInWindow());
+            assertEquals(3, summary.getMaxWindowSize());
+        }
+    }
+}
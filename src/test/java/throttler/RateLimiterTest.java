@@ -0,0 +1,143 @@
+package throttler;
+
+import interfaces.IRateLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testSlidingLogAllowsExactlyTheLimitWithinAnyWindow() {
+        IRateLimiter rateLimiter = new SlidingLogRateLimiter(3, 1000);//3 requests per second
+        assertTrue(rateLimiter.tryAcquire(0));
+        assertTrue(rateLimiter.tryAcquire(400));
+        assertTrue(rateLimiter.tryAcquire(800));
+        assertFalse(rateLimiter.tryAcquire(999));
+        assertEquals(1000, rateLimiter.nextAvailableTime(999), "The oldest timestamp drops out of the window at 1000");
+        assertTrue(rateLimiter.tryAcquire(1000));
+        assertFalse(rateLimiter.tryAcquire(1399));
+        assertTrue(rateLimiter.tryAcquire(1400));
+        assertEquals(3, rateLimiter.getSize());
+    }
+
+    @Test
+    public void testRejectedAttemptsDoNotConsumeBudget() {
+        for (RateLimiterType rateLimiterType : RateLimiterType.values()) {
+            IRateLimiter rateLimiter = rateLimiterType.create(3, 1000);
+            assertTrue(rateLimiter.tryAcquire(0), rateLimiterType.name());
+            assertTrue(rateLimiter.tryAcquire(0) || rateLimiter.tryAcquire(rateLimiter.nextAvailableTime(0)), rateLimiterType.name());
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(rateLimiter.canAcquire(2000) , rateLimiterType.name() + " checking alone must never use up the budget");
+            }
+            assertTrue(rateLimiter.tryAcquire(2000), rateLimiterType.name());
+        }
+    }
+
+    @Test
+    public void testGcraSpacesPublishesOverTheInterval() {
+        IRateLimiter rateLimiter = new GcraRateLimiter(4, 1000);//one every 250ms
+        assertTrue(rateLimiter.tryAcquire(0));
+        assertFalse(rateLimiter.tryAcquire(249));
+        assertEquals(250, rateLimiter.nextAvailableTime(100));
+        assertTrue(rateLimiter.tryAcquire(250));
+        assertTrue(rateLimiter.tryAcquire(500));
+        assertTrue(rateLimiter.tryAcquire(750));
+        assertFalse(rateLimiter.tryAcquire(999), "No more than 4 in the window starting at 0");
+
+        IRateLimiter burstRateLimiter = new GcraRateLimiter(4, 1000, 2);
+        assertTrue(burstRateLimiter.tryAcquire(0));
+        assertTrue(burstRateLimiter.tryAcquire(0), "Burst of 2 goes back to back");
+        assertFalse(burstRateLimiter.tryAcquire(0));
+    }
+
+    /**
+     * Publishing as often as allowed, millisecond by millisecond, never gets more than the limit into any rolling interval, also when the
+     * limit does not divide the interval.
+     */
+    @Test
+    public void testGcraHoldsTheLimitWithinAnyRollingInterval() {
+        for (int maxRequestPerInterval : new int[]{3, 6, 7, 4}) {
+            IRateLimiter rateLimiter = new GcraRateLimiter(maxRequestPerInterval, 1000);
+            List<Long> publishTimes = new ArrayList<>();
+            for (long now = 0; now < 5000; now++) {
+                if (rateLimiter.tryAcquire(now)) {
+                    publishTimes.add(now);
+                }
+            }
+            for (int i = 0; i < publishTimes.size(); i++) {
+                int inInterval = 0;
+                for (int j = i; j < publishTimes.size() && publishTimes.get(j) < publishTimes.get(i) + 1000; j++) {
+                    inInterval++;
+                }
+                assertTrue(inInterval <= maxRequestPerInterval, maxRequestPerInterval + "/1000 allowed " + inInterval + " from " + publishTimes.get(i));
+            }
+            assertTrue(publishTimes.size() >= 5 * maxRequestPerInterval - 1, "Still close to the limit: " + publishTimes.size());
+        }
+    }
+
+    @Test
+    public void testSlidingCounterWeighsThePreviousWindow() {
+        IRateLimiter rateLimiter = new SlidingCounterRateLimiter(10, 1000);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(rateLimiter.tryAcquire(i));
+        }
+        assertFalse(rateLimiter.tryAcquire(500));
+        assertFalse(rateLimiter.tryAcquire(1000), "The whole previous window still overlaps");
+        for (int i = 0; i < 5; i++) {
+            assertTrue(rateLimiter.tryAcquire(1500), "Half of the previous window has slid out");
+        }
+        assertFalse(rateLimiter.tryAcquire(1500));
+        long nextAvailableTime = rateLimiter.nextAvailableTime(1500);
+        assertTrue(nextAvailableTime > 1500);
+        assertFalse(rateLimiter.canAcquire(nextAvailableTime - 1));
+        assertTrue(rateLimiter.canAcquire(nextAvailableTime));
+    }
+
+    @Test
+    public void testGroupBudgetKeepsReservedQuotasAndTheGlobalCap() {
+        GroupRateBudget groupRateBudget = new GroupRateBudget(5, 1000, 2, 0);//tier-1 has 2 reserved, both groups share the other 3
+        IRateLimiter tier1 = groupRateBudget.forGroup(0);
+        IRateLimiter tail  = groupRateBudget.forGroup(1);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(tail.tryAcquire(i));
+        }
+        assertFalse(tail.tryAcquire(10), "The tail has used up the parent pool");
+        assertEquals(1000, tail.nextAvailableTime(10));
+        assertTrue(tier1.tryAcquire(20));
+        assertTrue(tier1.tryAcquire(30), "The tail flood did not touch the reserved quota");
+        assertFalse(tier1.tryAcquire(40));
+        assertEquals(5, tier1.getSize());
+        assertEquals(5, tier1.getMaxRequestPerInterval());
+
+        assertTrue(tier1.tryAcquire(1000));
+        assertTrue(tier1.tryAcquire(1001), "Tier-1 borrows from the parent pool once the window has slid");
+        assertTrue(tail.tryAcquire(1002));
+        assertFalse(tail.tryAcquire(1003));
+        assertFalse(tier1.tryAcquire(1003), "Reserved quota busy until 1020, pool used up");
+        assertEquals(1020, tier1.nextAvailableTime(1003));
+
+        assertEquals(1, groupRateBudget.getGroup(7), "Unassigned symbols are in the last group");
+        groupRateBudget.assignGroup(7, 0);
+        assertEquals(0, groupRateBudget.getGroup(7));
+        assertThrows(IllegalArgumentException.class, () -> new GroupRateBudget(5, 1000, 3, 3));
+        assertThrows(IllegalArgumentException.class, () -> new GroupRateBudget(5, 1000, 5, 0), "The tail could never publish");
+    }
+
+    @Test
+    public void testSlidingLogLimitCanBeLoweredBelowItsSize() {
+        SlidingLogRateLimiter rateLimiter = new SlidingLogRateLimiter(4, 1000);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rateLimiter.tryAcquire(i * 100));
+        }
+        rateLimiter.setLimit(2);
+        assertFalse(rateLimiter.canAcquire(300));
+        assertEquals(1100, rateLimiter.nextAvailableTime(300), "The 2 oldest have to leave the window before a third one fits again");
+        assertTrue(rateLimiter.tryAcquire(1100));
+        rateLimiter.setLimit(10);
+        assertEquals(4, rateLimiter.getLimit(), "Capped by the size of the log");
+    }
+}
@@ -0,0 +1,76 @@
+package throttler;
+
+import interfaces.ISchedulingPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchedulingPolicyTest {
+
+    @Test
+    public void testFifoIgnoresStaleness() {
+        ISchedulingPolicy schedulingPolicy = SchedulingPolicyType.FIFO.create(1000);
+        schedulingPolicy.add(3, 500);
+        schedulingPolicy.add(1, 100);
+        schedulingPolicy.add(2, 300);
+        assertEquals("[3, 1, 2]", drain(schedulingPolicy).toString());
+    }
+
+    @Test
+    public void testStalestFirstAndTiesInTheOrderAdded() {
+        ISchedulingPolicy schedulingPolicy = SchedulingPolicyType.STALENESS.create(1000);
+        schedulingPolicy.add(3, 500);
+        schedulingPolicy.add(1, 100);
+        schedulingPolicy.add(2, 300);
+        schedulingPolicy.add(5, 300);
+        schedulingPolicy.add(4, 300);
+        assertEquals(1, schedulingPolicy.peek());
+        assertEquals(5, schedulingPolicy.size());
+        assertEquals("[1, 2, 5, 4, 3]", drain(schedulingPolicy).toString());
+        assertEquals(ISchedulingPolicy.EMPTY, schedulingPolicy.poll());
+    }
+
+    @Test
+    public void testWeightsAndReAdds() {
+        StalenessSchedulingPolicy schedulingPolicy = new StalenessSchedulingPolicy(1000);
+        schedulingPolicy.setWeight(7, 4);//due 750ms earlier than an unweighted symbol stale since the same time
+        schedulingPolicy.add(1, 100);
+        schedulingPolicy.add(7, 800);
+        schedulingPolicy.add(2, 900);
+        schedulingPolicy.add(2, 0);//only moves up
+        schedulingPolicy.add(1, 1000);
+        assertEquals(3, schedulingPolicy.size());
+        assertEquals("[2, 7, 1]", drain(schedulingPolicy).toString());
+        assertThrows(IllegalArgumentException.class, () -> schedulingPolicy.setWeight(1, 0));
+    }
+
+    @Test
+    public void testHeapOrderOverManySymbols() {
+        ISchedulingPolicy schedulingPolicy = SchedulingPolicyType.STALENESS.create(1000);
+        Random random = new Random(42);
+        long[] staleSinces = new long[5000];
+        for (int round = 0; round < 3; round++) {
+            for (int symbolId = 0; symbolId < staleSinces.length; symbolId++) {
+                staleSinces[symbolId] = random.nextInt(100_000);
+                schedulingPolicy.add(symbolId, staleSinces[symbolId]);
+            }
+            long previous = Long.MIN_VALUE;
+            for (int symbolId : drain(schedulingPolicy)) {
+                assertTrue(staleSinces[symbolId] >= previous);
+                previous = staleSinces[symbolId];
+            }
+        }
+    }
+
+    private static List<Integer> drain(ISchedulingPolicy schedulingPolicy) {
+        List<Integer> symbolIds = new ArrayList<>();
+        while (!schedulingPolicy.isEmpty()) {
+            symbolIds.add(schedulingPolicy.poll());
+        }
+        return symbolIds;
+    }
+}
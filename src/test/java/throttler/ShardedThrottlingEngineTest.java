@@ -0,0 +1,87 @@
+package throttler;
+
+import interfaces.IRateLimiter;
+import org.junit.jupiter.api.Test;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.Price;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedThrottlingEngineTest {
+
+    @Test
+    public void testIdleShardsLendTheirShare() {
+        SharedRateBudget rateBudget = new SharedRateBudget(8, 1000, 4);//2 slots guaranteed per shard
+        IRateLimiter busyShard = rateBudget.forShard(0);
+        IRateLimiter lateShard = rateBudget.forShard(1);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(busyShard.tryAcquire(0), "Other shards are idle so shard 0 can borrow the whole budget");
+        }
+        assertFalse(busyShard.tryAcquire(1));
+        assertFalse(lateShard.tryAcquire(1), "Global budget used up even if shard 1's share was lent out");
+        assertEquals(8, rateBudget.getSize(1));
+
+        assertTrue(lateShard.tryAcquire(1000), "Slots free up once out of the window");
+        assertTrue(lateShard.tryAcquire(1000));
+        assertTrue(busyShard.tryAcquire(1000));
+        assertTrue(busyShard.tryAcquire(1000));
+        assertTrue(busyShard.tryAcquire(1000), "Shards 2 and 3 are still idle");
+        assertTrue(busyShard.tryAcquire(1000));
+        assertTrue(busyShard.tryAcquire(1000));
+        assertTrue(busyShard.tryAcquire(1000));
+        assertFalse(busyShard.tryAcquire(1000));
+    }
+
+    @Test
+    public void testActiveShardKeepsItsShare() {
+        SharedRateBudget rateBudget = new SharedRateBudget(4, 1000, 2);
+        IRateLimiter shard0 = rateBudget.forShard(0);
+        IRateLimiter shard1 = rateBudget.forShard(1);
+        assertTrue(shard1.tryAcquire(0));//shard 1 is now active
+        assertTrue(shard0.tryAcquire(0));
+        assertTrue(shard0.tryAcquire(0));
+        assertFalse(shard0.tryAcquire(0), "Shard 1 asked for budget within the window so its other slot is kept for it");
+        assertTrue(shard1.tryAcquire(0));
+        assertThrows(IllegalStateException.class, () -> shard0.acquire(0), "A claim which fails is not let through silently");
+        assertEquals(4, rateBudget.getSize(0));
+    }
+
+    /**
+     * Floods 200 symbols through 4 shards with a 10 per second budget and checks both guarantees over every sliding window of the publish log.
+     */
+    @Test
+    public void testGuaranteesHoldAcrossShards() throws InterruptedException {
+        List<long[]> publishes = Collections.synchronizedList(new ArrayList<>());//[time, symbol]
+        MarketDataProcessor downstream = new MarketDataProcessor(new MarketDataGenerator(1, 1), new ConflatingQueue(1)) {
+            @Override
+            public void publishAggregatedMarketData(MarketData data) {
+                publishes.add(new long[]{System.currentTimeMillis(), Long.parseLong(data.getSymbol().substring(1))});
+            }
+        };
+        ShardedThrottlingEngine engine = new ShardedThrottlingEngine(4, 1000, 10, 1, downstream);
+        engine.start();
+        long end = System.currentTimeMillis() + 2500;
+        int tick = 0;
+        while (System.currentTimeMillis() < end) {
+            engine.onMessage(new MarketData(Instant.now(), "A" + (tick++ % 200), new Price(tick, tick, tick)));
+        }
+        engine.stop();
+
+        List<long[]> log = new ArrayList<>(publishes);
+        assertTrue(log.size() >= 20, "Budget was used, published " + log.size());
+        log.sort(Comparator.comparingLong(p -> p[0]));
+        for (int i = 0; i < log.size(); i++) {
+            int inWindow = 0;
+            Set<Long> symbolsInWindow = new HashSet<>();
+            for (int j = i; j < log.size() && log.get(j)[0] < log.get(i)[0] + 999; j++) {//publish times are read a moment after the budget was claimed, allow a millisecond for it
+                inWindow++;
+                assertTrue(symbolsInWindow.add(log.get(j)[1]), "Symbol published twice within a window");
+            }
+            assertTrue(inWindow <= 10, "More than 10 publishes within a window: " + inWindow);
+        }
+    }
+}
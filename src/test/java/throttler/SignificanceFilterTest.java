@@ -0,0 +1,130 @@
+package throttler;
+
+import org.junit.jupiter.api.Test;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.MarketDataBasket;
+import pojo.MarketDataDecoder;
+import pojo.MarketDataEncoder;
+import pojo.Price;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SignificanceFilterTest {
+
+    @Test
+    public void testThresholds() {
+        SignificanceFilter absolute = new SignificanceFilter(0.05, 0, 0, 1000);
+        assertTrue(absolute.isSignificant(0, 100, 101, 100.5, 0, 10), "Never published");
+        absolute.recordPublish(0, 100, 101, 100.5);
+        assertFalse(absolute.isSignificant(0, 100.04, 101, 100.5, 0, 10));
+        assertTrue(absolute.isSignificant(0, 100, 101.06, 100.5, 0, 10));
+        assertTrue(absolute.isSignificant(0, 100.01, 101, 100.5, 0, 1000), "Any change once quiet for maxQuietMillis");
+        assertFalse(absolute.isSignificant(0, 100, 101, 100.5, 0, 1000), "No change at all");
+
+        SignificanceFilter relative = new SignificanceFilter(0, 0.001, 0, 1000);
+        relative.recordPublish(0, 100, 101, 100.5);
+        assertFalse(relative.isSignificant(0, 100.09, 101, 100.5, 0, 10));
+        assertTrue(relative.isSignificant(0, 100.11, 101, 100.5, 0, 10), "Over 10 bps of 100");
+
+        SignificanceFilter ticks = new SignificanceFilter(0.015, 0, 0.01, 1000);
+        ticks.recordPublish(0, 100, 101, 100.5);
+        assertFalse(ticks.isSignificant(0, 100.004, 101, 100.5, 0, 10), "Below a tick");
+        assertFalse(ticks.isSignificant(0, 100.01, 101, 100.5, 0, 10), "One tick, the threshold rounds up to 2");
+        assertTrue(ticks.isSignificant(0, 99.98, 101, 100.5, 0, 10));
+        assertEquals(Price.BID | Price.LAST, ticks.getChangedFields(0, 99.98, 101, 100.6));
+    }
+
+    /**
+     * A0 is published, a move below the threshold is held back without spending budget, a significant move goes out
+     * and a small one is still published once A0 has been quiet for maxQuietMillis.
+     */
+    @Test
+    public void testInsignificantUpdatesDoNotSpendTheBudget() {
+        List<String> published = new ArrayList<>();
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue) {
+            @Override
+            public void publishAggregatedMarketData(MarketData data) {
+                published.add(data.getSymbol() + "@" + data.getPrice().getLast());
+            }
+        };
+        VirtualClock clock = VirtualClock.startingNow();
+        SlidingWindow slidingWindow = new SlidingWindow(10, 1);
+        slidingWindow.setClock(clock);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, slidingWindow);
+        throttledPublisher.enableSignificanceFilter(new SignificanceFilter(0.05, 0, 0.01, 1500));
+
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "A0", new Price(100, 100, 100)));
+        throttledPublisher.publishData();
+        clock.advanceBy(1000, TimeUnit.MILLISECONDS);
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "A0", new Price(100.001, 100.001, 100.001)));
+        throttledPublisher.publishData();
+        assertEquals("[A0@100.0]", published.toString());
+        assertEquals(0, throttledPublisher.getSlidingWindow().getSize(), "The suppressed update took no slot");
+        assertEquals(1, throttledPublisher.getMetrics().getNoOfSuppressedUpdates());
+        assertEquals(0, throttledPublisher.getNoOfPendingSymbols());
+
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "A0", new Price(100.1, 100.1, 100.1)));
+        throttledPublisher.publishData();
+        assertEquals("[A0@100.0, A0@100.1]", published.toString());
+
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "A0", new Price(100.12, 100.12, 100.12)));
+        throttledPublisher.publishData();
+        assertEquals(2, published.size());
+        long refreshTime = throttledPublisher.getSlidingWindow().getSymbolLastPublishTime(0) + 1500;
+        assertTrue(throttledPublisher.getNextPublishTime() <= refreshTime, "The forced refresh wakes the publisher up");
+        clock.advanceTo(TimeUnit.MILLISECONDS.toNanos(refreshTime - 1));
+        throttledPublisher.publishData();
+        assertEquals(2, published.size(), "Not quiet for maxQuietMillis yet");
+        clock.advanceTo(TimeUnit.MILLISECONDS.toNanos(refreshTime));
+        throttledPublisher.publishData();
+        assertEquals("[A0@100.0, A0@100.1, A0@100.12]", published.toString());
+        assertEquals(Long.MAX_VALUE, throttledPublisher.getNextPublishTime());
+    }
+
+    @Test
+    public void testDeltaPublishesCarryOnlyTheChangedPrices() {
+        List<MarketData> published = new ArrayList<>();
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue) {
+            @Override
+            public void publishAggregatedMarketData(MarketData data) {
+                published.add(data);
+            }
+        };
+        VirtualClock clock = VirtualClock.startingNow();
+        SlidingWindow slidingWindow = new SlidingWindow(10, 1);
+        slidingWindow.setClock(clock);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, slidingWindow);
+        assertThrows(IllegalStateException.class, throttledPublisher::enableDeltaPublishing);
+        throttledPublisher.enableSignificanceFilter(new SignificanceFilter(0, 0, 0, 1000));
+        throttledPublisher.enableDeltaPublishing();
+
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "A0", new Price(1, 2, 1.5)));
+        throttledPublisher.publishData();
+        clock.advanceBy(1000, TimeUnit.MILLISECONDS);
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "A0", new Price(1, 2, 1.75)));
+        throttledPublisher.publishData();
+        assertEquals(new Price(1, 2, 1.5), published.get(0).getPrice());
+        assertTrue(Double.isNaN(published.get(1).getPrice().getBid()) && Double.isNaN(published.get(1).getPrice().getAsk()));
+        assertEquals(1.75, published.get(1).getPrice().getLast());
+
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        MarketDataEncoder encoder = new MarketDataEncoder().wrap(buffer, MarketDataEncoder.FRAME_HEADER_SIZE).encode(published.get(1));
+        assertEquals(MarketDataBasket.entryBytes("A0") - 2 * Double.BYTES, encoder.getEncodedLength(), "The unchanged prices are left out");
+        MarketDataEncoder.encodeHeader(buffer, 0, 1, 1, encoder.getEncodedLength());
+        MarketDataDecoder decoder = new MarketDataDecoder().wrap(buffer, 0);
+        assertTrue(decoder.next());
+        assertEquals(Price.LAST, decoder.getFields());
+        assertTrue(Double.isNaN(decoder.getBid()));
+        assertEquals(1.75, decoder.getLast());
+        assertEquals("A0", decoder.getSymbol());
+    }
+}
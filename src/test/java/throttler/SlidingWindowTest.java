@@ -1,19 +1,29 @@
 package throttler;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class SlidingWindowTest {
-    private SlidingWindow slidingWindow = new SlidingWindow(3,1);//3 requests per second
+    private final VirtualClock  clock         = VirtualClock.startingNow();
+    private final SlidingWindow slidingWindow = new SlidingWindow(3,1);//3 requests per second
+
+    @BeforeEach
+    public void setUp() {
+        slidingWindow.setClock(clock);
+    }
+
     @Test
-    public void testVerifySlidingWindowBlocksDueToNoOfRequestPerSecBlock() throws InterruptedException {
+    public void testVerifySlidingWindowBlocksDueToNoOfRequestPerSecBlock() {
         assertTrue(slidingWindow.isAllowed());
         assertTrue(slidingWindow.isAllowed());
         assertTrue(slidingWindow.isAllowed());
         assertFalse(slidingWindow.isAllowed());
 
-        Thread.sleep(1000);
+        clock.advanceBy(1000, TimeUnit.MILLISECONDS);
         assertTrue(slidingWindow.isAllowed());
         assertTrue(slidingWindow.isAllowed());
         assertTrue(slidingWindow.isAllowed());
@@ -21,19 +31,21 @@ public class SlidingWindowTest {
 
     }
     @Test
-    public void testVerifySlidingWindowBlockDueToSymbolNotAllowedToBePublishedMoreThanOncePerSlidingWindow() throws InterruptedException {
-        assertTrue(slidingWindow.shouldPublishSymbolWithinWindow("A"));
-        assertFalse(slidingWindow.shouldPublishSymbolWithinWindow("A"));
-        assertTrue(slidingWindow.shouldPublishSymbolWithinWindow("B"));
-        Thread.sleep(1000);
-        assertTrue(slidingWindow.shouldPublishSymbolWithinWindow("A"));
+    public void testVerifySlidingWindowBlockDueToSymbolNotAllowedToBePublishedMoreThanOncePerSlidingWindow() {
+        assertTrue(slidingWindow.shouldPublishSymbolWithinWindow(0));
+        assertFalse(slidingWindow.shouldPublishSymbolWithinWindow(0));
+        assertTrue(slidingWindow.shouldPublishSymbolWithinWindow(1));
+        clock.advanceBy(999, TimeUnit.MILLISECONDS);
+        assertFalse(slidingWindow.shouldPublishSymbolWithinWindow(0), "Still within the window");
+        clock.advanceBy(1, TimeUnit.MILLISECONDS);
+        assertTrue(slidingWindow.shouldPublishSymbolWithinWindow(0));
     }
 
     @Test
     public void testVerify4thMsgBlockedDueToNoOfRequests(){
-        assertTrue(slidingWindow.canPublish("A"));
-        assertTrue(slidingWindow.canPublish("B"));
-        assertTrue(slidingWindow.canPublish("C"));
-        assertFalse(slidingWindow.canPublish("D"));//4th request is blocked as anyways 3 requests per second allowed
+        assertTrue(slidingWindow.canPublish(0));
+        assertTrue(slidingWindow.canPublish(1));
+        assertTrue(slidingWindow.canPublish(2));
+        assertFalse(slidingWindow.canPublish(3));//4th request is blocked as anyways 3 requests per second allowed
     }
 }
@@ -0,0 +1,211 @@
+package throttler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.Price;
+import pojo.SymbolRegistry;
+import pojo.SymbolStateStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SymbolStateStoreTest {
+
+    /**
+     * Random puts and removes over both kinds of storage agree with a HashMap, and the table shrinks back once the symbols are gone.
+     */
+    @Test
+    public void testStoreAgreesWithAMap() {
+        for (boolean offHeap : new boolean[]{false, true}) {
+            SymbolStateStore store    = new SymbolStateStore(2, 16, offHeap);
+            Map<Integer, Long> expected = new HashMap<>();
+            Random random = new Random(1);
+            for (int i = 0; i < 200000; i++) {
+                int symbolId = random.nextInt(5000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(symbolId) != null, store.remove(symbolId));
+                } else {
+                    store.put(symbolId, 0, i);
+                    store.add(symbolId, 1, 1);
+                    expected.put(symbolId, (long) i);
+                }
+            }
+            assertEquals(expected.size(), store.size());
+            for (int symbolId = 0; symbolId < 5000; symbolId++) {
+                assertEquals(expected.getOrDefault(symbolId, -1L), store.get(symbolId, 0, -1), "Symbol " + symbolId);
+                assertEquals(expected.containsKey(symbolId), store.contains(symbolId));
+            }
+            long footprint = store.getFootprintBytes();
+            for (int symbolId : expected.keySet()) {
+                assertTrue(store.remove(symbolId));
+            }
+            assertEquals(0, store.size());
+            assertEquals(16, store.capacity(), "Shrunk back to where it started");
+            assertTrue(store.getFootprintBytes() < footprint);
+        }
+    }
+
+    /**
+     * Symbols which have been published and stay quiet for the ttl are evicted a sweep at a time, their ids go back to the registry and a
+     * symbol seen again starts over. A symbol with a pending tick stays.
+     */
+    @Test
+    public void testIdleSymbolsAreEvicted() {
+        SlidingWindow slidingWindow = new SlidingWindow(1000, 1);
+        VirtualClock clock = VirtualClock.startingNow();
+        slidingWindow.setClock(clock);
+        ConflatingQueue conflatingQueue = new ConflatingQueue(1000);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, slidingWindow);
+        assertThrows(IllegalArgumentException.class, () -> throttledPublisher.enableIdleEviction(500, true), "Shorter than the window");
+        throttledPublisher.enableIdleEviction(2000, true);
+
+        ThrottledPublisherTest.tick(marketDataProcessor, 200, 1);
+        throttledPublisher.publishData();
+        assertEquals(200, throttledPublisher.getPublishCounts().size());
+        assertTrue(slidingWindow.getSymbolLastPublishTimes().isOffHeap());
+
+        clock.advanceBy(2000, TimeUnit.MILLISECONDS);
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "B", new Price(1, 1, 1)));
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "A0", new Price(2, 2, 2)));
+        slidingWindow.setEffectiveLimit(1);//B takes the only slot, A0 stays pending
+        for (int pass = 0; pass < 4 * 1024 / ThrottledPublisher.SWEEP_SLOTS_PER_PASS; pass++) {//a few rounds of the table, it shrinks as it empties
+            throttledPublisher.publishData();
+        }
+        SymbolRegistry symbolRegistry = conflatingQueue.getSymbolRegistry();
+        assertEquals(199, throttledPublisher.getMetrics().getNoOfEvictedSymbols());
+        assertEquals(2, symbolRegistry.getNoOfActiveSymbols());
+        assertEquals(2, slidingWindow.getSymbolLastPublishTimes().size());
+        assertEquals("{A0=1, B=1}", throttledPublisher.getPublishCounts().toString());
+        assertEquals(SymbolRegistry.UNKNOWN_SYMBOL, symbolRegistry.getSymbolId("A1"));
+
+        slidingWindow.setEffectiveLimit(1000);
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "A1", new Price(2, 2, 2)));
+        throttledPublisher.publishData();
+        assertEquals("{A0=2, B=1, A1=1}", throttledPublisher.getPublishCounts().toString(), "A1 goes out as a new symbol");
+        assertEquals(201, symbolRegistry.getSymbolId("A1"), "A fresh id, the released ones are still in their grace period");
+    }
+
+    /**
+     * A released id goes to another symbol only once its grace period is over and there is no tick left in its slot.
+     */
+    @Test
+    public void testReleasedIdsAreReused() {
+        VirtualClock    clock           = VirtualClock.startingNow();
+        ConflatingQueue conflatingQueue = new ConflatingQueue(2);
+        SymbolRegistry  symbolRegistry  = conflatingQueue.getSymbolRegistry();
+        symbolRegistry.setClock(clock);
+        conflatingQueue.offer(new MarketData(Instant.now(), "A", new Price(1, 1, 1)));
+        conflatingQueue.offer(new MarketData(Instant.now(), "B", new Price(1, 1, 1)));
+        assertTrue(symbolRegistry.release(0));
+        assertTrue(symbolRegistry.release(1));
+        assertFalse(symbolRegistry.release(1), "Released already");
+        assertEquals("B", symbolRegistry.getSymbol(1), "Still named until reused");
+        conflatingQueue.take(1);
+        assertThrows(IllegalStateException.class, () -> symbolRegistry.register("C"), "Within the grace period");
+
+        clock.advanceBy(SymbolRegistry.RELEASE_GRACE_NANOS, TimeUnit.NANOSECONDS);
+        assertThrows(IllegalStateException.class, () -> symbolRegistry.register("C"), "A's tick is still pending");
+        conflatingQueue.take(0);
+        assertEquals(0, symbolRegistry.register("C"));
+        assertEquals(1, symbolRegistry.register("D"));
+        assertEquals(2, symbolRegistry.size());
+        assertEquals(2, symbolRegistry.getNoOfActiveSymbols());
+    }
+
+    /**
+     * A symbol given a group of the budget or a weight of the scheduling policy by id keeps its id, so the setting never goes to another symbol.
+     */
+    @Test
+    public void testSymbolsConfiguredByIdAreNotEvicted() {
+        VirtualClock clock = VirtualClock.startingNow();
+        ConflatingQueue conflatingQueue = new ConflatingQueue(1000);
+        SymbolRegistry  symbolRegistry  = conflatingQueue.getSymbolRegistry();
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        GroupRateBudget groupRateBudget = new GroupRateBudget(100, 1000, 10, 0);
+        groupRateBudget.assignGroup(symbolRegistry.register("IDX"), 0);
+        SlidingWindow slidingWindow = new SlidingWindow(groupRateBudget, 1);
+        slidingWindow.setClock(clock);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, slidingWindow);
+        throttledPublisher.setSchedulingPolicy(SchedulingPolicyType.STALENESS);
+        ((StalenessSchedulingPolicy) throttledPublisher.getSchedulingPolicy(groupRateBudget.getDefaultGroup())).setWeight(symbolRegistry.register("W"), 2);
+        throttledPublisher.enableIdleEviction(2000, false);
+
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "IDX", new Price(1, 1, 1)));
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "W", new Price(1, 1, 1)));
+        ThrottledPublisherTest.tick(marketDataProcessor, 3, 1);
+        throttledPublisher.publishData();
+        assertEquals("{IDX=1, W=1, A0=1, A1=1, A2=1}", throttledPublisher.getPublishCounts().toString());
+
+        clock.advanceBy(2000, TimeUnit.MILLISECONDS);
+        for (int pass = 0; pass < 1024 / ThrottledPublisher.SWEEP_SLOTS_PER_PASS; pass++) {
+            throttledPublisher.publishData();
+        }
+        assertEquals(3, throttledPublisher.getMetrics().getNoOfEvictedSymbols(), "Only the A symbols");
+        assertEquals(2, slidingWindow.getSymbolLastPublishTimes().size());
+        assertEquals(0, symbolRegistry.getSymbolId("IDX"));
+        assertEquals(1, symbolRegistry.getSymbolId("W"));
+        assertEquals(0, slidingWindow.getGroup(0));
+    }
+
+    /**
+     * A symbol given the id of an evicted one starts its conflation ratio afresh, the total still counts the evicted symbol's updates.
+     */
+    @Test
+    public void testReusedIdStartsItsCountsAfresh() {
+        SlidingWindow slidingWindow = new SlidingWindow(100, 1);
+        VirtualClock clock = VirtualClock.startingNow();
+        slidingWindow.setClock(clock);
+        ConflatingQueue conflatingQueue = new ConflatingQueue(10);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        ThrottledPublisher throttledPublisher = new ThrottledPublisher(conflatingQueue, marketDataProcessor, slidingWindow);
+        throttledPublisher.enableIdleEviction(2000, false);
+        for (int i = 1; i <= 5; i++) {
+            marketDataProcessor.onMessage(new MarketData(Instant.now(), "A", new Price(i, i, i)));
+        }
+        throttledPublisher.publishData();
+        assertEquals(5, throttledPublisher.getMetrics().getConflationRatio("A"));
+
+        clock.advanceBy(2000, TimeUnit.MILLISECONDS);
+        for (int pass = 0; pass < 1024 / ThrottledPublisher.SWEEP_SLOTS_PER_PASS; pass++) {
+            throttledPublisher.publishData();
+        }
+        assertEquals(1, throttledPublisher.getMetrics().getNoOfEvictedSymbols());
+        clock.advanceBy(SymbolRegistry.RELEASE_GRACE_NANOS, TimeUnit.NANOSECONDS);
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "B", new Price(1, 1, 1)));
+        marketDataProcessor.onMessage(new MarketData(Instant.now(), "B", new Price(2, 2, 2)));
+        assertEquals(0, conflatingQueue.getSymbolRegistry().getSymbolId("B"), "A's id");
+        throttledPublisher.publishData();
+        assertEquals(2, throttledPublisher.getMetrics().getConflationRatio("B"), "Only B's own updates");
+        assertEquals(7, throttledPublisher.getMetrics().getNoOfUpdatesReceived());
+        assertEquals(3.5, throttledPublisher.getMetrics().getConflationRatio(), "7 updates in 2 publishes");
+    }
+
+    /**
+     * The publish journal names its symbol ids when it is closed, it refuses idle eviction whichever is set up first.
+     */
+    @Test
+    public void testJournalIsNotCombinedWithEviction(@TempDir Path dir) throws IOException {
+        ConflatingQueue conflatingQueue = new ConflatingQueue(10);
+        MarketDataProcessor marketDataProcessor = new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue);
+        try (PublishJournal publishJournal = new PublishJournal(dir.resolve("journal"), conflatingQueue.getSymbolRegistry())) {
+            ThrottledPublisher journaled = new ThrottledPublisher(conflatingQueue, marketDataProcessor, new SlidingWindow(100, 1));
+            journaled.setPublishJournal(publishJournal);
+            assertThrows(IllegalStateException.class, () -> journaled.enableIdleEviction(2000, false));
+
+            ThrottledPublisher evicting = new ThrottledPublisher(conflatingQueue, marketDataProcessor, new SlidingWindow(100, 1));
+            evicting.enableIdleEviction(2000, false);
+            assertThrows(IllegalStateException.class, () -> evicting.setPublishJournal(publishJournal));
+            assertNull(evicting.getPublishJournal());
+        }
+    }
+}
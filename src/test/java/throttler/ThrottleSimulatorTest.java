@@ -0,0 +1,70 @@
+package throttler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pojo.ConflatingQueue;
+import pojo.MarketData;
+import pojo.Price;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThrottleSimulatorTest {
+
+    /**
+     * A minute of 1000 updates/sec over 100 symbols in virtual time: at 10/sec the budget is the bottleneck and downstream waits about 10 secs
+     * for every symbol, at 1000/sec every symbol gets its once per window and waits at most a window.
+     */
+    @Test
+    public void testLimitsAreComparedOnTheSameFeed() {
+        ThrottleSimulator simulator = new ThrottleSimulator(new GeneratedFeed(100, 0, ArrivalProcess.CONSTANT, 1000, 1, 60, TimeUnit.SECONDS, 1), 1000);
+
+        ThrottleSimulator.Result tight = simulator.run(10, 1);
+        assertEquals(60000, tight.getNoOfTicks());
+        assertTrue(tight.getSimulatedNanos() >= TimeUnit.SECONDS.toNanos(60));
+        assertTrue(tight.getElapsedNanos() < tight.getSimulatedNanos(), "Faster than real time");
+        assertTrue(tight.getPublishRate() <= 10.2 && tight.getPublishRate() > 9.8, "The limit, give or take the window the run ends in: " + tight);
+        assertEquals(tight.getNoOfPublishes(), tight.getStalenesses().getTotalCount());
+        assertTrue(tight.getStalenessMillisAtPercentile(50) > 5000, tight.toString());
+
+        ThrottleSimulator.Result loose = simulator.run(1000, 1);
+        assertEquals(60000, loose.getNoOfTicks());
+        assertTrue(loose.getNoOfPublishes() <= 100 * 61 && loose.getNoOfPublishes() >= 100 * 59, loose.toString());
+        assertTrue(loose.getConflationRatio() < tight.getConflationRatio());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(loose.getSymbolMaxStalenesses().getMaxValue()) <= 1001, loose.toString());
+        assertEquals(100, loose.getSymbolMaxStalenesses().getTotalCount());
+
+        ThrottleSimulator.Result again = simulator.run(10, 1);
+        assertEquals(tight.getNoOfPublishes(), again.getNoOfPublishes(), "Every run starts the feed over from the same seed");
+        assertEquals(tight.getStalenesses().getMaxValue(), again.getStalenesses().getMaxValue());
+    }
+
+    /**
+     * A captured burst followed by a late tick runs in virtual time at its captured pace, the symbol which ticks again within its window waits for it.
+     */
+    @Test
+    public void testRecordedFeed(@TempDir Path dir) throws IOException, InterruptedException {
+        Path path = dir.resolve("feed.capture");
+        ConflatingQueue conflatingQueue = new ConflatingQueue(100);
+        try (FeedCapture capture = new FeedCapture(new MarketDataProcessor(new MarketDataGenerator(1, 1), conflatingQueue), path, 100)) {
+            capture.onMessage(new MarketData(Instant.now(), "A", new Price(1, 1, 1)));
+            capture.onMessage(new MarketData(Instant.now(), "B", new Price(1, 1, 1)));
+            capture.onMessage(new MarketData(Instant.now(), "A", new Price(2, 2, 2)));
+            Thread.sleep(100);
+            capture.onMessage(new MarketData(Instant.now(), "A", new Price(3, 3, 3)));
+        }
+        try (FeedReplayer replayer = new FeedReplayer(path)) {
+            ThrottleSimulator.Result result = new ThrottleSimulator(replayer.asFeedSource(), 100).run(10, 1);
+            assertEquals(4, result.getNoOfTicks());
+            assertEquals(3, result.getNoOfPublishes(), "A, B and A's latest once its window is over");
+            assertEquals(4.0 / 3, result.getConflationRatio(), 1e-9);
+            long stalenessMillis = TimeUnit.NANOSECONDS.toMillis(result.getStalenesses().getMaxValue());
+            assertTrue(stalenessMillis >= 990 && stalenessMillis <= 1001, "A's second tick waits out the window: " + stalenessMillis);
+            assertTrue(result.getSimulatedNanos() >= TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+}